@@ -0,0 +1,31 @@
+package com.desenalieva.springtasks.cache;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
+
+/**
+ * HibernateJpaDialect, отключающий чтение и запись кэша второго уровня (и кэша запросов)
+ * в транзакциях с уровнем изоляции REPEATABLE_READ и SERIALIZABLE.
+ * <br>
+ * Кэш общий для всех транзакций и не знает о снимке данных конкретной транзакции: попадание в кэш не выполняет
+ * запрос к бд, поэтому транзакция может увидеть данные, зафиксированные после ее начала
+ * (см. TransactionalTest#testIsolationParameter).
+ */
+public class CacheBypassingJpaDialect extends HibernateJpaDialect {
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition) throws SQLException {
+        Object transactionData = super.beginTransaction(entityManager, definition);
+        int isolationLevel = definition.getIsolationLevel();
+        if (isolationLevel == TransactionDefinition.ISOLATION_REPEATABLE_READ
+                || isolationLevel == TransactionDefinition.ISOLATION_SERIALIZABLE) {
+            entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+        }
+        return transactionData;
+    }
+}
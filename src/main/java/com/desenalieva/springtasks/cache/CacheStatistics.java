@@ -0,0 +1,38 @@
+package com.desenalieva.springtasks.cache;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Статистика региона кэша второго уровня.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class CacheStatistics {
+    /**
+     * Название региона
+     */
+    private final String region;
+
+    /**
+     * Кол-во попаданий (по данным Hibernate)
+     */
+    private final long hits;
+
+    /**
+     * Кол-во промахов (по данным Hibernate)
+     */
+    private final long misses;
+
+    /**
+     * Кол-во записей в кэш (по данным Hibernate)
+     */
+    private final long puts;
+
+    /**
+     * Кол-во вытеснений по размеру и времени жизни (по данным JCache)
+     */
+    private final long evictions;
+}
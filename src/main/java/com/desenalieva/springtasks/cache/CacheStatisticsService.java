@@ -0,0 +1,73 @@
+package com.desenalieva.springtasks.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import javax.cache.CacheManager;
+import javax.cache.management.CacheStatisticsMXBean;
+import javax.management.JMX;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.persistence.EntityManagerFactory;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static com.desenalieva.springtasks.cache.HibernateCacheConfig.*;
+
+/**
+ * Сервис статистики кэша второго уровня.
+ * Попадания, промахи и записи берутся из статистики Hibernate (hibernate.generate_statistics),
+ * вытеснения - из статистики JCache региона.
+ */
+@Service
+@RequiredArgsConstructor
+public class CacheStatisticsService {
+    /**
+     * Фабрика EntityManager.
+     */
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * CacheManager кэша второго уровня.
+     */
+    private final CacheManager hibernateCacheManager;
+
+    /**
+     * Статистика всех регионов кэша.
+     * @return статистика регионов сериалов, книг и результатов запросов
+     */
+    public List<CacheStatistics> getStatistics() {
+        return List.of(getStatistics(SERIAL_REGION), getStatistics(BOOK_REGION), getStatistics(QUERY_RESULTS_REGION));
+    }
+
+    /**
+     * Статистика региона кэша.
+     * @param region название региона
+     * @return статистика региона
+     */
+    public CacheStatistics getStatistics(String region) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        CacheRegionStatistics regionStatistics = QUERY_RESULTS_REGION.equals(region)
+                ? statistics.getQueryRegionStatistics(region)
+                : statistics.getDomainDataRegionStatistics(region);
+        return new CacheStatistics(region, regionStatistics.getHitCount(), regionStatistics.getMissCount(),
+                regionStatistics.getPutCount(), jcacheStatistics(region).getCacheEvictions());
+    }
+
+    private CacheStatisticsMXBean jcacheStatistics(String region) {
+        try {
+            ObjectName name = new ObjectName(String.format("javax.cache:type=CacheStatistics,CacheManager=%s,Cache=%s",
+                    sanitize(hibernateCacheManager.getURI().toString()), sanitize(region)));
+            return JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), name, CacheStatisticsMXBean.class);
+        } catch (MalformedObjectNameException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    private static String sanitize(String name) {
+        return name == null ? "" : name.replaceAll("[,:=\n]", ".");
+    }
+}
@@ -0,0 +1,70 @@
+package com.desenalieva.springtasks.cache;
+
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Прогрев кэша второго уровня при старте приложения (включается свойством serial.cache.warm-up).
+ * Сущности загружаются страницами (каждая страница - отдельная транзакция),
+ * загрузка прекращается, когда заполнен регион кэша.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheWarmUp {
+    private final static Logger log = LoggerFactory.getLogger(CacheWarmUp.class);
+
+    private static final int PAGE_SIZE = 1000;
+
+    @Value("${serial.cache.warm-up}")
+    private boolean enabled;
+
+    @Value("${serial.cache.serial.max-size}")
+    private long serialMaxSize;
+
+    @Value("${serial.cache.book.max-size}")
+    private long bookMaxSize;
+
+    /**
+     * Репозиторий сериалов.
+     */
+    private final SerialRepository serialRepository;
+
+    /**
+     * Репозиторий книг.
+     */
+    private final BookRepository bookRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            log.info("Прогрев кэша: загружено сериалов {}, книг {}",
+                    load(serialRepository, serialMaxSize), load(bookRepository, bookMaxSize));
+        }
+    }
+
+    private long load(JpaRepository<?, Long> repository, long maxSize) {
+        long loaded = 0;
+        Pageable pageable = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+        while (loaded < maxSize) {
+            Page<?> page = repository.findAll(pageable);
+            loaded += page.getNumberOfElements();
+            if (!page.hasNext()) {
+                break;
+            }
+            pageable = page.nextPageable();
+        }
+        return loaded;
+    }
+}
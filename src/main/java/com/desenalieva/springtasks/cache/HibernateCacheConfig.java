@@ -0,0 +1,114 @@
+package com.desenalieva.springtasks.cache;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Настройка кэша второго уровня Hibernate (JCache, реализация Caffeine).
+ * <br>
+ * Регионы кэша создаются здесь, чтобы их размер и время жизни задавались свойствами serial.cache.*.
+ * Для каждого контекста приложения создается свой CacheManager, поэтому контексты (например, в тестах)
+ * не видят закэшированные данные друг друга.
+ */
+@Configuration
+public class HibernateCacheConfig {
+    /**
+     * Регион кэша сериалов.
+     */
+    public static final String SERIAL_REGION = Serial.class.getName();
+
+    /**
+     * Регион кэша книг.
+     */
+    public static final String BOOK_REGION = Book.class.getName();
+
+    /**
+     * Регион кэша результатов запросов.
+     */
+    public static final String QUERY_RESULTS_REGION = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+
+    /**
+     * Регион временных меток изменения таблиц (нужен для проверки актуальности кэша запросов,
+     * поэтому не ограничивается по размеру и времени жизни).
+     */
+    public static final String UPDATE_TIMESTAMPS_REGION = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${serial.cache.serial.max-size}") long serialMaxSize,
+                                              @Value("${serial.cache.serial.ttl}") Duration serialTtl,
+                                              @Value("${serial.cache.book.max-size}") long bookMaxSize,
+                                              @Value("${serial.cache.book.ttl}") Duration bookTtl,
+                                              @Value("${serial.cache.query.max-size}") long queryMaxSize,
+                                              @Value("${serial.cache.query.ttl}") Duration queryTtl) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("springtasks-" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(SERIAL_REGION, regionConfiguration(serialMaxSize, serialTtl));
+        cacheManager.createCache(BOOK_REGION, regionConfiguration(bookMaxSize, bookTtl));
+        cacheManager.createCache(QUERY_RESULTS_REGION, regionConfiguration(queryMaxSize, queryTtl));
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, regionConfiguration(null, null));
+        return cacheManager;
+    }
+
+    /**
+     * Передача CacheManager в Hibernate (hibernate.javax.cache.cache_manager).
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    /**
+     * JpaVendorAdapter с {@link CacheBypassingJpaDialect} (остальные настройки как в JpaBaseConfiguration).
+     */
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties properties) {
+        HibernateJpaDialect jpaDialect = new CacheBypassingJpaDialect();
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter() {
+            @Override
+            public HibernateJpaDialect getJpaDialect() {
+                return jpaDialect;
+            }
+        };
+        adapter.setShowSql(properties.isShowSql());
+        if (properties.getDatabase() != null) {
+            adapter.setDatabase(properties.getDatabase());
+        }
+        if (properties.getDatabasePlatform() != null) {
+            adapter.setDatabasePlatform(properties.getDatabasePlatform());
+        }
+        adapter.setGenerateDdl(properties.isGenerateDdl());
+        return adapter;
+    }
+
+    private static CaffeineConfiguration<Object, Object> regionConfiguration(Long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        if (maxSize != null) {
+            configuration.setMaximumSize(OptionalLong.of(maxSize));
+        }
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        return configuration;
+    }
+}
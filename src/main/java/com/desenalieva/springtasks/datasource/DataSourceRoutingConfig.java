@@ -0,0 +1,51 @@
+package com.desenalieva.springtasks.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Маршрутизация readOnly транзакций на реплики (включается свойством serial.datasource.routing.enabled).
+ * Основная бд настраивается свойствами spring.datasource.*, реплики - списком serial.datasource.replica.urls
+ * (логин и пароль берутся из spring.datasource.*).
+ */
+@Configuration
+@ConditionalOnProperty(name = "serial.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReadReplicaRoutingDataSource routingDataSource(DataSourceProperties properties,
+                                                          @Value("${serial.datasource.replica.urls}") List<String> replicaUrls,
+                                                          @Value("${serial.datasource.replica.max-lag}") Duration maxLag,
+                                                          @Value("${serial.datasource.replica.retry-interval}") Duration retryInterval) {
+        DataSource primary = properties.initializeDataSourceBuilder().build();
+        List<DataSource> replicas = replicaUrls.stream()
+                .map(url -> DataSourceBuilder.create(properties.getClassLoader())
+                        .url(url)
+                        .username(properties.determineUsername())
+                        .password(properties.determinePassword())
+                        .build())
+                .collect(Collectors.toList());
+        return new ReadReplicaRoutingDataSource(primary, replicas, maxLag, retryInterval);
+    }
+
+    /**
+     * DataSource приложения: соединение берется у routingDataSource при первом запросе,
+     * когда уже известно, является ли транзакция readOnly.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
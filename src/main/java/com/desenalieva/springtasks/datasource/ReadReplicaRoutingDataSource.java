@@ -0,0 +1,208 @@
+package com.desenalieva.springtasks.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * DataSource, направляющий readOnly транзакции на реплики, а остальные - на основную бд.
+ * <br>
+ * Решение принимается в момент получения соединения по флагу
+ * {@link TransactionSynchronizationManager#isCurrentTransactionReadOnly()}, поэтому DataSource нужно оборачивать
+ * в LazyConnectionDataSourceProxy: тогда соединение берется при первом запросе, когда флаг уже выставлен.
+ * <br>
+ * Политика отставания реплик: в течение maxLag после завершения пишущей транзакции readOnly транзакции того же потока
+ * также идут на основную бд (реплика могла еще не получить его изменения, read-your-writes). Записи других потоков
+ * (например, фоновых обработчиков) на маршрутизацию не влияют. Реплики выбираются по кругу; если реплика недоступна,
+ * она исключается на retryInterval, а соединение берется у следующей реплики или у основной бд.
+ * <br>
+ * Чтения, которым нельзя видеть отставание реплики, выполняются в readOnly транзакции внутри
+ * {@link #readFromPrimary(Supplier)}: они идут на основную бд, но не считаются записью.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+    private final static Logger log = LoggerFactory.getLogger(ReadReplicaRoutingDataSource.class);
+
+    private final static ThreadLocal<Boolean> primaryReads = new ThreadLocal<>();
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final long maxLagNanos;
+
+    private final long retryIntervalNanos;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final AtomicLongArray unavailableUntil;
+
+    /**
+     * Время завершения последней пишущей транзакции потока
+     */
+    private final ThreadLocal<Long> lastWriteNanos = new ThreadLocal<>();
+
+    private final AtomicLong primaryConnections = new AtomicLong();
+
+    private final AtomicLong replicaConnections = new AtomicLong();
+
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * Конструктор.
+     * @param primary       основная бд
+     * @param replicas      реплики
+     * @param maxLag        допустимое отставание реплик
+     * @param retryInterval время, на которое исключается недоступная реплика
+     */
+    public ReadReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration maxLag,
+                                        Duration retryInterval) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagNanos = maxLag.toNanos();
+        this.retryIntervalNanos = retryInterval.toNanos();
+        this.unavailableUntil = new AtomicLongArray(replicas.size());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection getConnection(ConnectionFactory factory) throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (primaryReads.get() == null && !recentlyWritten()) {
+                Connection connection = getReplicaConnection(factory);
+                if (connection != null) {
+                    replicaConnections.incrementAndGet();
+                    return connection;
+                }
+                fallbacks.incrementAndGet();
+            }
+        } else {
+            registerWrite();
+        }
+        primaryConnections.incrementAndGet();
+        return factory.getConnection(primary);
+    }
+
+    private Connection getReplicaConnection(ConnectionFactory factory) {
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = (start + i) % replicas.size();
+            long now = System.nanoTime();
+            if (now - unavailableUntil.get(replica) < 0) {
+                continue;
+            }
+            try {
+                return factory.getConnection(replicas.get(replica));
+            } catch (SQLException ex) {
+                unavailableUntil.set(replica, now + retryIntervalNanos);
+                log.warn("Реплика {} недоступна, исключена на {} мс", replica, retryIntervalNanos / 1_000_000, ex);
+            }
+        }
+        return null;
+    }
+
+    private boolean recentlyWritten() {
+        Long writeNanos = lastWriteNanos.get();
+        if (writeNanos != null && System.nanoTime() - writeNanos >= maxLagNanos) {
+            lastWriteNanos.remove();
+            return false;
+        }
+        return writeNanos != null;
+    }
+
+    private void registerWrite() {
+        lastWriteNanos.set(System.nanoTime());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lastWriteNanos.set(System.nanoTime());
+                }
+            });
+        }
+    }
+
+    /**
+     * Выполнение readOnly транзакций на основной бд (например, опрос очереди в бд, где чтение с отстающей реплики
+     * приведет к повторной обработке). Без маршрутизации просто выполняет действие.
+     * @param action действие
+     * @return результат действия
+     */
+    public static <T> T readFromPrimary(Supplier<T> action) {
+        if (primaryReads.get() != null) {
+            return action.get();
+        }
+        primaryReads.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            primaryReads.remove();
+        }
+    }
+
+    /**
+     * @return кол-во соединений, выданных основной бд
+     */
+    public long getPrimaryConnections() {
+        return primaryConnections.get();
+    }
+
+    /**
+     * @return кол-во соединений, выданных репликами
+     */
+    public long getReplicaConnections() {
+        return replicaConnections.get();
+    }
+
+    /**
+     * @return кол-во readOnly соединений, выданных основной бд из-за недоступности всех реплик
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    /**
+     * Закрытие пулов соединений основной бд и реплик.
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource dataSource : replicas) {
+            close(dataSource);
+        }
+        close(primary);
+    }
+
+    private static void close(DataSource dataSource) throws IOException {
+        if (dataSource instanceof Closeable) {
+            ((Closeable) dataSource).close();
+        }
+    }
+
+    /**
+     * Способ получения соединения у выбранного DataSource (с учетными данными или без).
+     */
+    private interface ConnectionFactory {
+        Connection getConnection(DataSource dataSource) throws SQLException;
+    }
+}
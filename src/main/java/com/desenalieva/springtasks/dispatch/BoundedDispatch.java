@@ -0,0 +1,39 @@
+package com.desenalieva.springtasks.dispatch;
+
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Выполнение обработчика {@link TransactionalEventListener} в отдельном ограниченном пуле потоков
+ * (см. {@link BoundedEventListenerFactory}), а не в потоке, завершившем транзакцию.
+ * <br>
+ * Транзакционная семантика не меняется: событие передается в пул только в фазе обработчика
+ * (например, после коммита), события откаченных транзакций в пул не попадают.
+ * Фаза BEFORE_COMMIT не поддерживается: такой обработчик должен выполняться внутри транзакции.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface BoundedDispatch {
+
+    /**
+     * @return кол-во потоков обработчика (-1 - serial.event-dispatch.threads);
+     * события обрабатываются в порядке поступления, только если поток один и rejection не CALLER_RUNS
+     */
+    int threads() default -1;
+
+    /**
+     * @return размер очереди событий, ожидающих потока (-1 - serial.event-dispatch.queue-capacity)
+     */
+    int queueCapacity() default -1;
+
+    /**
+     * @return поведение при заполненной очереди
+     */
+    RejectionPolicy rejection() default RejectionPolicy.BLOCK;
+}
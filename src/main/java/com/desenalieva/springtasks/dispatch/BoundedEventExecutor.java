@@ -0,0 +1,266 @@
+package com.desenalieva.springtasks.dispatch;
+
+import com.desenalieva.springtasks.metrics.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный пул потоков одного обработчика событий.
+ * <br>
+ * Одновременно выполняется не больше threads событий, еще не больше queueCapacity ждут в очереди;
+ * при заполненной очереди действует {@link RejectionPolicy}. События выполняются threads потоками пула из одной
+ * FIFO очереди (простаивающие потоки завершаются), поэтому обработчик с одним потоком получает события в порядке
+ * передачи. Если включены виртуальные потоки и JDK их поддерживает (21+), потоки пула виртуальные.
+ * <br>
+ * Исключение обработчика записывается в журнал и учитывается в метриках, вызывающему потоку оно не передается.
+ */
+public class BoundedEventExecutor {
+    private final static Logger log = LoggerFactory.getLogger(BoundedEventExecutor.class);
+
+    private final String name;
+
+    private final int threads;
+
+    private final int queueCapacity;
+
+    private final RejectionPolicy rejection;
+
+    private final long blockTimeoutNanos;
+
+    private final ExecutorService executor;
+
+    private final boolean virtualThreads;
+
+    /**
+     * Места для выполняемых и ожидающих в очереди событий
+     */
+    private final Semaphore slots;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Object idleMonitor = new Object();
+
+    private final LongAdder submitted = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder callerRuns = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Long::max, 0);
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Конструктор.
+     * @param name           название обработчика (Класс#метод)
+     * @param threads        кол-во потоков
+     * @param queueCapacity  размер очереди
+     * @param rejection      поведение при заполненной очереди
+     * @param blockTimeout   максимальное ожидание места в очереди для {@link RejectionPolicy#BLOCK}
+     *                       (при одном потоке не действует, см. {@link RejectionPolicy#BLOCK})
+     * @param virtualThreads использовать виртуальные потоки, если JDK их поддерживает
+     */
+    public BoundedEventExecutor(String name, int threads, int queueCapacity, RejectionPolicy rejection,
+                                Duration blockTimeout, boolean virtualThreads) {
+        if (threads < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Некорректные threads = " + threads + ", queueCapacity = "
+                    + queueCapacity + " обработчика " + name);
+        }
+        this.name = name;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.rejection = rejection;
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+        this.slots = new Semaphore(threads + queueCapacity);
+        ThreadFactory virtualFactory = virtualThreads ? newVirtualThreadFactory("event-" + name + "-") : null;
+        this.virtualThreads = virtualFactory != null;
+        // очередь пула ограничена местами slots, сама очередь не ограничена, чтобы не отклонять события
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                virtualFactory != null ? virtualFactory : new EventThreadFactory("event-" + name + "-"));
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * Передача события на обработку.
+     * @param task обработка события
+     */
+    public void execute(Runnable task) {
+        submitted.increment();
+        if (!slots.tryAcquire() && !(rejection == RejectionPolicy.BLOCK && awaitSlot())) {
+            if (rejection == RejectionPolicy.DROP) {
+                dropped.increment();
+                log.warn("Очередь обработчика {} заполнена, событие отброшено", name);
+            } else {
+                callerRuns.increment();
+                run(task);
+            }
+            return;
+        }
+        inFlight.incrementAndGet();
+        maxQueueDepth.accumulate(queued.incrementAndGet());
+        long enqueuedNanos = System.nanoTime();
+        try {
+            executor.execute(() -> runQueued(task, enqueuedNanos));
+        } catch (RejectedExecutionException ex) {
+            // пул остановлен: событие не теряется, а обрабатывается в вызывающем потоке
+            queued.decrementAndGet();
+            release();
+            callerRuns.increment();
+            run(task);
+        }
+    }
+
+    /**
+     * Ожидание обработки всех переданных событий.
+     * @param timeout максимальное время ожидания
+     * @param unit    единица измерения времени ожидания
+     * @return true, если необработанных событий не осталось
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (idleMonitor) {
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idleMonitor, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Остановка пула: новые события обрабатываются в вызывающем потоке, события из очереди дорабатываются.
+     * @param timeout максимальное время ожидания обработки очереди
+     * @return true, если очередь обработана
+     */
+    public boolean shutdown(Duration timeout) throws InterruptedException {
+        executor.shutdown();
+        if (executor.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            return true;
+        }
+        int abandoned = executor.shutdownNow().size();
+        log.warn("Обработчик {} не завершил обработку событий за {}, не обработано событий из очереди: {}",
+                name, timeout, abandoned);
+        return false;
+    }
+
+    /**
+     * @return обработка идет в виртуальных потоках
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return снимок метрик
+     */
+    public EventDispatchStatistics getStatistics() {
+        return new EventDispatchStatistics(name, isVirtualThreads(), threads, queueCapacity, rejection,
+                submitted.sum(), completed.sum(), failed.sum(), callerRuns.sum(), dropped.sum(), queued.get(),
+                maxQueueDepth.get(), queueWait.getPercentile(99), latency.getPercentile(50),
+                latency.getPercentile(99), latency.getMax());
+    }
+
+    private boolean awaitSlot() {
+        try {
+            if (threads == 1) {
+                // выполнение в вызывающем потоке обогнало бы события из очереди
+                slots.acquire();
+                return true;
+            }
+            return slots.tryAcquire(blockTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void runQueued(Runnable task, long enqueuedNanos) {
+        try {
+            queued.decrementAndGet();
+            queueWait.record(System.nanoTime() - enqueuedNanos);
+            run(task);
+        } finally {
+            release();
+        }
+    }
+
+    private void run(Runnable task) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+            completed.increment();
+        } catch (RuntimeException ex) {
+            failed.increment();
+            log.error("Произошла ошибка при обработке события обработчиком {}: ", name, ex);
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void release() {
+        slots.release();
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (idleMonitor) {
+                idleMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Фабрика виртуальных потоков (JDK 21+), создается через reflection, т.к. приложение собирается под Java 11.
+     * @return фабрика или null, если виртуальные потоки не поддерживаются
+     */
+    private static ThreadFactory newVirtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            log.debug("Виртуальные потоки не поддерживаются: {}", ex.toString());
+            return null;
+        }
+    }
+
+    private static class EventThreadFactory implements ThreadFactory {
+        private final String prefix;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        EventThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
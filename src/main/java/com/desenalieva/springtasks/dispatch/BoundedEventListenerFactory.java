@@ -0,0 +1,188 @@
+package com.desenalieva.springtasks.dispatch;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListenerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalApplicationListenerMethodAdapter;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.event.TransactionalEventListenerFactory;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фабрика обработчиков {@link TransactionalEventListener}, помеченных {@link BoundedDispatch}: обработчик, как обычно,
+ * регистрируется в транзакции и вызывается в своей фазе, но выполняется в своем {@link BoundedEventExecutor},
+ * поэтому не добавляет задержку потоку, завершившему транзакцию.
+ * <br>
+ * Выполняется раньше {@link TransactionalEventListenerFactory}, остальные обработчики создает она.
+ * Параметры пулов по умолчанию - serial.event-dispatch.* (см. {@link EventDispatchConfig}).
+ * При закрытии контекста пулы останавливаются до уничтожения бинов, события из очередей дорабатываются
+ * не дольше serial.event-dispatch.shutdown-timeout.
+ */
+@ManagedResource(description = "Обработчики событий с ограниченными пулами")
+public class BoundedEventListenerFactory implements EventListenerFactory, Ordered,
+        ApplicationListener<ContextClosedEvent>, DisposableBean {
+    /**
+     * Порядок фабрики (у TransactionalEventListenerFactory - 50)
+     */
+    public static final int ORDER = 40;
+
+    private final int threads;
+
+    private final int queueCapacity;
+
+    private final Duration blockTimeout;
+
+    private final boolean virtualThreads;
+
+    private final Duration shutdownTimeout;
+
+    private final Map<String, BoundedEventExecutor> executors = new ConcurrentHashMap<>();
+
+    private boolean stopped;
+
+    /**
+     * Конструктор.
+     * @param threads         кол-во потоков обработчика по умолчанию
+     * @param queueCapacity   размер очереди обработчика по умолчанию
+     * @param blockTimeout    максимальное ожидание места в очереди для {@link RejectionPolicy#BLOCK}
+     * @param virtualThreads  использовать виртуальные потоки, если JDK их поддерживает
+     * @param shutdownTimeout максимальное время обработки очередей при остановке
+     */
+    public BoundedEventListenerFactory(int threads, int queueCapacity, Duration blockTimeout, boolean virtualThreads,
+                                       Duration shutdownTimeout) {
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.blockTimeout = blockTimeout;
+        this.virtualThreads = virtualThreads;
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public boolean supportsMethod(Method method) {
+        return AnnotatedElementUtils.hasAnnotation(method, BoundedDispatch.class)
+                && AnnotatedElementUtils.hasAnnotation(method, TransactionalEventListener.class);
+    }
+
+    @Override
+    public TransactionalApplicationListenerMethodAdapter createApplicationListener(String beanName, Class<?> type,
+                                                                                   Method method) {
+        String name = ClassUtils.getUserClass(type).getSimpleName() + '#' + method.getName();
+        TransactionalEventListener listener =
+                AnnotatedElementUtils.findMergedAnnotation(method, TransactionalEventListener.class);
+        if (listener != null && listener.phase() == TransactionPhase.BEFORE_COMMIT) {
+            throw new IllegalStateException("@BoundedDispatch не поддерживает фазу BEFORE_COMMIT: " + name);
+        }
+        BoundedDispatch dispatch = AnnotatedElementUtils.findMergedAnnotation(method, BoundedDispatch.class);
+        BoundedEventExecutor executor = executors.computeIfAbsent(name, key -> new BoundedEventExecutor(key,
+                dispatch.threads() < 0 ? threads : dispatch.threads(),
+                dispatch.queueCapacity() < 0 ? queueCapacity : dispatch.queueCapacity(),
+                dispatch.rejection(), blockTimeout, virtualThreads));
+        return new BoundedListenerMethodAdapter(beanName, type, method, executor);
+    }
+
+    /**
+     * Ожидание обработки всех переданных событий.
+     * @param timeout максимальное время ожидания
+     * @param unit    единица измерения времени ожидания
+     * @return true, если необработанных событий не осталось
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (BoundedEventExecutor executor : executors.values()) {
+            if (!executor.awaitIdle(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return метрики обработчиков по названию (Класс#метод)
+     */
+    public Map<String, EventDispatchStatistics> getStatistics() {
+        Map<String, EventDispatchStatistics> statistics = new TreeMap<>();
+        executors.forEach((name, executor) -> statistics.put(name, executor.getStatistics()));
+        return statistics;
+    }
+
+    /**
+     * @return метрики обработчиков в текстовом виде
+     */
+    @ManagedAttribute(description = "Метрики обработчиков")
+    public String getReport() {
+        return getStatistics().values().toString();
+    }
+
+    /**
+     * @return кол-во событий в очередях всех обработчиков
+     */
+    @ManagedAttribute(description = "Кол-во событий в очередях")
+    public long getQueueDepth() {
+        return executors.values().stream().mapToLong(executor -> executor.getStatistics().getQueueDepth()).sum();
+    }
+
+    /**
+     * Остановка пулов по закрытию контекста (до уничтожения бинов, которые используют обработчики).
+     */
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        shutdown();
+    }
+
+    @Override
+    public void destroy() {
+        shutdown();
+    }
+
+    private synchronized void shutdown() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        try {
+            for (BoundedEventExecutor executor : executors.values()) {
+                executor.shutdown(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Обработчик, выполняющий метод в пуле: регистрация в транзакции и проверка фазы остаются за родителем.
+     */
+    private static class BoundedListenerMethodAdapter extends TransactionalApplicationListenerMethodAdapter {
+        private final BoundedEventExecutor executor;
+
+        BoundedListenerMethodAdapter(String beanName, Class<?> targetClass, Method method,
+                                     BoundedEventExecutor executor) {
+            super(beanName, targetClass, method);
+            this.executor = executor;
+        }
+
+        @Override
+        public void processEvent(ApplicationEvent event) {
+            executor.execute(() -> super.processEvent(event));
+        }
+    }
+}
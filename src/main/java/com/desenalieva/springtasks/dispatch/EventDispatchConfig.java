@@ -0,0 +1,34 @@
+package com.desenalieva.springtasks.dispatch;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+
+import java.time.Duration;
+
+/**
+ * Выполнение обработчиков с {@link BoundedDispatch} в ограниченных пулах (включается свойством
+ * serial.event-dispatch.enabled, иначе такие обработчики выполняются синхронно, как остальные).
+ */
+@Configuration
+@ConditionalOnProperty(name = "serial.event-dispatch.enabled", havingValue = "true")
+public class EventDispatchConfig {
+
+    /**
+     * Фабрики обработчиков создаются до обработки @Value и @Autowired в бинах, поэтому метод статический,
+     * а параметры передаются в конструктор.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static BoundedEventListenerFactory boundedEventListenerFactory(
+            @Value("${serial.event-dispatch.threads}") int threads,
+            @Value("${serial.event-dispatch.queue-capacity}") int queueCapacity,
+            @Value("${serial.event-dispatch.block-timeout}") Duration blockTimeout,
+            @Value("${serial.event-dispatch.virtual-threads}") boolean virtualThreads,
+            @Value("${serial.event-dispatch.shutdown-timeout}") Duration shutdownTimeout) {
+        return new BoundedEventListenerFactory(threads, queueCapacity, blockTimeout, virtualThreads, shutdownTimeout);
+    }
+}
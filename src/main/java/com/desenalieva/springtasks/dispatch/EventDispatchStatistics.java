@@ -0,0 +1,93 @@
+package com.desenalieva.springtasks.dispatch;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Снимок метрик обработчика событий с ограниченным пулом.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class EventDispatchStatistics {
+    /**
+     * Обработчик (Класс#метод)
+     */
+    private final String listener;
+
+    /**
+     * Потоки обработчика - виртуальные
+     */
+    private final boolean virtualThreads;
+
+    /**
+     * Кол-во потоков
+     */
+    private final int threads;
+
+    /**
+     * Размер очереди
+     */
+    private final int queueCapacity;
+
+    /**
+     * Поведение при заполненной очереди
+     */
+    private final RejectionPolicy rejection;
+
+    /**
+     * Кол-во переданных событий
+     */
+    private final long submitted;
+
+    /**
+     * Кол-во успешно обработанных событий
+     */
+    private final long completed;
+
+    /**
+     * Кол-во событий, обработка которых завершилась исключением
+     */
+    private final long failed;
+
+    /**
+     * Кол-во событий, обработанных в вызывающем потоке из-за заполненной очереди
+     */
+    private final long callerRuns;
+
+    /**
+     * Кол-во отброшенных событий
+     */
+    private final long dropped;
+
+    /**
+     * Текущее кол-во событий в очереди
+     */
+    private final int queueDepth;
+
+    /**
+     * Максимальное кол-во событий в очереди
+     */
+    private final long maxQueueDepth;
+
+    /**
+     * 99-й перцентиль ожидания в очереди, нс
+     */
+    private final long queueWaitP99Nanos;
+
+    /**
+     * Медиана времени обработки, нс
+     */
+    private final long p50Nanos;
+
+    /**
+     * 99-й перцентиль времени обработки, нс
+     */
+    private final long p99Nanos;
+
+    /**
+     * Максимальное время обработки, нс
+     */
+    private final long maxNanos;
+}
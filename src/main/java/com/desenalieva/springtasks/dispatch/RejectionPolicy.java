@@ -0,0 +1,22 @@
+package com.desenalieva.springtasks.dispatch;
+
+/**
+ * Поведение при заполненной очереди обработчика событий.
+ */
+public enum RejectionPolicy {
+    /**
+     * Ожидать освобождения места в очереди не дольше serial.event-dispatch.block-timeout,
+     * затем выполнить обработчик в вызывающем потоке (событие не теряется). Для обработчика с одним потоком
+     * ожидание не ограничено: событие из вызывающего потока обогнало бы события в очереди и нарушило порядок.
+     */
+    BLOCK,
+    /**
+     * Сразу выполнить обработчик в вызывающем потоке (обратное давление на источник событий).
+     * Порядок событий обработчика с одним потоком при этом не сохраняется.
+     */
+    CALLER_RUNS,
+    /**
+     * Отбросить событие (учитывается в счетчике отброшенных событий).
+     */
+    DROP
+}
@@ -1,16 +1,34 @@
 package com.desenalieva.springtasks.entities;
 
+import com.desenalieva.springtasks.ids.PooledIdGenerator;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import java.util.Objects;
 
 /**
  * Книга.
+ * <br>
+ * Индекс (author, name, id) обслуживает выборки книг автора по названию и подсчет книг по авторам
+ * (см. {@link com.desenalieva.springtasks.repositories.BookRepository#findTitlesByAuthorAfter}):
+ * название и id входят в индекс, поэтому проекции идентификатор + название читаются только из индекса.
  */
 @Entity
+@Table(indexes = @Index(name = "idx_book_author_name", columnList = "author, name, id"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -18,9 +36,11 @@ import java.util.Objects;
 @ToString
 public class Book {
     /**
-     * Идентификатор
+     * Идентификатор (если не задан, выдается {@link PooledIdGenerator})
      */
     @Id
+    @GeneratedValue(generator = "book-id")
+    @GenericGenerator(name = "book-id", strategy = "com.desenalieva.springtasks.ids.PooledIdGenerator")
     private Long id;
 
     /**
@@ -32,4 +52,18 @@ public class Book {
      * Автор
      */
     private String author;
+
+    /**
+     * Версия для оптимистической блокировки
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
+    public Book(Long id, String name, String author) {
+        this.id = id;
+        this.name = name;
+        this.author = author;
+    }
 }
\ No newline at end of file
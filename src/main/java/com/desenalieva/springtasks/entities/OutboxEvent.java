@@ -0,0 +1,88 @@
+package com.desenalieva.springtasks.entities;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Событие в outbox: сохраняется в той же транзакции, что и изменение, и доставляется обработчикам
+ * после коммита (см. {@link com.desenalieva.springtasks.outbox.OutboxRelay}).
+ * <br>
+ * Индекс (processed_at, id) обслуживает выборку необработанных событий по порядку id.
+ */
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_pending", columnList = "processed_at, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class OutboxEvent {
+    /**
+     * Идентификатор (события одного агрегата доставляются по возрастанию id). Событие пишется на каждое изменение,
+     * поэтому блок id больше, чем у сущностей.
+     */
+    @Id
+    @GeneratedValue(generator = "outbox-id")
+    @GenericGenerator(name = "outbox-id", strategy = "com.desenalieva.springtasks.ids.PooledIdGenerator",
+            parameters = @Parameter(name = "increment_size", value = "1000"))
+    private Long id;
+
+    /**
+     * Тип события (по нему выбираются обработчики)
+     */
+    @Column(nullable = false)
+    private String type;
+
+    /**
+     * Идентификатор агрегата (например, сериала), к которому относится событие
+     */
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    /**
+     * Данные события
+     */
+    @Column(length = 4000)
+    private String payload;
+
+    /**
+     * Время создания
+     */
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    /**
+     * Время успешной обработки (null - событие не обработано)
+     */
+    @Column(name = "processed_at")
+    private Instant processedAt;
+
+    /**
+     * Кол-во неудачных попыток обработки
+     */
+    private int attempts;
+
+    /**
+     * Последняя ошибка обработки
+     */
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    public OutboxEvent(String type, Long aggregateId, String payload) {
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = Instant.now();
+    }
+}
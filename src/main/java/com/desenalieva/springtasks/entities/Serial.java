@@ -1,18 +1,36 @@
 package com.desenalieva.springtasks.entities;
 
+import com.desenalieva.springtasks.ids.PooledIdGenerator;
 import lombok.*;
 import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import java.util.Objects;
 
 /**
  * Сериал.
+ * <br>
+ * Индекс (rating, id) по убыванию обслуживает выборку лучших сериалов и keyset пагинацию по рейтингу
+ * (см. {@link com.desenalieva.springtasks.repositories.SerialRepository#findByRatingBetweenAfter}):
+ * H2 не читает индекс в обратном порядке, поэтому порядок индекса совпадает с порядком страниц.
  */
 @Entity
+@Table(indexes = @Index(name = "idx_serial_rating_id", columnList = "rating desc, id desc"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,24 +38,57 @@ import java.util.Objects;
 @ToString
 public class Serial {
     /**
-     * Идентификатор
+     * Минимальный рейтинг
+     */
+    public static final int MIN_RATING = 0;
+
+    /**
+     * Максимальный рейтинг
+     */
+    public static final int MAX_RATING = 10;
+
+    /**
+     * Максимальная длина названия (длина колонки serial.name)
+     */
+    public static final int MAX_NAME_LENGTH = 255;
+
+    /**
+     * Идентификатор (если не задан, выдается {@link PooledIdGenerator})
      */
     @Id
+    @GeneratedValue(generator = "serial-id")
+    @GenericGenerator(name = "serial-id", strategy = "com.desenalieva.springtasks.ids.PooledIdGenerator")
     private Long id;
 
     /**
      * Название
      */
+    @Column(length = MAX_NAME_LENGTH)
     private String name;
 
     /**
      * Рейтинг
      */
-    @Min(0)
-    @Max(10)
+    @Min(MIN_RATING)
+    @Max(MAX_RATING)
     private Integer rating;
 
+    /**
+     * Версия для оптимистической блокировки: UPDATE проверяет, что строку не изменили после чтения
+     * (см. {@link com.desenalieva.springtasks.retry.TransactionRetryExecutor})
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     public Serial(Long id) {
         this.id = id;
     }
+
+    public Serial(Long id, String name, Integer rating) {
+        this.id = id;
+        this.name = name;
+        this.rating = rating;
+    }
 }
\ No newline at end of file
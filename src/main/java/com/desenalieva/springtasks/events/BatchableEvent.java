@@ -0,0 +1,8 @@
+package com.desenalieva.springtasks.events;
+
+/**
+ * Событие, которое кроме обычной публикации собирается в пачку своей транзакции
+ * (см. {@link TransactionEventAggregator}, {@link EventBatch}).
+ */
+public interface BatchableEvent {
+}
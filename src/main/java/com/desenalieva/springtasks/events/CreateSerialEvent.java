@@ -4,9 +4,14 @@ import com.desenalieva.springtasks.entities.Serial;
 import org.springframework.context.ApplicationEvent;
 
 /**
- * Событие создания сериала
+ * Событие создания сериала (события транзакции также собираются в {@link EventBatch})
  */
-public class CreateSerialEvent extends ApplicationEvent {
+public class CreateSerialEvent extends ApplicationEvent implements BatchableEvent {
+    /**
+     * Тип события в outbox
+     */
+    public static final String TYPE = "CreateSerialEvent";
+
     private final Serial serial;
 
     /**
@@ -22,4 +27,29 @@ public class CreateSerialEvent extends ApplicationEvent {
     public Serial getSerial() {
         return serial;
     }
+
+    /**
+     * Данные события для outbox: рейтинг (пустая строка, если рейтинга нет) и название через перевод строки.
+     * @return данные события
+     */
+    public String toPayload() {
+        return (serial.getRating() != null ? serial.getRating().toString() : "") + '\n' + serial.getName();
+    }
+
+    /**
+     * Восстановление события из outbox.
+     * @param source   объект, с которым связано событие
+     * @param serialId идентификатор сериала
+     * @param payload  данные события (см. {@link #toPayload()})
+     * @return событие
+     */
+    public static CreateSerialEvent fromPayload(Object source, Long serialId, String payload) {
+        int separator = payload.indexOf('\n');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Некорректные данные события создания сериала " + serialId);
+        }
+        String rating = payload.substring(0, separator);
+        String name = payload.substring(separator + 1);
+        return new CreateSerialEvent(source, new Serial(serialId, name, rating.isEmpty() ? null : Integer.valueOf(rating)));
+    }
 }
@@ -0,0 +1,44 @@
+package com.desenalieva.springtasks.events;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.ResolvableTypeProvider;
+
+import java.util.List;
+
+/**
+ * Пачка событий одного типа, опубликованных в одной транзакции, в порядке публикации.
+ * Обработчик объявляет параметр с типом событий, например {@code EventBatch<CreateSerialEvent>}.
+ * Транзакционный обработчик пачки может быть только в фазе AFTER_COMMIT (см. {@link EventBatchListenerValidator}).
+ * @param <E> тип событий
+ */
+public class EventBatch<E extends ApplicationEvent> extends ApplicationEvent implements ResolvableTypeProvider {
+    private final Class<E> eventType;
+
+    private final List<E> events;
+
+    /**
+     * Конструктор.
+     * @param source    объект, с которым связана пачка
+     * @param eventType тип событий
+     * @param events    события
+     */
+    public EventBatch(Object source, Class<E> eventType, List<E> events) {
+        super(source);
+        this.eventType = eventType;
+        this.events = List.copyOf(events);
+    }
+
+    public Class<E> getEventType() {
+        return eventType;
+    }
+
+    public List<E> getEvents() {
+        return events;
+    }
+
+    @Override
+    public ResolvableType getResolvableType() {
+        return ResolvableType.forClassWithGenerics(EventBatch.class, eventType);
+    }
+}
@@ -0,0 +1,54 @@
+package com.desenalieva.springtasks.events;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.EventListenerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Проверка обработчиков {@link EventBatch} при запуске контекста.
+ * <br>
+ * Пачки публикуются во время beforeCommit транзакции и только для коммитящихся транзакций
+ * (см. {@link TransactionEventAggregator}), поэтому {@link TransactionalEventListener} пачки может быть только
+ * в фазе AFTER_COMMIT: обработчик BEFORE_COMMIT регистрируется слишком поздно и не вызывается,
+ * а AFTER_ROLLBACK и AFTER_COMPLETION не получат пачку откаченной транзакции. Такие обработчики не создаются
+ * молча, а прерывают запуск с IllegalStateException. Сама фабрика обработчиков не создает.
+ */
+@Component
+public class EventBatchListenerValidator implements EventListenerFactory, Ordered {
+    /**
+     * Порядок фабрики: раньше остальных фабрик обработчиков (BoundedEventListenerFactory - 40)
+     */
+    public static final int ORDER = 30;
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public boolean supportsMethod(Method method) {
+        TransactionalEventListener listener =
+                AnnotatedElementUtils.findMergedAnnotation(method, TransactionalEventListener.class);
+        return listener != null && listener.phase() != TransactionPhase.AFTER_COMMIT
+                && Stream.concat(Arrays.stream(listener.classes()), Arrays.stream(method.getParameterTypes()))
+                .anyMatch(EventBatch.class::isAssignableFrom);
+    }
+
+    @Override
+    public ApplicationListener<?> createApplicationListener(String beanName, Class<?> type, Method method) {
+        TransactionalEventListener listener =
+                AnnotatedElementUtils.findMergedAnnotation(method, TransactionalEventListener.class);
+        throw new IllegalStateException("Обработчик EventBatch поддерживает только фазу AFTER_COMMIT: "
+                + ClassUtils.getUserClass(type).getSimpleName() + '#' + method.getName()
+                + " (" + listener.phase() + ")");
+    }
+}
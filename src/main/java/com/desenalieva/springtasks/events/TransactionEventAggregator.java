@@ -0,0 +1,88 @@
+package com.desenalieva.springtasks.events;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сбор событий {@link BatchableEvent} транзакции в пачки ({@link EventBatch}) по типу события.
+ * <br>
+ * Сами события публикуются как обычно, их обработчики не меняются. Пачки публикуются перед коммитом, поэтому
+ * обработчики пачек с {@code @TransactionalEventListener(phase = AFTER_COMMIT)} вызываются один раз после коммита
+ * транзакции, а при откате транзакции пачки не публикуются (обработчики пачек в других фазах запрещены,
+ * см. {@link EventBatchListenerValidator}). События, опубликованные вне транзакции или уже после
+ * публикации пачек (например, другими обработчиками BEFORE_COMMIT), публикуются пачкой из одного события сразу.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionEventAggregator {
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Добавление события в пачку текущей транзакции.
+     * @param event событие
+     */
+    @EventListener
+    public void collect(BatchableEvent event) {
+        ApplicationEvent applicationEvent = (ApplicationEvent) event;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(applicationEvent.getClass(), List.of(applicationEvent));
+            return;
+        }
+        TransactionBatches batches = currentBatches();
+        if (batches.published) {
+            publish(applicationEvent.getClass(), List.of(applicationEvent));
+        } else {
+            batches.events.computeIfAbsent(applicationEvent.getClass(), type -> new ArrayList<>()).add(applicationEvent);
+        }
+    }
+
+    /**
+     * Пачки текущей транзакции ищутся среди ее синхронизаций: синхронизации приостановленной транзакции
+     * (например, внешней для REQUIRES_NEW) здесь не видны, поэтому у каждой транзакции свои пачки.
+     */
+    private TransactionBatches currentBatches() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionBatches
+                    && ((TransactionBatches) synchronization).getAggregator() == this) {
+                return (TransactionBatches) synchronization;
+            }
+        }
+        TransactionBatches batches = new TransactionBatches();
+        TransactionSynchronizationManager.registerSynchronization(batches);
+        return batches;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void publish(Class<?> eventType, List<ApplicationEvent> events) {
+        eventPublisher.publishEvent(new EventBatch(this, eventType, events));
+    }
+
+    /**
+     * События транзакции по типу.
+     */
+    private class TransactionBatches implements TransactionSynchronization {
+        private final Map<Class<?>, List<ApplicationEvent>> events = new LinkedHashMap<>();
+
+        private boolean published;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            published = true;
+            events.forEach(TransactionEventAggregator.this::publish);
+        }
+
+        TransactionEventAggregator getAggregator() {
+            return TransactionEventAggregator.this;
+        }
+    }
+}
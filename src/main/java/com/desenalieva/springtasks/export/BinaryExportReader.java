@@ -0,0 +1,65 @@
+package com.desenalieva.springtasks.export;
+
+import com.desenalieva.springtasks.export.ExportTable.ColumnType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Чтение выгрузки в двоичном формате ({@link ExportFormat#BINARY}).
+ */
+public final class BinaryExportReader {
+
+    private BinaryExportReader() {
+    }
+
+    /**
+     * Чтение всех строк выгрузки.
+     * @param file файл выгрузки
+     * @param rows получатель строк (значения колонок: Long, Integer или String, null для null)
+     * @return таблица выгрузки
+     */
+    public static ExportTable read(Path file, Consumer<Object[]> rows) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 6 || buffer.getInt() != ExportWriter.MAGIC || buffer.get() != ExportWriter.VERSION) {
+                throw new IOException("Файл не является выгрузкой каталога: " + file);
+            }
+            ExportTable table = ExportTable.values()[buffer.get()];
+            ColumnType[] types = table.getTypes();
+            while (buffer.hasRemaining()) {
+                int end = buffer.getInt() + buffer.position();
+                Object[] row = new Object[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    switch (types[i]) {
+                        case LONG:
+                            long longValue = buffer.getLong();
+                            row[i] = longValue == Long.MIN_VALUE ? null : longValue;
+                            break;
+                        case INT:
+                            int intValue = buffer.getInt();
+                            row[i] = intValue == Integer.MIN_VALUE ? null : intValue;
+                            break;
+                        default:
+                            short length = buffer.getShort();
+                            if (length >= 0) {
+                                byte[] bytes = new byte[length];
+                                buffer.get(bytes);
+                                row[i] = new String(bytes, StandardCharsets.UTF_8);
+                            }
+                    }
+                }
+                if (buffer.position() != end) {
+                    throw new IOException("Поврежденная запись в позиции " + end + ": " + file);
+                }
+                rows.accept(row);
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.desenalieva.springtasks.export;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Выгрузка сериалов и книг в CSV и двоичный формат без загрузки сущностей.
+ * <br>
+ * Строки читаются JDBC курсором (fetch size serial.stream.fetch-size) в одной readOnly транзакции с уровнем
+ * изоляции REPEATABLE_READ, поэтому выгрузка - согласованный снимок таблицы, даже если параллельно идут записи.
+ * Строки кодируются в direct буфер размером serial.export.buffer-size и пишутся в FileChannel.
+ * <br>
+ * При параллельной выгрузке курсор по-прежнему один (снимок бд нельзя разделить между соединениями):
+ * прочитанные строки режутся на диапазоны id по serial.export.chunk-rows, диапазоны кодируются и пишутся
+ * в файлы-части пулом потоков (в памяти не больше parallelism + 1 диапазонов), после чего части объединяются в итоговый файл по порядку (transferTo).
+ */
+@Service
+public class CatalogExporter {
+    private final TransactionTemplate snapshotTransaction;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int bufferSize;
+
+    private final int chunkRows;
+
+    /**
+     * Direct буферы, освободившиеся после предыдущих выгрузок (direct память освобождается только сборщиком мусора,
+     * поэтому буферы переиспользуются, а не создаются на каждую выгрузку и часть).
+     */
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    public CatalogExporter(DataSource dataSource,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${serial.stream.fetch-size}") int fetchSize,
+                           @Value("${serial.export.buffer-size}") int bufferSize,
+                           @Value("${serial.export.chunk-rows}") int chunkRows) {
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.bufferSize = bufferSize;
+        this.chunkRows = chunkRows;
+    }
+
+    /**
+     * Последовательная выгрузка таблицы.
+     * @param table  таблица
+     * @param format формат
+     * @param file   файл выгрузки (перезаписывается)
+     * @return результат выгрузки
+     */
+    public ExportResult export(ExportTable table, ExportFormat format, Path file) {
+        return export(table, format, file, 1);
+    }
+
+    /**
+     * Выгрузка таблицы.
+     * @param table       таблица
+     * @param format      формат
+     * @param file        файл выгрузки (перезаписывается)
+     * @param parallelism кол-во потоков кодирования и записи частей (1 - последовательная выгрузка)
+     * @return результат выгрузки
+     */
+    public ExportResult export(ExportTable table, ExportFormat format, Path file, int parallelism) {
+        long start = System.nanoTime();
+        return snapshotTransaction.execute(status -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = acquireBuffer();
+                ExportWriter writer = new ExportWriter(channel, buffer, format, table);
+                writer.writeHeader();
+                long rows;
+                int parts = 1;
+                if (parallelism <= 1) {
+                    jdbcTemplate.query(table.getSql(), resultSet -> {
+                        try {
+                            writer.writeRow(table.read(resultSet));
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                    writer.flush();
+                    rows = writer.getRows();
+                } else {
+                    writer.flush();
+                    List<Part> written = exportParts(table, format, file, channel, parallelism);
+                    rows = written.stream().mapToLong(part -> part.rows).sum();
+                    parts = written.size();
+                }
+                buffers.offer(buffer);
+                return new ExportResult(table, format, file, rows, channel.size(), parts, System.nanoTime() - start);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    private List<Part> exportParts(ExportTable table, ExportFormat format, Path file, FileChannel target,
+                                   int parallelism) throws IOException {
+        Path partsDir = Files.createTempDirectory(file.toAbsolutePath().getParent(), file.getFileName() + ".parts");
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ExportThreadFactory());
+        Semaphore inFlight = new Semaphore(parallelism + 1);
+        List<Future<Part>> futures = new ArrayList<>();
+        try {
+            List<Object[]> chunk = new ArrayList<>(chunkRows);
+            jdbcTemplate.query(table.getSql(), resultSet -> {
+                chunk.add(table.read(resultSet));
+                if (chunk.size() == chunkRows) {
+                    futures.add(submit(executor, inFlight, table, format, partsDir, futures.size(), chunk));
+                    chunk.clear();
+                }
+            });
+            if (!chunk.isEmpty()) {
+                futures.add(submit(executor, inFlight, table, format, partsDir, futures.size(), chunk));
+            }
+            List<Part> parts = new ArrayList<>(futures.size());
+            for (Future<Part> future : futures) {
+                Part part = future.get();
+                try (FileChannel source = FileChannel.open(part.file, StandardOpenOption.READ)) {
+                    long position = 0;
+                    long size = source.size();
+                    while (position < size) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                }
+                Files.delete(part.file);
+                parts.add(part);
+            }
+            return parts;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Выгрузка прервана", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException) cause);
+            }
+            throw new IllegalStateException("Ошибка выгрузки части", cause);
+        } finally {
+            executor.shutdownNow();
+            futures.forEach(future -> future.cancel(true));
+            try (var files = Files.list(partsDir)) {
+                for (Path part : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(part);
+                }
+            }
+            Files.deleteIfExists(partsDir);
+        }
+    }
+
+    private Future<Part> submit(ExecutorService executor, Semaphore inFlight, ExportTable table, ExportFormat format,
+                                Path partsDir, int index, List<Object[]> chunk) {
+        List<Object[]> rows = new ArrayList<>(chunk);
+        inFlight.acquireUninterruptibly();
+        return executor.submit(() -> {
+            ByteBuffer buffer = acquireBuffer();
+            try {
+                Path file = partsDir.resolve(String.format("part-%06d", index));
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    ExportWriter writer = new ExportWriter(channel, buffer, format, table);
+                    for (Object[] row : rows) {
+                        writer.writeRow(row);
+                    }
+                    writer.flush();
+                    return new Part(file, writer.getRows());
+                }
+            } finally {
+                buffers.offer(buffer);
+                inFlight.release();
+            }
+        });
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Записанная часть выгрузки.
+     */
+    private static class Part {
+        private final Path file;
+
+        private final long rows;
+
+        private Part(Path file, long rows) {
+            this.file = file;
+            this.rows = rows;
+        }
+    }
+
+    private static class ExportThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "catalog-export-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.desenalieva.springtasks.export;
+
+/**
+ * Формат выгрузки каталога.
+ */
+public enum ExportFormat {
+    /**
+     * CSV (RFC 4180) с заголовком, UTF-8, null - пустое поле.
+     */
+    CSV,
+    /**
+     * Компактный двоичный формат: заголовок файла (magic, версия, таблица), затем записи
+     * [длина записи int][поля], где long/int - 8/4 байта big-endian (null int - Integer.MIN_VALUE),
+     * строка - [длина short (-1 = null)][UTF-8 байты]. Читается {@link BinaryExportReader}.
+     */
+    BINARY
+}
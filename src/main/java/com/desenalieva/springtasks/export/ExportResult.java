@@ -0,0 +1,50 @@
+package com.desenalieva.springtasks.export;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.nio.file.Path;
+
+/**
+ * Результат выгрузки.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class ExportResult {
+    /**
+     * Таблица
+     */
+    private final ExportTable table;
+
+    /**
+     * Формат
+     */
+    private final ExportFormat format;
+
+    /**
+     * Файл выгрузки
+     */
+    private final Path file;
+
+    /**
+     * Кол-во выгруженных строк
+     */
+    private final long rows;
+
+    /**
+     * Размер файла, байт
+     */
+    private final long bytes;
+
+    /**
+     * Кол-во частей, объединенных в файл (1 при последовательной выгрузке)
+     */
+    private final int parts;
+
+    /**
+     * Длительность выгрузки, нс
+     */
+    private final long durationNanos;
+}
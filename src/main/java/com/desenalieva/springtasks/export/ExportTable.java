@@ -0,0 +1,70 @@
+package com.desenalieva.springtasks.export;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Выгружаемая таблица: запрос (по возрастанию id) и типы колонок.
+ */
+public enum ExportTable {
+    SERIAL("select id, name, rating from serial order by id",
+            new String[]{"id", "name", "rating"},
+            new ColumnType[]{ColumnType.LONG, ColumnType.STRING, ColumnType.INT}),
+    BOOK("select id, name, author from book order by id",
+            new String[]{"id", "name", "author"},
+            new ColumnType[]{ColumnType.LONG, ColumnType.STRING, ColumnType.STRING});
+
+    /**
+     * Тип колонки.
+     */
+    enum ColumnType {
+        LONG, INT, STRING
+    }
+
+    private final String sql;
+
+    private final String[] columns;
+
+    private final ColumnType[] types;
+
+    ExportTable(String sql, String[] columns, ColumnType[] types) {
+        this.sql = sql;
+        this.columns = columns;
+        this.types = types;
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    String[] getColumns() {
+        return columns;
+    }
+
+    ColumnType[] getTypes() {
+        return types;
+    }
+
+    /**
+     * Чтение текущей строки результата запроса.
+     * @return значения колонок (Long, Integer или String, null для null)
+     */
+    Object[] read(ResultSet resultSet) throws SQLException {
+        Object[] row = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case LONG:
+                    long longValue = resultSet.getLong(i + 1);
+                    row[i] = resultSet.wasNull() ? null : longValue;
+                    break;
+                case INT:
+                    int intValue = resultSet.getInt(i + 1);
+                    row[i] = resultSet.wasNull() ? null : intValue;
+                    break;
+                default:
+                    row[i] = resultSet.getString(i + 1);
+            }
+        }
+        return row;
+    }
+}
@@ -0,0 +1,155 @@
+package com.desenalieva.springtasks.export;
+
+import com.desenalieva.springtasks.export.ExportTable.ColumnType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Кодирование строк выгрузки в буфер и запись в канал при заполнении буфера.
+ */
+final class ExportWriter {
+    static final int MAGIC = 0x53455850;
+
+    static final byte VERSION = 1;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final ExportFormat format;
+
+    private final ExportTable table;
+
+    private final byte[][] strings;
+
+    private long rows;
+
+    ExportWriter(WritableByteChannel channel, ByteBuffer buffer, ExportFormat format, ExportTable table) {
+        this.channel = channel;
+        this.buffer = buffer.clear();
+        this.format = format;
+        this.table = table;
+        this.strings = new byte[table.getTypes().length][];
+    }
+
+    /**
+     * Запись заголовка файла (строка с названиями колонок для CSV, magic/версия/таблица для двоичного формата).
+     */
+    void writeHeader() throws IOException {
+        if (format == ExportFormat.CSV) {
+            byte[] header = (String.join(",", table.getColumns()) + "\n").getBytes(StandardCharsets.UTF_8);
+            ensureRemaining(header.length);
+            buffer.put(header);
+        } else {
+            ensureRemaining(6);
+            buffer.putInt(MAGIC).put(VERSION).put((byte) table.ordinal());
+        }
+    }
+
+    void writeRow(Object[] row) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writeCsv(row);
+        } else {
+            writeBinary(row);
+        }
+        rows++;
+    }
+
+    private void writeCsv(Object[] row) throws IOException {
+        int size = 0;
+        for (int i = 0; i < row.length; i++) {
+            strings[i] = row[i] == null ? EMPTY : csvField(row[i]).getBytes(StandardCharsets.UTF_8);
+            size += strings[i].length + 1;
+        }
+        ensureRemaining(size);
+        for (int i = 0; i < row.length; i++) {
+            buffer.put(strings[i]).put((byte) (i == row.length - 1 ? '\n' : ','));
+        }
+    }
+
+    private static String csvField(Object value) {
+        String field = value.toString();
+        if (value instanceof String && needsQuoting(field)) {
+            return '"' + field.replace("\"", "\"\"") + '"';
+        }
+        return field;
+    }
+
+    private static boolean needsQuoting(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeBinary(Object[] row) throws IOException {
+        ColumnType[] types = table.getTypes();
+        int size = 0;
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case LONG:
+                    size += Long.BYTES;
+                    break;
+                case INT:
+                    size += Integer.BYTES;
+                    break;
+                default:
+                    strings[i] = row[i] == null ? null : ((String) row[i]).getBytes(StandardCharsets.UTF_8);
+                    if (strings[i] != null && strings[i].length > Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("Строка длиннее " + Short.MAX_VALUE + " байт: " + row[0]);
+                    }
+                    size += Short.BYTES + (strings[i] == null ? 0 : strings[i].length);
+            }
+        }
+        ensureRemaining(Integer.BYTES + size);
+        buffer.putInt(size);
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case LONG:
+                    buffer.putLong(row[i] == null ? Long.MIN_VALUE : (Long) row[i]);
+                    break;
+                case INT:
+                    buffer.putInt(row[i] == null ? Integer.MIN_VALUE : (Integer) row[i]);
+                    break;
+                default:
+                    if (strings[i] == null) {
+                        buffer.putShort((short) -1);
+                    } else {
+                        buffer.putShort((short) strings[i].length).put(strings[i]);
+                    }
+            }
+        }
+    }
+
+    private void ensureRemaining(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+            if (buffer.remaining() < size) {
+                throw new IllegalArgumentException("Запись (" + size + " байт) не помещается в буфер выгрузки");
+            }
+        }
+    }
+
+    /**
+     * Запись содержимого буфера в канал.
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    long getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,41 @@
+package com.desenalieva.springtasks.ids;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.SimpleValue;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Разрешает сущностям с {@link PooledIdGenerator} сохранять объекты с id, назначенным вызывающим кодом.
+ * <br>
+ * Для генерируемого id Hibernate считает объект с заполненным id отсоединенным (persist такого объекта
+ * завершается PersistentObjectException). Интегратор выставляет идентификатору unsaved-value = undefined,
+ * как у назначаемых id: объект с id = null - новый, с заполненным id - определяется как и раньше.
+ * То же для версии: иначе Hibernate по версии 0 (значение нового объекта) считает новым и объект
+ * с назначенным id, и merge такого объекта вставляет строку повторно.
+ * Интеграторы вызываются до создания persister'ов, поэтому настройка попадает в метамодель.
+ */
+public class AssignedIdIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        for (PersistentClass entity : metadata.getEntityBindings()) {
+            if (entity.getIdentifier() instanceof SimpleValue) {
+                SimpleValue identifier = (SimpleValue) entity.getIdentifier();
+                if (PooledIdGenerator.class.getName().equals(identifier.getIdentifierGeneratorStrategy())) {
+                    identifier.setNullValue("undefined");
+                    if (entity.getVersion() != null) {
+                        ((SimpleValue) entity.getVersion().getValue()).setNullValue("undefined");
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.desenalieva.springtasks.ids;
+
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Настройка генерации идентификаторов блоками (см. {@link PooledIdGenerator}).
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    /**
+     * Передача в Hibernate размера блока (serial.id.block-size) и {@link AssignedIdIntegrator}.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer pooledIdGeneratorCustomizer(@Value("${serial.id.block-size}") int blockSize) {
+        return properties -> {
+            properties.put(PooledIdGenerator.BLOCK_SIZE, blockSize);
+            properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                    (IntegratorProvider) () -> List.of(new AssignedIdIntegrator()));
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.desenalieva.springtasks.ids;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.jdbc.AbstractReturningWork;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Properties;
+
+/**
+ * Генератор идентификаторов блоками из таблицы id_block (строка на таблицу сущности: entity, next_val).
+ * <br>
+ * Используется {@link TableGenerator} с оптимизатором pooled-lo: за одно обращение к таблице (в отдельной
+ * транзакции, с select ... for update и update с проверкой старого значения) узел резервирует блок из
+ * serial.id.block-size идентификаторов и дальше выдает их из памяти, поэтому несколько потоков и несколько
+ * экземпляров приложения на одной бд получают непересекающиеся блоки. Генератор табличный, а не identity,
+ * поэтому JDBC батчи при вставке продолжают работать.
+ * <br>
+ * Идентификатор, заданный вызывающим кодом, сохраняется (см. {@link AssignedIdIntegrator}). Перед выдачей первого
+ * блока next_val поднимается выше максимального id в таблице сущности, чтобы блоки не пересекались с ранее
+ * назначенными вручную id; id, назначенные вручную после этого, должны лежать вне выданных блоков.
+ */
+public class PooledIdGenerator extends TableGenerator {
+    /**
+     * Настройка Hibernate с размером блока (spring.jpa.properties.serial.id.block-size)
+     */
+    public static final String BLOCK_SIZE = "serial.id.block-size";
+
+    private static final String DEFAULT_TABLE = "id_block";
+
+    private static final String DEFAULT_SEGMENT_COLUMN = "entity";
+
+    private String entityTable;
+
+    private String entityIdColumn;
+
+    private volatile boolean seeded;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        params.putIfAbsent(TABLE_PARAM, DEFAULT_TABLE);
+        params.putIfAbsent(SEGMENT_COLUMN_PARAM, DEFAULT_SEGMENT_COLUMN);
+        params.putIfAbsent(CONFIG_PREFER_SEGMENT_PER_ENTITY, "true");
+        params.putIfAbsent(OPT_PARAM, "pooled-lo");
+        Object blockSize = serviceRegistry.getService(ConfigurationService.class).getSettings().get(BLOCK_SIZE);
+        if (blockSize != null) {
+            params.putIfAbsent(INCREMENT_PARAM, blockSize.toString());
+        }
+        entityTable = params.getProperty(PersistentIdentifierGenerator.TABLE);
+        entityIdColumn = params.getProperty(PersistentIdentifierGenerator.PK);
+        super.configure(type, params, serviceRegistry);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        Serializable assigned = session.getEntityPersister(null, object).getIdentifier(object, session);
+        if (assigned != null) {
+            return assigned;
+        }
+        if (!seeded) {
+            seed(session);
+        }
+        return super.generate(session, object);
+    }
+
+    /**
+     * Подъем next_val выше максимального id в таблице сущности (один раз на экземпляр генератора).
+     */
+    private synchronized void seed(SharedSessionContractImplementor session) {
+        if (seeded) {
+            return;
+        }
+        String forUpdate = session.getJdbcServices().getDialect().getForUpdateString();
+        String select = "select " + getValueColumnName() + " from " + getTableName()
+                + " where " + getSegmentColumnName() + " = ?" + forUpdate;
+        String update = "update " + getTableName() + " set " + getValueColumnName() + " = ? where "
+                + getSegmentColumnName() + " = ?";
+        String insert = "insert into " + getTableName() + " (" + getSegmentColumnName() + ", "
+                + getValueColumnName() + ") values (?, ?)";
+        String maxId = "select max(" + entityIdColumn + ") from " + entityTable;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                session.getTransactionCoordinator().createIsolationDelegate().delegateWork(
+                        new AbstractReturningWork<Void>() {
+                            @Override
+                            public Void execute(Connection connection) throws SQLException {
+                                Long next = null;
+                                try (PreparedStatement statement = connection.prepareStatement(select)) {
+                                    statement.setString(1, getSegmentValue());
+                                    try (ResultSet resultSet = statement.executeQuery()) {
+                                        if (resultSet.next()) {
+                                            next = resultSet.getLong(1);
+                                        }
+                                    }
+                                }
+                                long required = getInitialValue();
+                                try (PreparedStatement statement = connection.prepareStatement(maxId);
+                                     ResultSet resultSet = statement.executeQuery()) {
+                                    if (resultSet.next() && resultSet.getObject(1) != null) {
+                                        required = Math.max(required, resultSet.getLong(1) + 1);
+                                    }
+                                }
+                                if (next == null) {
+                                    try (PreparedStatement statement = connection.prepareStatement(insert)) {
+                                        statement.setString(1, getSegmentValue());
+                                        statement.setLong(2, required);
+                                        statement.executeUpdate();
+                                    }
+                                } else if (next < required) {
+                                    try (PreparedStatement statement = connection.prepareStatement(update)) {
+                                        statement.setLong(1, required);
+                                        statement.setString(2, getSegmentValue());
+                                        statement.executeUpdate();
+                                    }
+                                }
+                                return null;
+                            }
+                        }, true);
+                seeded = true;
+                return;
+            } catch (HibernateException ex) {
+                // строку сегмента одновременно вставил другой экземпляр приложения - повторяем с select for update
+                if (attempt == 2 || !(ex.getCause() instanceof SQLIntegrityConstraintViolationException)) {
+                    throw ex;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.desenalieva.springtasks.importer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Контрольная точка импорта: смещение и номер строки, до которых файл импортирован и закоммичен,
+ * и идентификатор первой строки файла (id строки = firstId + номер строки).
+ */
+final class ImportCheckpoint {
+    private final long firstId;
+
+    private final long offset;
+
+    private final long line;
+
+    ImportCheckpoint(long firstId, long offset, long line) {
+        this.firstId = firstId;
+        this.offset = offset;
+        this.line = line;
+    }
+
+    long getFirstId() {
+        return firstId;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    long getLine() {
+        return line;
+    }
+
+    ImportCheckpoint advance(long offset, long lines) {
+        return new ImportCheckpoint(firstId, offset, line + lines);
+    }
+
+    /**
+     * Чтение контрольной точки.
+     * @return контрольная точка или null, если файла нет
+     */
+    static ImportCheckpoint load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (var reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new ImportCheckpoint(Long.parseLong(properties.getProperty("firstId")),
+                Long.parseLong(properties.getProperty("offset")),
+                Long.parseLong(properties.getProperty("line")));
+    }
+
+    /**
+     * Атомарная запись контрольной точки (через временный файл).
+     */
+    void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.writeString(temp, "firstId=" + firstId + "\noffset=" + offset + "\nline=" + line + "\n");
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,55 @@
+package com.desenalieva.springtasks.importer;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.nio.file.Path;
+
+/**
+ * Результат импорта файла информации о сериалах.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class ImportResult {
+    /**
+     * Импортируемый файл
+     */
+    private final Path file;
+
+    /**
+     * Смещение в файле, с которого начат импорт (не 0 при продолжении с контрольной точки)
+     */
+    private final long startOffset;
+
+    /**
+     * Смещение в файле после последней импортированной строки
+     */
+    private final long endOffset;
+
+    /**
+     * Кол-во обработанных строк
+     */
+    private final long lines;
+
+    /**
+     * Кол-во сохраненных сериалов
+     */
+    private final long imported;
+
+    /**
+     * Кол-во некорректных строк (см. отчет {@link #badLineReport})
+     */
+    private final long badLines;
+
+    /**
+     * Отчет о некорректных строках
+     */
+    private final Path badLineReport;
+
+    /**
+     * Длительность импорта, нс
+     */
+    private final long durationNanos;
+}
@@ -0,0 +1,72 @@
+package com.desenalieva.springtasks.importer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Разобранная часть файла: корректные строки (название, рейтинг и номер строки в части) и некорректные строки.
+ */
+final class ParsedChunk {
+    /**
+     * Значение рейтинга null
+     */
+    static final int NULL_RATING = Integer.MIN_VALUE;
+
+    final long startOffset;
+
+    final long endOffset;
+
+    int lines;
+
+    int size;
+
+    String[] names;
+
+    int[] ratings;
+
+    int[] lineNumbers;
+
+    final List<BadLine> badLines = new ArrayList<>();
+
+    ParsedChunk(long startOffset, long endOffset, int capacity) {
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.names = new String[capacity];
+        this.ratings = new int[capacity];
+        this.lineNumbers = new int[capacity];
+    }
+
+    void add(String name, int rating) {
+        if (size == names.length) {
+            int capacity = Math.max(16, size * 2);
+            names = Arrays.copyOf(names, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+        }
+        names[size] = name;
+        ratings[size] = rating;
+        lineNumbers[size++] = lines;
+    }
+
+    void bad(String reason, String text) {
+        badLines.add(new BadLine(lines, reason, text));
+    }
+
+    /**
+     * Некорректная строка.
+     */
+    static final class BadLine {
+        final int line;
+
+        final String reason;
+
+        final String text;
+
+        BadLine(int line, String reason, String text) {
+            this.line = line;
+            this.reason = reason;
+            this.text = text;
+        }
+    }
+}
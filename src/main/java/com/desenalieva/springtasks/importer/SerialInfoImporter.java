@@ -0,0 +1,184 @@
+package com.desenalieva.springtasks.importer;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Импорт файла информации о сериалах (строки вида "name, rating", которые пишет
+ * {@link com.desenalieva.springtasks.writers.SerialInfoWriter}).
+ * <br>
+ * Файл отображается в память частями по serial.import.chunk-size байт, граница части сдвигается к концу строки.
+ * Части разбираются параллельно в ForkJoinPool (serial.import.parallelism потоков, впереди вставки разбирается
+ * не больше 2 * parallelism частей), а сохраняются по порядку: каждая часть - в своей транзакции через
+ * {@link SerialRepository#persistAll} (JDBC батчи). В файле нет идентификаторов, id строки = firstId + номер строки
+ * (с 0), поэтому повторный импорт дает те же id; некорректная строка свой id не занимает в бд, но номер сохраняет.
+ * <br>
+ * После коммита части ее конец записывается в контрольную точку (файл.checkpoint), некорректные строки -
+ * в отчет (файл.bad: номер строки, причина, строка). Повторный вызов продолжает импорт с контрольной точки,
+ * поэтому файл, в который продолжается запись, можно импортировать инкрементально; недописанная последняя строка
+ * (без перевода строки) не импортируется. Если процесс упал между коммитом части и записью контрольной точки,
+ * при продолжении из частей исключаются уже сохраненные сериалы (по диапазону id части). Проверять только первый
+ * сериал части нельзя: если файл дописан, часть с той же начальной позиции длиннее сохраненной и содержит новые строки.
+ */
+@Service
+public class SerialInfoImporter {
+    private final static Logger log = LoggerFactory.getLogger(SerialInfoImporter.class);
+
+    private final SerialRepository serialRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int chunkSize;
+
+    private final int parallelism;
+
+    public SerialInfoImporter(SerialRepository serialRepository,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${serial.import.chunk-size}") int chunkSize,
+                              @Value("${serial.import.parallelism}") int parallelism) {
+        this.serialRepository = serialRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Импорт файла (или продолжение импорта с контрольной точки).
+     * @param file    файл информации о сериалах
+     * @param firstId идентификатор сериала из первой строки файла
+     * @return результат импорта
+     */
+    public ImportResult importFile(Path file, long firstId) {
+        long start = System.nanoTime();
+        Path checkpointPath = file.resolveSibling(file.getFileName() + ".checkpoint");
+        Path reportPath = file.resolveSibling(file.getFileName() + ".bad");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedWriter report = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            ImportCheckpoint checkpoint = ImportCheckpoint.load(checkpointPath);
+            if (checkpoint == null) {
+                checkpoint = new ImportCheckpoint(firstId, 0, 0);
+            } else if (checkpoint.getFirstId() != firstId) {
+                throw new IllegalStateException("Импорт " + file + " начат с firstId = " + checkpoint.getFirstId());
+            }
+            long size = channel.size();
+            if (checkpoint.getOffset() > size) {
+                throw new IllegalStateException("Файл " + file + " короче контрольной точки " + checkpoint.getOffset());
+            }
+            long startOffset = checkpoint.getOffset();
+            long lines = 0;
+            long imported = 0;
+            long badLines = 0;
+            boolean resumed = startOffset > 0;
+            Deque<ForkJoinTask<ParsedChunk>> parsing = new ArrayDeque<>();
+            long next = startOffset;
+            while (true) {
+                while (parsing.size() < parallelism * 2 && next < size) {
+                    MappedByteBuffer buffer = mapChunk(channel, next, size);
+                    if (buffer == null) {
+                        size = next;
+                        break;
+                    }
+                    long offset = next;
+                    parsing.add(pool.submit(() -> new SerialInfoParser().parse(buffer, offset)));
+                    next += buffer.limit();
+                }
+                if (parsing.isEmpty()) {
+                    break;
+                }
+                ParsedChunk chunk = parsing.poll().join();
+                List<Serial> serials = toSerials(chunk, checkpoint.getFirstId() + checkpoint.getLine());
+                long reportedLine = -1;
+                if (resumed && !serials.isEmpty()) {
+                    List<Long> existingIds = serialRepository.findIdsBetween(serials.get(0).getId(),
+                            serials.get(serials.size() - 1).getId());
+                    if (existingIds.isEmpty()) {
+                        resumed = false;
+                    } else {
+                        log.info("Часть {}..{} файла {}: уже импортировано {} из {} строк", chunk.startOffset,
+                                chunk.endOffset, file, existingIds.size(), serials.size());
+                        serials.removeIf(serial -> Collections.binarySearch(existingIds, serial.getId()) >= 0);
+                        reportedLine = existingIds.get(existingIds.size() - 1) - checkpoint.getFirstId()
+                                - checkpoint.getLine();
+                    }
+                }
+                if (!serials.isEmpty()) {
+                    transactionTemplate.executeWithoutResult(status -> serialRepository.persistAll(serials));
+                    imported += serials.size();
+                }
+                for (ParsedChunk.BadLine badLine : chunk.badLines) {
+                    if (badLine.line > reportedLine) {
+                        report.write((checkpoint.getLine() + badLine.line + 1) + "\t" + badLine.reason + "\t"
+                                + badLine.text + "\n");
+                        badLines++;
+                    }
+                }
+                report.flush();
+                lines += chunk.lines;
+                checkpoint = checkpoint.advance(chunk.endOffset, chunk.lines);
+                checkpoint.save(checkpointPath);
+            }
+            return new ImportResult(file, startOffset, checkpoint.getOffset(), lines, imported, badLines, reportPath,
+                    System.nanoTime() - start);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Отображение части файла, начиная со start, до последнего перевода строки в пределах serial.import.chunk-size
+     * (если строка длиннее, то часть увеличивается до ее конца).
+     * @return часть файла или null, если после start нет ни одной полной строки
+     */
+    private MappedByteBuffer mapChunk(FileChannel channel, long start, long size) throws IOException {
+        long length = Math.min(chunkSize, size - start);
+        while (true) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            for (int i = (int) length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    buffer.limit(i + 1);
+                    return buffer;
+                }
+            }
+            if (start + length == size) {
+                return null;
+            }
+            length = Math.min(Math.min(length * 2, Integer.MAX_VALUE), size - start);
+        }
+    }
+
+    private static List<Serial> toSerials(ParsedChunk chunk, long firstId) {
+        List<Serial> serials = new ArrayList<>(chunk.size);
+        for (int i = 0; i < chunk.size; i++) {
+            int rating = chunk.ratings[i];
+            serials.add(new Serial(firstId + chunk.lineNumbers[i], chunk.names[i],
+                    rating == ParsedChunk.NULL_RATING ? null : rating));
+        }
+        return serials;
+    }
+}
@@ -0,0 +1,109 @@
+package com.desenalieva.springtasks.importer;
+
+import com.desenalieva.springtasks.entities.Serial;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Разбор строк вида "name, rating" (см. {@link com.desenalieva.springtasks.writers.SerialInfoWriter})
+ * прямо из байтового буфера: строка целиком в String не копируется, рейтинг разбирается из байтов,
+ * для каждой корректной строки создается только название. Рейтинг отделяется последней запятой,
+ * поэтому запятые в названии допустимы; "null" - рейтинг (или название) null. Название длиннее колонки
+ * ({@link Serial#MAX_NAME_LENGTH}) - некорректная строка, иначе вставка всей части упала бы на этой строке.
+ */
+final class SerialInfoParser {
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] bytes = new byte[256];
+
+    /**
+     * Разбор части файла.
+     * @param buffer      строки части (последняя строка заканчивается переводом строки)
+     * @param startOffset смещение части в файле
+     * @return разобранная часть
+     */
+    ParsedChunk parse(ByteBuffer buffer, long startOffset) {
+        int limit = buffer.limit();
+        ParsedChunk chunk = new ParsedChunk(startOffset, startOffset + limit, limit / 16 + 1);
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                int lineEnd = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                parseLine(buffer, lineStart, lineEnd, chunk);
+                chunk.lines++;
+                lineStart = i + 1;
+            }
+        }
+        return chunk;
+    }
+
+    private void parseLine(ByteBuffer buffer, int start, int end, ParsedChunk chunk) {
+        int comma = end - 1;
+        while (comma >= start && buffer.get(comma) != ',') {
+            comma--;
+        }
+        if (comma < start) {
+            chunk.bad("нет рейтинга", text(buffer, start, end));
+            return;
+        }
+        int ratingStart = comma + 1;
+        while (ratingStart < end && buffer.get(ratingStart) == ' ') {
+            ratingStart++;
+        }
+        int rating;
+        if (equalsNull(buffer, ratingStart, end)) {
+            rating = ParsedChunk.NULL_RATING;
+        } else if (ratingStart == end || end - ratingStart > 9) {
+            chunk.bad("некорректный рейтинг", text(buffer, start, end));
+            return;
+        } else {
+            rating = 0;
+            for (int i = ratingStart; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    chunk.bad("некорректный рейтинг", text(buffer, start, end));
+                    return;
+                }
+                rating = rating * 10 + digit;
+            }
+            if (rating < Serial.MIN_RATING || rating > Serial.MAX_RATING) {
+                chunk.bad("рейтинг вне диапазона " + Serial.MIN_RATING + ".." + Serial.MAX_RATING,
+                        text(buffer, start, end));
+                return;
+            }
+        }
+        String name = null;
+        if (!equalsNull(buffer, start, comma)) {
+            name = text(buffer, start, comma);
+            if (name.length() > Serial.MAX_NAME_LENGTH) {
+                chunk.bad("название длиннее " + Serial.MAX_NAME_LENGTH + " символов", text(buffer, start, end));
+                return;
+            }
+        }
+        chunk.add(name, rating);
+    }
+
+    private static boolean equalsNull(ByteBuffer buffer, int start, int end) {
+        if (end - start != NULL.length) {
+            return false;
+        }
+        for (int i = 0; i < NULL.length; i++) {
+            if (buffer.get(start + i) != NULL[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String text(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+package com.desenalieva.springtasks.index;
+
+import com.desenalieva.springtasks.projections.SerialRatingDto;
+import org.springframework.transaction.support.TransactionSynchronization;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Изменения индекса рейтингов в одной транзакции. Применяются к индексу только после коммита.
+ */
+final class RatingDelta implements TransactionSynchronization {
+    private final RatingIndex index;
+
+    final long[] counts;
+
+    long unrated;
+
+    long ratingSum;
+
+    /**
+     * В транзакции была массовая операция, изменения которой неизвестны - после коммита индекс перестраивается
+     */
+    boolean stale;
+
+    /**
+     * Лучшие из добавленных и измененных сериалов (null, если топ сериалов не ведется)
+     */
+    final TopRated added;
+
+    /**
+     * Идентификаторы удаленных и измененных сериалов (их прежние значения убираются из топа)
+     */
+    final List<Long> removed = new ArrayList<>();
+
+    private boolean committing;
+
+    RatingDelta(RatingIndex index, int ratings, int topK) {
+        this.index = index;
+        this.counts = new long[ratings];
+        this.added = topK > 0 ? new TopRated(topK) : null;
+    }
+
+    void add(SerialRatingDto serial) {
+        if (added != null) {
+            added.offer(serial);
+        }
+    }
+
+    void remove(long id) {
+        if (added != null) {
+            removed.add(id);
+            // вытесненный ранее из добавленных сериал мог бы занять освободившееся место
+            stale |= added.remove(id) && !added.isComplete();
+        }
+    }
+
+    RatingIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+        committing = true;
+        index.beforeCommit();
+    }
+
+    @Override
+    public void afterCommit() {
+        index.afterCommit(this);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        if (committing) {
+            index.afterCompletion();
+        }
+    }
+}
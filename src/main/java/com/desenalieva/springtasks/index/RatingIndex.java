@@ -0,0 +1,469 @@
+package com.desenalieva.springtasks.index;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.projections.RatingCount;
+import com.desenalieva.springtasks.projections.SerialRatingDto;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс рейтингов сериалов в памяти: кол-во сериалов по каждому рейтингу, без рейтинга и всего,
+ * сумма рейтингов. Кол-во, средний рейтинг и распределение возвращаются за O(1) без запросов к бд.
+ * <br>
+ * Индекс строится при старте приложения запросом с группировкой и дальше обновляется по post-insert/update/delete
+ * событиям Hibernate: изменения копятся в синхронизации текущей транзакции ({@link RatingDelta})
+ * и применяются только после коммита, при откате отбрасываются. Массовые операции в обход сессии
+ * (JDBC, bulk DELETE/UPDATE) изменений по сущностям не дают, поэтому вызывающий код помечает транзакцию
+ * через {@link #markStale()}, и после ее коммита индекс перестраивается.
+ * <br>
+ * Перестроение не блокирует запись: счетчики читаются из бд без блокировок и принимаются, только если за это
+ * время ни одна транзакция не закоммитила изменения сериалов (иначе чтение повторяется).
+ * Изменения вне транзакций Spring применяются сразу. Для проверки индекса есть {@link #verify()}.
+ * <br>
+ * Если serial.index.top-k больше 0, индекс также хранит ограниченную кучу из top-k лучших сериалов
+ * (рейтинг по убыванию, затем id по убыванию), которая обновляется теми же коммитами. Когда сериал уходит
+ * из полного топа и заменить его известным индексу сериалом нельзя, индекс перестраивается
+ * (топ читается keyset запросом по индексу (rating, id)).
+ */
+@Component
+@ManagedResource(description = "Индекс рейтингов сериалов")
+public class RatingIndex implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    private final static Logger log = LoggerFactory.getLogger(RatingIndex.class);
+
+    private static final int RATINGS = Serial.MAX_RATING - Serial.MIN_RATING + 1;
+
+    private static final int REBUILD_ATTEMPTS = 10;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final SerialRepository serialRepository;
+
+    private final TransactionTemplate rebuildTransaction;
+
+    /**
+     * Размер топа сериалов (0 - топ не ведется)
+     */
+    private final int topK;
+
+    private final StampedLock lock = new StampedLock();
+
+    private final long[] counts = new long[RATINGS];
+
+    private long unrated;
+
+    private long total;
+
+    private long ratingSum;
+
+    private final TopRated topRated;
+
+    /**
+     * Кол-во примененных к индексу транзакций (меняется под блокировкой записи)
+     */
+    private long applied;
+
+    /**
+     * Кол-во транзакций с изменениями сериалов между beforeCommit и применением изменений
+     */
+    private final AtomicInteger committing = new AtomicInteger();
+
+    public RatingIndex(EntityManagerFactory entityManagerFactory,
+                       SerialRepository serialRepository,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${serial.index.top-k}") int topK) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.serialRepository = serialRepository;
+        this.topK = topK;
+        this.topRated = topK > 0 ? new TopRated(topK) : null;
+        this.rebuildTransaction = new TransactionTemplate(transactionManager);
+        this.rebuildTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Регистрация слушателей в Hibernate.
+     */
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * Построение индекса при старте приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+        log.info("Индекс рейтингов построен: {}", getStatistics());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Serial) {
+            RatingDelta delta = currentDelta();
+            Integer rating = rating(event.getPersister(), event.getState());
+            add(delta, rating, 1);
+            delta.add(new SerialRatingDto((Long) event.getId(), rating));
+            applyIfNoTransaction(delta);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Serial) {
+            RatingDelta delta = currentDelta();
+            if (event.getOldState() == null) {
+                // обновление отсоединенной сущности без снимка состояния - старый рейтинг неизвестен
+                delta.stale = true;
+            } else {
+                Integer rating = rating(event.getPersister(), event.getState());
+                add(delta, rating(event.getPersister(), event.getOldState()), -1);
+                add(delta, rating, 1);
+                delta.remove((Long) event.getId());
+                delta.add(new SerialRatingDto((Long) event.getId(), rating));
+            }
+            applyIfNoTransaction(delta);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Serial) {
+            RatingDelta delta = currentDelta();
+            if (event.getDeletedState() == null) {
+                delta.stale = true;
+            } else {
+                add(delta, rating(event.getPersister(), event.getDeletedState()), -1);
+                delta.remove((Long) event.getId());
+            }
+            applyIfNoTransaction(delta);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Пометка текущей транзакции: в ней изменены сериалы в обход сессии Hibernate,
+     * после коммита индекс нужно перестроить (вне транзакции индекс перестраивается сразу).
+     */
+    public void markStale() {
+        RatingDelta delta = currentDelta();
+        delta.stale = true;
+        applyIfNoTransaction(delta);
+    }
+
+    private static Integer rating(EntityPersister persister, Object[] state) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("rating")];
+    }
+
+    private static void add(RatingDelta delta, Integer rating, int count) {
+        if (rating == null) {
+            delta.unrated += count;
+        } else {
+            delta.counts[rating - Serial.MIN_RATING] += count;
+            delta.ratingSum += (long) rating * count;
+        }
+    }
+
+    /**
+     * @return изменения индекса в текущей транзакции (синхронизация регистрируется при первом изменении)
+     */
+    private RatingDelta currentDelta() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new RatingDelta(this, RATINGS, topK);
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof RatingDelta && ((RatingDelta) synchronization).getIndex() == this) {
+                return (RatingDelta) synchronization;
+            }
+        }
+        RatingDelta delta = new RatingDelta(this, RATINGS, topK);
+        TransactionSynchronizationManager.registerSynchronization(delta);
+        return delta;
+    }
+
+    private void applyIfNoTransaction(RatingDelta delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            afterCommit(delta);
+        }
+    }
+
+    void beforeCommit() {
+        committing.incrementAndGet();
+    }
+
+    void afterCommit(RatingDelta delta) {
+        if (delta.stale) {
+            // текущая транзакция уже учтена в committing
+            rebuild(1);
+            return;
+        }
+        boolean complete = true;
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < RATINGS; i++) {
+                counts[i] += delta.counts[i];
+                total += delta.counts[i];
+            }
+            unrated += delta.unrated;
+            total += delta.unrated;
+            ratingSum += delta.ratingSum;
+            if (topRated != null) {
+                delta.removed.forEach(topRated::remove);
+                delta.added.values().forEach(topRated::offer);
+                complete = topRated.isComplete();
+            }
+            applied++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (!complete) {
+            rebuild(1);
+        }
+    }
+
+    void afterCompletion() {
+        committing.decrementAndGet();
+    }
+
+    /**
+     * Перестроение индекса (и топа сериалов) по бд.
+     * Если во время чтения коммитились изменения сериалов, чтение повторяется (до 10 раз,
+     * после чего принимается последний результат с предупреждением в логе).
+     */
+    @ManagedOperation(description = "Перестроение индекса по бд")
+    public void rebuild() {
+        rebuild(0);
+    }
+
+    /**
+     * @param own кол-во транзакций в committing, которые вызывают перестроение
+     */
+    private void rebuild(int own) {
+        for (int attempt = 1; ; attempt++) {
+            long appliedBefore = applied();
+            boolean quiet = committing.get() <= own;
+            // своя транзакция: при вызове из afterCommit ресурсы завершенной транзакции еще привязаны к потоку
+            List<Serial> top = new ArrayList<>();
+            List<RatingCount> ratingCounts = rebuildTransaction.execute(status -> {
+                if (topRated != null) {
+                    top.addAll(serialRepository.findTopRated(topK));
+                }
+                return serialRepository.countByRating();
+            });
+            long stamp = lock.writeLock();
+            try {
+                quiet &= applied == appliedBefore && committing.get() <= own;
+                if (quiet || attempt == REBUILD_ATTEMPTS) {
+                    if (!quiet) {
+                        log.warn("Индекс рейтингов перестроен при конкурентной записи, возможны расхождения");
+                    }
+                    Arrays.fill(counts, 0);
+                    unrated = 0;
+                    total = 0;
+                    ratingSum = 0;
+                    for (RatingCount ratingCount : ratingCounts) {
+                        if (ratingCount.getRating() == null) {
+                            unrated = ratingCount.getCount();
+                        } else {
+                            counts[ratingCount.getRating() - Serial.MIN_RATING] = ratingCount.getCount();
+                            ratingSum += ratingCount.getRating() * ratingCount.getCount();
+                        }
+                        total += ratingCount.getCount();
+                    }
+                    if (topRated != null) {
+                        topRated.load(top.stream()
+                                .map(serial -> new SerialRatingDto(serial.getId(), serial.getRating()))
+                                .collect(Collectors.toList()));
+                    }
+                    applied++;
+                    return;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private long applied() {
+        long stamp = lock.readLock();
+        try {
+            return applied;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return лучшие сериалы по рейтингу (не более serial.index.top-k, от лучшего к худшему)
+     * @throws IllegalStateException если топ сериалов не ведется (serial.index.top-k = 0)
+     */
+    @ManagedAttribute(description = "Лучшие сериалы по рейтингу")
+    public List<SerialRatingDto> getTopRated() {
+        return getTopRated(topK);
+    }
+
+    /**
+     * @param limit кол-во сериалов (не больше serial.index.top-k)
+     * @return лучшие сериалы по рейтингу от лучшего к худшему
+     * @throws IllegalStateException если топ сериалов не ведется или limit больше его размера
+     */
+    public List<SerialRatingDto> getTopRated(int limit) {
+        if (topRated == null) {
+            throw new IllegalStateException("Топ сериалов не ведется (serial.index.top-k = 0)");
+        }
+        if (limit > topK) {
+            throw new IllegalStateException("Индекс хранит топ из " + topK + " сериалов, запрошено " + limit);
+        }
+        long stamp = lock.readLock();
+        try {
+            return topRated.best(limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Сверка индекса (и топа сериалов) с бд.
+     * Результат достоверен, если во время сверки не коммитятся изменения сериалов.
+     * @return true, если индекс совпадает с бд
+     */
+    @ManagedOperation(description = "Сверка индекса с бд")
+    public boolean verify() {
+        long[] expected = new long[RATINGS];
+        long expectedUnrated = 0;
+        for (RatingCount ratingCount : rebuildTransaction.execute(status -> serialRepository.countByRating())) {
+            if (ratingCount.getRating() == null) {
+                expectedUnrated = ratingCount.getCount();
+            } else {
+                expected[ratingCount.getRating() - Serial.MIN_RATING] = ratingCount.getCount();
+            }
+        }
+        RatingStatistics statistics = getStatistics();
+        boolean consistent = Arrays.equals(expected, statistics.getDistribution()) && expectedUnrated == statistics.getUnrated();
+        if (!consistent) {
+            log.warn("Индекс рейтингов расходится с бд: в индексе {} (без рейтинга {}), в бд {} (без рейтинга {})",
+                    Arrays.toString(statistics.getDistribution()), statistics.getUnrated(),
+                    Arrays.toString(expected), expectedUnrated);
+        }
+        if (topRated != null) {
+            List<Long> expectedTop = rebuildTransaction.execute(status -> serialRepository.findTopRated(topK)).stream()
+                    .map(Serial::getId)
+                    .collect(Collectors.toList());
+            List<Long> top = getTopRated().stream()
+                    .map(SerialRatingDto::getId)
+                    .collect(Collectors.toList());
+            if (!expectedTop.equals(top)) {
+                log.warn("Топ сериалов расходится с бд: в индексе {}, в бд {}", top, expectedTop);
+                consistent = false;
+            }
+        }
+        return consistent;
+    }
+
+    /**
+     * @return кол-во сериалов
+     */
+    @ManagedAttribute(description = "Кол-во сериалов")
+    public long count() {
+        long stamp = lock.tryOptimisticRead();
+        long count = total;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = total;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param rating рейтинг
+     * @return кол-во сериалов с рейтингом
+     */
+    public long count(int rating) {
+        if (rating < Serial.MIN_RATING || rating > Serial.MAX_RATING) {
+            return 0;
+        }
+        long stamp = lock.tryOptimisticRead();
+        long count = counts[rating - Serial.MIN_RATING];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = counts[rating - Serial.MIN_RATING];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return средний рейтинг сериалов с рейтингом (NaN, если таких нет)
+     */
+    @ManagedAttribute(description = "Средний рейтинг")
+    public double average() {
+        return getStatistics().getAverage();
+    }
+
+    /**
+     * @return снимок индекса (согласованный: кол-ва и сумма относятся к одному состоянию)
+     */
+    @ManagedAttribute(description = "Снимок индекса")
+    public RatingStatistics getStatistics() {
+        long[] distribution = new long[RATINGS];
+        long stamp = lock.tryOptimisticRead();
+        System.arraycopy(counts, 0, distribution, 0, RATINGS);
+        long unratedCount = unrated;
+        long count = total;
+        long sum = ratingSum;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                System.arraycopy(counts, 0, distribution, 0, RATINGS);
+                unratedCount = unrated;
+                count = total;
+                sum = ratingSum;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        long rated = count - unratedCount;
+        return new RatingStatistics(count, unratedCount, rated == 0 ? Double.NaN : (double) sum / rated, distribution);
+    }
+}
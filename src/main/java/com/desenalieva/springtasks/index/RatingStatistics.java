@@ -0,0 +1,33 @@
+package com.desenalieva.springtasks.index;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Снимок индекса рейтингов.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class RatingStatistics {
+    /**
+     * Кол-во сериалов
+     */
+    private final long count;
+
+    /**
+     * Кол-во сериалов без рейтинга
+     */
+    private final long unrated;
+
+    /**
+     * Средний рейтинг (по сериалам с рейтингом, NaN если таких нет)
+     */
+    private final double average;
+
+    /**
+     * Кол-во сериалов по рейтингам (элемент i - рейтинг Serial.MIN_RATING + i)
+     */
+    private final long[] distribution;
+}
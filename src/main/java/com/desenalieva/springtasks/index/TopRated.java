@@ -0,0 +1,93 @@
+package com.desenalieva.springtasks.index;
+
+import com.desenalieva.springtasks.projections.SerialRatingDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Ограниченная куча лучших сериалов по рейтингу (порядок: рейтинг по убыванию, затем id по убыванию).
+ * <br>
+ * Куча содержит все сериалы не хуже границы bound (bound = null - все сериалы с рейтингом).
+ * Сериал хуже границы отбрасывается: неизвестно, нет ли вне кучи сериалов лучше него.
+ * После удаления сериала из полной кучи она неполна (меньше capacity при известной границе) и ее нужно перечитать.
+ */
+final class TopRated {
+    /**
+     * Порядок от худшего к лучшему (голова кучи - худший сериал)
+     */
+    static final Comparator<SerialRatingDto> WORST_FIRST =
+            Comparator.comparing(SerialRatingDto::getRating).thenComparing(SerialRatingDto::getId);
+
+    private final int capacity;
+
+    private final PriorityQueue<SerialRatingDto> queue;
+
+    private SerialRatingDto bound;
+
+    TopRated(int capacity) {
+        this.capacity = capacity;
+        this.queue = new PriorityQueue<>(capacity + 1, WORST_FIRST);
+    }
+
+    /**
+     * Заполнение кучи результатом запроса лучших сериалов.
+     * @param serials не более capacity лучших сериалов
+     */
+    void load(Collection<SerialRatingDto> serials) {
+        queue.clear();
+        queue.addAll(serials);
+        bound = queue.size() < capacity ? null : queue.peek();
+    }
+
+    /**
+     * Добавление сериала (сериалы без рейтинга и хуже границы отбрасываются).
+     */
+    void offer(SerialRatingDto serial) {
+        if (serial.getRating() == null || bound != null && WORST_FIRST.compare(serial, bound) < 0) {
+            return;
+        }
+        queue.add(serial);
+        if (queue.size() > capacity) {
+            queue.poll();
+            bound = queue.peek();
+        }
+    }
+
+    /**
+     * @return true, если сериал был в куче
+     */
+    boolean remove(long id) {
+        for (Iterator<SerialRatingDto> iterator = queue.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getId() == id) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true, если в куче все лучшие сериалы (capacity или все сериалы с рейтингом)
+     */
+    boolean isComplete() {
+        return bound == null || queue.size() == capacity;
+    }
+
+    Collection<SerialRatingDto> values() {
+        return queue;
+    }
+
+    /**
+     * @return не более limit лучших сериалов от лучшего к худшему
+     */
+    List<SerialRatingDto> best(int limit) {
+        List<SerialRatingDto> serials = new ArrayList<>(queue);
+        serials.sort(WORST_FIRST.reversed());
+        return serials.size() > limit ? new ArrayList<>(serials.subList(0, limit)) : serials;
+    }
+}
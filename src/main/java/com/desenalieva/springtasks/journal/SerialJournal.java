@@ -0,0 +1,278 @@
+package com.desenalieva.springtasks.journal;
+
+import com.desenalieva.springtasks.entities.Serial;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.desenalieva.springtasks.journal.SerialJournalRecord.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Бинарный журнал созданных сериалов.
+ * <br>
+ * Журнал состоит из сегментов фиксированного размера, каждый сегмент отображается в память (mmap),
+ * при заполнении сегмента создается следующий. Для каждого id в памяти хранится адрес последней записи
+ * (номер сегмента и смещение), поэтому поиск записи по id выполняется за O(1) без чтения файлов.
+ * <br>
+ * Запись попадает в page cache сразу после {@link #append}, поэтому переживает падение процесса;
+ * для защиты от падения ОС нужно вызвать {@link #force()}. При открытии журнала каждая запись проверяется
+ * по длине и crc32, недописанная запись в конце сегмента затирается.
+ */
+@Component
+public class SerialJournal implements Closeable {
+    private final static Logger log = LoggerFactory.getLogger(SerialJournal.class);
+
+    private static final String SEGMENT_PREFIX = "serial-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final FileChannel lockChannel;
+
+    private final FileLock lock;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    private final Map<Long, Long> index = new ConcurrentHashMap<>();
+
+    private final CRC32 crc = new CRC32();
+
+    private int writePosition;
+
+    /**
+     * Конструктор. Открывает (или создает) журнал и восстанавливает индекс по существующим сегментам.
+     * @param directory   директория журнала
+     * @param segmentSize размер сегмента в байтах
+     */
+    public SerialJournal(@Value("${serial.journal.dir}") Path directory,
+                         @Value("${serial.journal.segment-size}") int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("journal.lock"), CREATE, WRITE);
+            lock = lockChannel.tryLock();
+            if (lock == null) {
+                lockChannel.close();
+                throw new IllegalStateException("Журнал " + directory + " уже открыт другим процессом");
+            }
+            recover();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            MappedByteBuffer segment = map(file);
+            segments.add(segment);
+            writePosition = recoverSegment(segments.size() - 1, segment);
+        }
+        if (segments.isEmpty()) {
+            roll();
+        }
+    }
+
+    private int recoverSegment(int segmentNumber, MappedByteBuffer segment) {
+        int position = 0;
+        SerialJournalRecord record = new SerialJournalRecord();
+        while (position + HEADER_SIZE <= segment.limit()) {
+            int length = segment.getInt(position);
+            if (length == 0) {
+                return position;
+            }
+            if (length < FIXED_BODY_SIZE || position + HEADER_SIZE + length > segment.limit()
+                    || segment.getInt(position + Integer.BYTES) != checksum(segment, position + HEADER_SIZE, length)) {
+                log.warn("Журнал {}: в сегменте {} найдена недописанная запись (смещение {}), запись удалена",
+                        directory, segmentNumber, position);
+                for (int i = position; i < segment.limit(); i++) {
+                    segment.put(i, (byte) 0);
+                }
+                segment.force();
+                return position;
+            }
+            index.put(record.wrap(segment, segmentNumber, position).getId(), address(segmentNumber, position));
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Добавление записи о созданном сериале.
+     * Длина названия хранится в short, поэтому название должно занимать не больше Short.MAX_VALUE байт в UTF-8.
+     * @param serial сериал
+     */
+    public synchronized void append(Serial serial) {
+        byte[] name = serial.getName() == null ? null : serial.getName().getBytes(UTF_8);
+        if (name != null && name.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Название сериала " + serial.getId() + " длиннее " + Short.MAX_VALUE
+                    + " байт");
+        }
+        int bodyLength = FIXED_BODY_SIZE + (name == null ? 0 : name.length);
+        int recordLength = HEADER_SIZE + bodyLength;
+        if (recordLength > segmentSize) {
+            throw new IllegalArgumentException("Запись размером " + recordLength + " байт не помещается в сегмент");
+        }
+        if (writePosition + recordLength > segmentSize) {
+            current().force();
+            roll();
+        }
+        MappedByteBuffer segment = current();
+        int position = writePosition;
+        int body = position + HEADER_SIZE;
+        segment.putLong(body, serial.getId());
+        segment.putInt(body + Long.BYTES, serial.getRating() == null ? NULL_RATING : serial.getRating());
+        segment.putShort(body + Long.BYTES + Integer.BYTES, name == null ? NULL_NAME : (short) name.length);
+        if (name != null) {
+            segment.duplicate().position(body + FIXED_BODY_SIZE).put(name);
+        }
+        segment.putInt(position + Integer.BYTES, checksum(segment, body, bodyLength));
+        segment.putInt(position, bodyLength);
+        writePosition += recordLength;
+        index.put(serial.getId(), address(segments.size() - 1, position));
+    }
+
+    /**
+     * Добавление записей о сериалах одной пачкой (под одной блокировкой журнала, записи пачки идут подряд).
+     * @param serials сериалы
+     */
+    public synchronized void appendAll(Collection<Serial> serials) {
+        serials.forEach(this::append);
+    }
+
+    /**
+     * Поиск последней записи о сериале.
+     * Возвращаемая запись читает данные напрямую из сегмента журнала.
+     * @param id идентификатор сериала
+     * @return запись журнала
+     */
+    public Optional<SerialJournalRecord> find(long id) {
+        Long address = index.get(id);
+        if (address == null) {
+            return Optional.empty();
+        }
+        int segmentNumber = (int) (address >>> 32);
+        return Optional.of(new SerialJournalRecord().wrap(segment(segmentNumber), segmentNumber, (int) (long) address));
+    }
+
+    /**
+     * Обход всех записей журнала в порядке добавления.
+     * Для всех записей используется один и тот же объект SerialJournalRecord.
+     * @param consumer обработчик записей
+     */
+    public void replay(Consumer<SerialJournalRecord> consumer) {
+        SerialJournalRecord record = new SerialJournalRecord();
+        int segmentCount;
+        synchronized (this) {
+            segmentCount = segments.size();
+        }
+        for (int segmentNumber = 0; segmentNumber < segmentCount; segmentNumber++) {
+            MappedByteBuffer segment = segment(segmentNumber);
+            int position = 0;
+            while (position + HEADER_SIZE <= segment.limit()) {
+                int length = segment.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                consumer.accept(record.wrap(segment, segmentNumber, position));
+                position += HEADER_SIZE + length;
+            }
+        }
+    }
+
+    /**
+     * @return кол-во различных id в журнале
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return кол-во сегментов журнала
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Сброс изменений текущего сегмента на диск.
+     */
+    public synchronized void force() {
+        current().force();
+    }
+
+    @Override
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (lock.isValid()) {
+            current().force();
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private void roll() {
+        Path file = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segments.size(), SEGMENT_SUFFIX));
+        try {
+            segments.add(map(file));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        writePosition = 0;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentSize));
+        }
+    }
+
+    private synchronized MappedByteBuffer segment(int segmentNumber) {
+        return segments.get(segmentNumber);
+    }
+
+    private MappedByteBuffer current() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private int checksum(MappedByteBuffer segment, int offset, int length) {
+        crc.reset();
+        crc.update(segment.duplicate().position(offset).limit(offset + length));
+        return (int) crc.getValue();
+    }
+
+    private static long address(int segmentNumber, int position) {
+        return ((long) segmentNumber << 32) | position;
+    }
+}
@@ -0,0 +1,74 @@
+package com.desenalieva.springtasks.journal;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Запись журнала созданных сериалов.
+ * <br>
+ * Объект не копирует данные, а читает их напрямую из отображенного в память сегмента журнала.
+ * При обходе журнала ({@link SerialJournal#replay}) один и тот же объект переиспользуется для всех записей,
+ * поэтому его нельзя сохранять за пределами callback.
+ * <br>
+ * Формат записи: длина тела (int), crc32 тела (int), тело: id (long), рейтинг (int), длина названия (short),
+ * название в UTF-8.
+ */
+public final class SerialJournalRecord {
+    static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    static final int FIXED_BODY_SIZE = Long.BYTES + Integer.BYTES + Short.BYTES;
+    static final int NULL_RATING = Integer.MIN_VALUE;
+    static final short NULL_NAME = -1;
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int segment;
+
+    SerialJournalRecord wrap(ByteBuffer buffer, int segment, int offset) {
+        this.buffer = buffer;
+        this.segment = segment;
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @return номер сегмента, в котором находится запись
+     */
+    public int getSegment() {
+        return segment;
+    }
+
+    /**
+     * @return смещение записи внутри сегмента
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public long getId() {
+        return buffer.getLong(offset + HEADER_SIZE);
+    }
+
+    public Integer getRating() {
+        int rating = buffer.getInt(offset + HEADER_SIZE + Long.BYTES);
+        return rating == NULL_RATING ? null : rating;
+    }
+
+    public String getName() {
+        int nameOffset = offset + HEADER_SIZE + Long.BYTES + Integer.BYTES;
+        short length = buffer.getShort(nameOffset);
+        if (length == NULL_NAME) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.duplicate().position(nameOffset + Short.BYTES).get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "SerialJournalRecord(id=" + getId() + ", name=" + getName() + ", rating=" + getRating() + ")";
+    }
+}
@@ -0,0 +1,80 @@
+package com.desenalieva.springtasks.metrics;
+
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики транзакционного метода (накапливаются {@link TransactionMetricsInterceptor}).
+ */
+class TransactionMethodMetrics {
+    private final String method;
+
+    private final Propagation propagation;
+
+    private final Isolation isolation;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder commits = new LongAdder();
+
+    private final Map<String, LongAdder> rollbacks = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> rollbackOnlyMarks = new ConcurrentHashMap<>();
+
+    TransactionMethodMetrics(String method, Propagation propagation, Isolation isolation) {
+        this.method = method;
+        this.propagation = propagation;
+        this.isolation = isolation;
+    }
+
+    Propagation getPropagation() {
+        return propagation;
+    }
+
+    void recordCommit(long nanos) {
+        latency.record(nanos);
+        commits.increment();
+    }
+
+    void recordRollback(long nanos, Throwable ex) {
+        latency.record(nanos);
+        increment(rollbacks, ex);
+    }
+
+    void recordRollbackOnly(long nanos, Throwable ex) {
+        latency.record(nanos);
+        increment(rollbackOnlyMarks, ex);
+    }
+
+    TransactionMethodStatistics snapshot() {
+        return new TransactionMethodStatistics(method, propagation, isolation, latency.getCount(), commits.sum(),
+                sum(rollbacks), sum(rollbackOnlyMarks), latency.getPercentile(50), latency.getPercentile(99),
+                latency.getMax(), byException(rollbacks), byException(rollbackOnlyMarks));
+    }
+
+    void reset() {
+        latency.reset();
+        commits.reset();
+        rollbacks.clear();
+        rollbackOnlyMarks.clear();
+    }
+
+    private static void increment(Map<String, LongAdder> counters, Throwable ex) {
+        counters.computeIfAbsent(ex.getClass().getName(), type -> new LongAdder()).increment();
+    }
+
+    private static long sum(Map<String, LongAdder> counters) {
+        return counters.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static Map<String, Long> byException(Map<String, LongAdder> counters) {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((type, counter) -> result.put(type, counter.sum()));
+        return result;
+    }
+}
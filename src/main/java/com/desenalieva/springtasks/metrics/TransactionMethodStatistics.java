@@ -0,0 +1,77 @@
+package com.desenalieva.springtasks.metrics;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+
+import java.util.Map;
+
+/**
+ * Снимок метрик транзакционного метода.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class TransactionMethodStatistics {
+    /**
+     * Метод (Класс#метод)
+     */
+    private final String method;
+
+    /**
+     * Распространение транзакции
+     */
+    private final Propagation propagation;
+
+    /**
+     * Уровень изоляции
+     */
+    private final Isolation isolation;
+
+    /**
+     * Кол-во вызовов
+     */
+    private final long calls;
+
+    /**
+     * Кол-во успешных завершений (коммит своей транзакции или завершение без отката в чужой)
+     */
+    private final long commits;
+
+    /**
+     * Кол-во откатов своей транзакции
+     */
+    private final long rollbacks;
+
+    /**
+     * Кол-во пометок чужой (внешней) транзакции как rollback-only
+     */
+    private final long rollbackOnlyMarks;
+
+    /**
+     * Медиана задержки, нс
+     */
+    private final long p50Nanos;
+
+    /**
+     * 99-й перцентиль задержки, нс
+     */
+    private final long p99Nanos;
+
+    /**
+     * Максимальная задержка, нс
+     */
+    private final long maxNanos;
+
+    /**
+     * Кол-во откатов по типу исключения
+     */
+    private final Map<String, Long> rollbacksByException;
+
+    /**
+     * Кол-во пометок rollback-only по типу исключения
+     */
+    private final Map<String, Long> rollbackOnlyMarksByException;
+}
@@ -0,0 +1,51 @@
+package com.desenalieva.springtasks.metrics;
+
+import com.desenalieva.springtasks.SpringtasksApplication;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+
+import java.lang.reflect.Method;
+
+/**
+ * Метрики транзакционных методов классов приложения (включаются свойством serial.transaction-metrics.enabled).
+ */
+@Configuration
+@ConditionalOnProperty(name = "serial.transaction-metrics.enabled", havingValue = "true")
+public class TransactionMetricsConfig {
+    private final static String BASE_PACKAGE = SpringtasksApplication.class.getPackageName() + ".";
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public TransactionMetricsRegistry transactionMetricsRegistry(TransactionAttributeSource transactionAttributeSource) {
+        return new TransactionMetricsRegistry(transactionAttributeSource);
+    }
+
+    /**
+     * Advisor выполняется перед advisor'ом транзакций (у него Ordered.LOWEST_PRECEDENCE),
+     * т.е. оборачивает начало и завершение транзакции.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public Advisor transactionMetricsAdvisor(TransactionMetricsRegistry transactionMetricsRegistry,
+                                             TransactionAttributeSource transactionAttributeSource) {
+        StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return targetClass.getName().startsWith(BASE_PACKAGE)
+                        && transactionAttributeSource.getTransactionAttribute(method, targetClass) != null;
+            }
+        };
+        DefaultPointcutAdvisor advisor =
+                new DefaultPointcutAdvisor(pointcut, new TransactionMetricsInterceptor(transactionMetricsRegistry));
+        advisor.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        return advisor;
+    }
+}
@@ -0,0 +1,64 @@
+package com.desenalieva.springtasks.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+
+/**
+ * Перехватчик транзакционных методов, записывающий их задержку и исход.
+ * <br>
+ * Выполняется снаружи TransactionInterceptor, поэтому задержка включает начало и коммит транзакции,
+ * а исход определяется по правилам отката метода (rollbackFor/noRollbackFor):
+ * <ul>
+ *     <li>метод начал свою транзакцию - коммит или откат (в т.ч. UnexpectedRollbackException при коммите
+ *     транзакции, помеченной rollback-only);</li>
+ *     <li>метод участвовал во внешней транзакции и выбросил исключение, по которому откатывается, -
+ *     пометка внешней транзакции rollback-only.</li>
+ * </ul>
+ */
+public class TransactionMetricsInterceptor implements MethodInterceptor {
+    private final TransactionMetricsRegistry registry;
+
+    public TransactionMetricsInterceptor(TransactionMetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Class<?> targetClass = invocation.getThis() != null ? AopUtils.getTargetClass(invocation.getThis()) : null;
+        Method method = invocation.getMethod();
+        TransactionMethodMetrics metrics = registry.getMetrics(method, targetClass);
+        if (metrics == null) {
+            return invocation.proceed();
+        }
+        boolean participating = participates(metrics.getPropagation());
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            metrics.recordCommit(System.nanoTime() - start);
+            return result;
+        } catch (Throwable ex) {
+            long nanos = System.nanoTime() - start;
+            if (!registry.rollbackOn(method, targetClass, ex)) {
+                metrics.recordCommit(nanos);
+            } else if (participating) {
+                metrics.recordRollbackOnly(nanos, ex);
+            } else {
+                metrics.recordRollback(nanos, ex);
+            }
+            throw ex;
+        }
+    }
+
+    private static boolean participates(Propagation propagation) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        return propagation == Propagation.REQUIRED || propagation == Propagation.SUPPORTS
+                || propagation == Propagation.MANDATORY;
+    }
+}
@@ -0,0 +1,117 @@
+package com.desenalieva.springtasks.metrics;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Реестр метрик транзакционных методов: задержка (p50/p99/max), коммиты, откаты и пометки rollback-only
+ * по типу исключения для каждого метода с его propagation и isolation.
+ * Доступен через {@link #getStatistics()} и JMX.
+ */
+@ManagedResource(description = "Метрики транзакционных методов")
+public class TransactionMetricsRegistry {
+    private final TransactionAttributeSource transactionAttributeSource;
+
+    private final Map<Method, Optional<TransactionMethodMetrics>> metrics = new ConcurrentHashMap<>();
+
+    public TransactionMetricsRegistry(TransactionAttributeSource transactionAttributeSource) {
+        this.transactionAttributeSource = transactionAttributeSource;
+    }
+
+    /**
+     * Метрики метода.
+     * @param method      вызываемый метод
+     * @param targetClass класс объекта
+     * @return метрики или null, если метод не транзакционный
+     */
+    TransactionMethodMetrics getMetrics(Method method, Class<?> targetClass) {
+        return metrics.computeIfAbsent(method, key -> {
+            TransactionAttribute attribute = transactionAttributeSource.getTransactionAttribute(method, targetClass);
+            if (attribute == null) {
+                return Optional.empty();
+            }
+            Class<?> declaringClass = targetClass != null ? targetClass : method.getDeclaringClass();
+            return Optional.of(new TransactionMethodMetrics(
+                    ClassUtils.getShortName(declaringClass) + "#" + method.getName(),
+                    Propagation.values()[attribute.getPropagationBehavior()],
+                    isolation(attribute.getIsolationLevel())));
+        }).orElse(null);
+    }
+
+    boolean rollbackOn(Method method, Class<?> targetClass, Throwable ex) {
+        TransactionAttribute attribute = transactionAttributeSource.getTransactionAttribute(method, targetClass);
+        return attribute != null && attribute.rollbackOn(ex);
+    }
+
+    /**
+     * Снимок метрик всех вызывавшихся транзакционных методов.
+     * @return метрики, отсортированные по методу
+     */
+    public List<TransactionMethodStatistics> getStatistics() {
+        return metrics.values().stream()
+                .flatMap(Optional::stream)
+                .map(TransactionMethodMetrics::snapshot)
+                .sorted(Comparator.comparing(TransactionMethodStatistics::getMethod))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Снимок метрик метода.
+     * @param method метод в виде Класс#метод
+     * @return метрики, если метод вызывался
+     */
+    public Optional<TransactionMethodStatistics> getStatistics(String method) {
+        return getStatistics().stream().filter(statistics -> statistics.getMethod().equals(method)).findFirst();
+    }
+
+    /**
+     * Метрики в виде строк (для JMX).
+     */
+    @ManagedAttribute(description = "Метрики транзакционных методов")
+    public String[] getReport() {
+        return getStatistics().stream().map(TransactionMethodStatistics::toString).toArray(String[]::new);
+    }
+
+    @ManagedAttribute(description = "Кол-во коммитов")
+    public long getCommits() {
+        return getStatistics().stream().mapToLong(TransactionMethodStatistics::getCommits).sum();
+    }
+
+    @ManagedAttribute(description = "Кол-во откатов")
+    public long getRollbacks() {
+        return getStatistics().stream().mapToLong(TransactionMethodStatistics::getRollbacks).sum();
+    }
+
+    @ManagedAttribute(description = "Кол-во пометок rollback-only")
+    public long getRollbackOnlyMarks() {
+        return getStatistics().stream().mapToLong(TransactionMethodStatistics::getRollbackOnlyMarks).sum();
+    }
+
+    @ManagedOperation(description = "Сброс метрик")
+    public void reset() {
+        metrics.values().forEach(optional -> optional.ifPresent(TransactionMethodMetrics::reset));
+    }
+
+    private static Isolation isolation(int level) {
+        for (Isolation isolation : Isolation.values()) {
+            if (isolation.value() == level) {
+                return isolation;
+            }
+        }
+        return Isolation.DEFAULT;
+    }
+}
@@ -0,0 +1,32 @@
+package com.desenalieva.springtasks.outbox;
+
+import com.desenalieva.springtasks.entities.OutboxEvent;
+
+/**
+ * Обработчик событий outbox заданного типа (бины с этим интерфейсом находит {@link OutboxRelay}).
+ * <br>
+ * Доставка "хотя бы один раз": событие отмечается обработанным только после успешных {@link #handle}
+ * и {@link #complete()}, при сбое между обработкой и отметкой событие будет обработано повторно,
+ * поэтому обработчик должен допускать повторы.
+ */
+public interface OutboxHandler {
+
+    /**
+     * @return тип обрабатываемых событий
+     */
+    String getEventType();
+
+    /**
+     * Обработка события. Исключение оставляет событие необработанным (оно будет доставлено повторно,
+     * а следующие события того же агрегата в этой пачке не доставляются, чтобы не нарушить их порядок).
+     * @param event событие
+     */
+    void handle(OutboxEvent event) throws Exception;
+
+    /**
+     * Ожидание завершения обработки событий пачки (например, записи на диск), вызывается перед отметкой
+     * событий обработанными. Исключение оставляет необработанными все события пачки этого обработчика.
+     */
+    default void complete() throws Exception {
+    }
+}
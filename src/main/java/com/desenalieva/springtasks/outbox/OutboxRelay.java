@@ -0,0 +1,352 @@
+package com.desenalieva.springtasks.outbox;
+
+import com.desenalieva.springtasks.datasource.ReadReplicaRoutingDataSource;
+import com.desenalieva.springtasks.entities.OutboxEvent;
+import com.desenalieva.springtasks.repositories.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Доставка событий outbox обработчикам ({@link OutboxHandler}) фоновым потоком.
+ * <br>
+ * Поток читает необработанные события пачками по serial.outbox.batch-size по возрастанию id, передает
+ * каждое обработчикам его типа, дожидается завершения обработки ({@link OutboxHandler#complete()})
+ * и одним запросом отмечает обработанные события. Доставка "хотя бы один раз": если процесс остановится
+ * между обработкой и отметкой, события будут доставлены повторно после перезапуска.
+ * <br>
+ * События одного агрегата доставляются по порядку: после ошибки обработки события следующие события
+ * того же агрегата в пачке пропускаются и доставляются после него. Событие, обработка которого
+ * не удалась serial.outbox.max-attempts раз, больше не доставляется и не задерживает свой агрегат
+ * (такие события видны в {@link #getFailedCount()} и в таблице outbox_event с last_error).
+ * <br>
+ * Поток опрашивает таблицу раз в serial.outbox.poll-interval, а после коммита транзакции с событиями
+ * будится сразу ({@link OutboxWriter}). Обработанные события удаляются через serial.outbox.retention.
+ * Опрос идет readOnly транзакциями на основной бд: он не считается записью для маршрутизации на реплики,
+ * а отставание реплики не приводит к повторной доставке.
+ * Рассчитан на один экземпляр доставки на бд.
+ */
+@Component
+@ManagedResource(description = "Доставка событий outbox")
+public class OutboxRelay {
+    private final static Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final ObjectProvider<OutboxHandler> handlerProvider;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    private final int batchSize;
+
+    private final int maxAttempts;
+
+    private final long pollIntervalNanos;
+
+    private final Duration retention;
+
+    private final Object deliveredMonitor = new Object();
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private final AtomicLong totalBatchNanos = new AtomicLong();
+
+    private volatile long lastLagMillis;
+
+    private volatile long deliveryRounds;
+
+    private volatile long lastPurgeNanos = System.nanoTime();
+
+    private Map<String, List<OutboxHandler>> handlers;
+
+    private volatile boolean running;
+
+    private Thread relayThread;
+
+    /**
+     * Конструктор.
+     * @param outboxEventRepository репозиторий событий outbox
+     * @param handlerProvider       обработчики событий
+     * @param transactionManager    менеджер транзакций
+     * @param batchSize             максимальное кол-во событий в пачке
+     * @param maxAttempts           максимальное кол-во попыток обработки события
+     * @param pollInterval          интервал опроса таблицы
+     * @param retention             время хранения обработанных событий
+     */
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       ObjectProvider<OutboxHandler> handlerProvider,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${serial.outbox.batch-size}") int batchSize,
+                       @Value("${serial.outbox.max-attempts}") int maxAttempts,
+                       @Value("${serial.outbox.poll-interval}") Duration pollInterval,
+                       @Value("${serial.outbox.retention}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.handlerProvider = handlerProvider;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.pollIntervalNanos = pollInterval.toNanos();
+        this.retention = retention;
+    }
+
+    /**
+     * Запуск доставки после старта приложения (когда созданы все обработчики).
+     * Необработанные до остановки события доставляются первой пачкой.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        handlers = handlerProvider.orderedStream().collect(Collectors.groupingBy(OutboxHandler::getEventType,
+                LinkedHashMap::new, Collectors.toList()));
+        running = true;
+        relayThread = new Thread(this::run, "outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    /**
+     * Остановка доставки. Текущая пачка дорабатывается, оставшиеся события доставятся после перезапуска.
+     * Доставка останавливается по закрытию контекста, до уничтожения бинов обработчиков.
+     */
+    @EventListener(ContextClosedEvent.class)
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (relayThread != null) {
+            LockSupport.unpark(relayThread);
+            relayThread.join();
+            relayThread = null;
+        }
+    }
+
+    /**
+     * Внеочередной опрос таблицы (вызывается после коммита транзакции с событиями).
+     */
+    public void wakeUp() {
+        Thread thread = relayThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Ожидание доставки всех событий, закоммиченных до вызова метода.
+     * @param timeout максимальное время ожидания
+     * @param unit    единица измерения времени ожидания
+     * @return true, если необработанных событий не осталось (кроме исчерпавших попытки)
+     */
+    public boolean awaitDelivery(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long target;
+        synchronized (deliveredMonitor) {
+            // раунд, начатый после вызова, видит все закоммиченные до вызова события
+            target = deliveryRounds + 2;
+        }
+        while (true) {
+            synchronized (deliveredMonitor) {
+                while (deliveryRounds < target) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    wakeUp();
+                    TimeUnit.NANOSECONDS.timedWait(deliveredMonitor, Math.min(remaining, pollIntervalNanos));
+                }
+                target = deliveryRounds + 1;
+            }
+            if (getPendingCount() == 0) {
+                return true;
+            }
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            boolean full = false;
+            try {
+                full = deliverBatch() == batchSize;
+                purge();
+            } catch (RuntimeException e) {
+                log.error("Произошла ошибка при доставке событий outbox: ", e);
+            }
+            synchronized (deliveredMonitor) {
+                deliveryRounds++;
+                deliveredMonitor.notifyAll();
+            }
+            if (!full && running) {
+                LockSupport.parkNanos(this, pollIntervalNanos);
+            }
+        }
+    }
+
+    /**
+     * Доставка одной пачки событий.
+     * @return кол-во доставленных событий (меньше размера пачки, если событий больше нет или были ошибки)
+     */
+    private int deliverBatch() {
+        List<OutboxEvent> batch = read(() -> outboxEventRepository.findPending(maxAttempts,
+                PageRequest.of(0, batchSize)));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Set<Long> blockedAggregates = new HashSet<>();
+        Map<OutboxHandler, List<Long>> handled = new LinkedHashMap<>();
+        List<Long> processed = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            if (blockedAggregates.contains(event.getAggregateId())) {
+                continue;
+            }
+            List<OutboxHandler> eventHandlers = handlers.getOrDefault(event.getType(), List.of());
+            if (eventHandlers.isEmpty()) {
+                log.warn("Нет обработчиков события outbox {} типа {}", event.getId(), event.getType());
+            }
+            try {
+                for (OutboxHandler handler : eventHandlers) {
+                    handler.handle(event);
+                    handled.computeIfAbsent(handler, key -> new ArrayList<>()).add(event.getId());
+                }
+                processed.add(event.getId());
+            } catch (Exception e) {
+                blockedAggregates.add(event.getAggregateId());
+                fail(event, e);
+            }
+        }
+        handled.forEach((handler, ids) -> {
+            try {
+                handler.complete();
+            } catch (Exception e) {
+                log.error("Обработчик {} не завершил обработку {} событий outbox: ", handler, ids.size(), e);
+                processed.removeAll(ids);
+            }
+        });
+        if (!processed.isEmpty()) {
+            Instant now = Instant.now();
+            transactionTemplate.executeWithoutResult(status -> outboxEventRepository.markProcessed(processed, now));
+            deliveredCount.addAndGet(processed.size());
+            lastLagMillis = Duration.between(batch.get(0).getCreatedAt(), now).toMillis();
+        }
+        batchCount.incrementAndGet();
+        totalBatchNanos.addAndGet(System.nanoTime() - start);
+        return processed.size();
+    }
+
+    private void fail(OutboxEvent event, Exception e) {
+        failedAttemptCount.incrementAndGet();
+        log.warn("Ошибка обработки события outbox {} (попытка {}): {}", event.getId(), event.getAttempts() + 1,
+                e.toString());
+        String error = String.valueOf(e);
+        transactionTemplate.executeWithoutResult(status -> outboxEventRepository.markFailed(event.getId(),
+                error.length() > 1000 ? error.substring(0, 1000) : error));
+    }
+
+    private <T> T read(Supplier<T> query) {
+        return ReadReplicaRoutingDataSource.readFromPrimary(() -> readOnlyTransactionTemplate.execute(status ->
+                query.get()));
+    }
+
+    private void purge() {
+        if (System.nanoTime() - lastPurgeNanos < retention.toNanos()) {
+            return;
+        }
+        lastPurgeNanos = System.nanoTime();
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxEventRepository.deleteProcessedBefore(Instant.now().minus(retention)));
+        log.debug("Удалено обработанных событий outbox: {}", deleted);
+    }
+
+    /**
+     * @return кол-во необработанных событий
+     */
+    @ManagedAttribute(description = "Кол-во необработанных событий")
+    public long getPendingCount() {
+        return read(() -> outboxEventRepository.countPending(maxAttempts));
+    }
+
+    /**
+     * @return кол-во событий, исчерпавших попытки обработки
+     */
+    @ManagedAttribute(description = "Кол-во событий, исчерпавших попытки обработки")
+    public long getFailedCount() {
+        return read(() -> outboxEventRepository.countFailed(maxAttempts));
+    }
+
+    /**
+     * @return кол-во доставленных событий
+     */
+    @ManagedAttribute(description = "Кол-во доставленных событий")
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /**
+     * @return кол-во неудачных попыток обработки событий
+     */
+    @ManagedAttribute(description = "Кол-во неудачных попыток обработки")
+    public long getFailedAttemptCount() {
+        return failedAttemptCount.get();
+    }
+
+    /**
+     * @return кол-во обработанных пачек
+     */
+    @ManagedAttribute(description = "Кол-во пачек")
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return кол-во доставленных событий в секунду за время обработки пачек
+     */
+    @ManagedAttribute(description = "Пропускная способность доставки, событий/с")
+    public double getThroughput() {
+        long nanos = totalBatchNanos.get();
+        return nanos == 0 ? 0 : deliveredCount.get() * 1e9 / nanos;
+    }
+
+    /**
+     * @return время от создания первого события последней пачки до его доставки (в мс)
+     */
+    @ManagedAttribute(description = "Задержка доставки последней пачки, мс")
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+}
@@ -0,0 +1,63 @@
+package com.desenalieva.springtasks.outbox;
+
+import com.desenalieva.springtasks.entities.OutboxEvent;
+import com.desenalieva.springtasks.events.CreateSerialEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.springframework.transaction.event.TransactionPhase.BEFORE_COMMIT;
+
+/**
+ * Запись событий в outbox в той же транзакции, что и изменение: событие сохраняется непосредственно перед коммитом,
+ * когда сущности уже получили идентификаторы, и коммитится или откатывается вместе с ними.
+ * После коммита транзакции {@link OutboxRelay} будится, не дожидаясь интервала опроса.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxWriter {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final OutboxRelay outboxRelay;
+
+    /**
+     * Сохранение события создания сериала в outbox.
+     * @param createSerialEvent событие создания сериала
+     */
+    @TransactionalEventListener(phase = BEFORE_COMMIT)
+    public void append(CreateSerialEvent createSerialEvent) {
+        append(new OutboxEvent(CreateSerialEvent.TYPE, createSerialEvent.getSerial().getId(),
+                createSerialEvent.toPayload()));
+    }
+
+    /**
+     * Сохранение события в outbox. Метод должен вызываться внутри транзакции.
+     * @param event событие
+     */
+    public void append(OutboxEvent event) {
+        entityManager.persist(event);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof RelayWakeUp) {
+                return;
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new RelayWakeUp());
+    }
+
+    /**
+     * Пробуждение {@link OutboxRelay} после коммита транзакции с событиями.
+     * Ищется среди синхронизаций текущей транзакции, поэтому у вложенной REQUIRES_NEW транзакции - своя.
+     */
+    private class RelayWakeUp implements TransactionSynchronization {
+        @Override
+        public void afterCommit() {
+            outboxRelay.wakeUp();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.desenalieva.springtasks.profiler;
+
+import org.hibernate.Session;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+import javax.persistence.EntityManager;
+
+/**
+ * JpaTransactionManager, подключающий {@link StatementProfiler} к сессии каждой транзакции.
+ * <br>
+ * Профиль называется по {@link TransactionDefinition#getName()} (для @Transactional - Класс.метод):
+ * EntityManager создается в doBegin, до того как название транзакции попадет в TransactionSynchronizationManager.
+ */
+public class ProfilingJpaTransactionManager extends JpaTransactionManager {
+    private final StatementProfiler profiler;
+
+    private final ThreadLocal<String> beginningTransaction = new ThreadLocal<>();
+
+    public ProfilingJpaTransactionManager(StatementProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        beginningTransaction.set(definition.getName());
+        try {
+            super.doBegin(transaction, definition);
+        } finally {
+            beginningTransaction.remove();
+        }
+    }
+
+    @Override
+    protected EntityManager createEntityManagerForTransaction() {
+        EntityManager entityManager = super.createEntityManagerForTransaction();
+        String name = beginningTransaction.get();
+        entityManager.unwrap(Session.class).addEventListeners(profiler.start(name != null ? name : "transaction"));
+        return entityManager;
+    }
+}
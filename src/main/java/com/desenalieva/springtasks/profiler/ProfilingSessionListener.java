@@ -0,0 +1,74 @@
+package com.desenalieva.springtasks.profiler;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Слушатель событий сессии транзакции, заполняющий ее {@link TransactionProfile}.
+ */
+class ProfilingSessionListener extends BaseSessionEventListener {
+    private final StatementProfiler profiler;
+
+    private final TransactionProfile profile;
+
+    private long executeStart;
+
+    ProfilingSessionListener(StatementProfiler profiler, TransactionProfile profile) {
+        this.profiler = profiler;
+        this.profile = profile;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        executed();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        executed();
+    }
+
+    private void executed() {
+        String sql = profile.getCurrentSql();
+        if (sql != null) {
+            profile.executed(sql);
+            profiler.statementExecuted(profile, sql, System.nanoTime() - executeStart);
+        }
+    }
+
+    @Override
+    public void cacheGetEnd(boolean hit) {
+        if (hit) {
+            profile.cacheHit();
+        }
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        profile.flushed();
+    }
+
+    @Override
+    public void partialFlushStart() {
+        profile.autoFlushStart();
+    }
+
+    @Override
+    public void partialFlushEnd(int numberOfEntities, int numberOfCollections) {
+        profile.autoFlushEnd();
+    }
+
+    @Override
+    public void end() {
+        profiler.finish(profile);
+    }
+}
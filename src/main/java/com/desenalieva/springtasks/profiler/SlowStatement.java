@@ -0,0 +1,28 @@
+package com.desenalieva.springtasks.profiler;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Медленный SQL запрос.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class SlowStatement {
+    /**
+     * Транзакция
+     */
+    private final String transaction;
+
+    /**
+     * SQL запрос
+     */
+    private final String sql;
+
+    /**
+     * Время выполнения, нс
+     */
+    private final long durationNanos;
+}
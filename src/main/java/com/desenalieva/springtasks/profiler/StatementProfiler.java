@@ -0,0 +1,180 @@
+package com.desenalieva.springtasks.profiler;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Профилировщик SQL запросов транзакций.
+ * <br>
+ * Для каждой транзакции, начатой {@link ProfilingJpaTransactionManager}, собирается {@link TransactionProfile}:
+ * SQL запросы приходят в {@link StatementInspector} (вызывается Hibernate перед подготовкой запроса)
+ * и относятся к последней начатой в потоке транзакции, выполнение, flush'и и попадания в кэш - из событий сессии,
+ * загрузки сущностей - из PostLoad события.
+ * <br>
+ * По завершении транзакции в лог пишутся предупреждения о подозрении на N+1 (один и тот же select выполнен
+ * не меньше n-plus-one-threshold раз) и об автоматических flush'ах, записавших изменения перед запросом.
+ * Запросы дольше slow-statement-threshold пишутся в лог и сохраняются в журнал медленных запросов.
+ */
+public class StatementProfiler implements StatementInspector {
+    private final static Logger log = LoggerFactory.getLogger(StatementProfiler.class);
+
+    private final long slowStatementThresholdNanos;
+
+    private final int nPlusOneThreshold;
+
+    private final int slowLogSize;
+
+    private final ThreadLocal<Deque<TransactionProfile>> activeProfiles = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final ThreadLocal<List<TransactionProfile>> recordedProfiles = new ThreadLocal<>();
+
+    private final Deque<SlowStatement> slowStatements = new ArrayDeque<>();
+
+    private final AtomicLong transactions = new AtomicLong();
+
+    private final AtomicLong statements = new AtomicLong();
+
+    private final AtomicLong nPlusOneWarnings = new AtomicLong();
+
+    private final AtomicLong autoFlushWarnings = new AtomicLong();
+
+    public StatementProfiler(Duration slowStatementThreshold, int nPlusOneThreshold, int slowLogSize) {
+        this.slowStatementThresholdNanos = slowStatementThreshold.toNanos();
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.slowLogSize = slowLogSize;
+    }
+
+    /**
+     * Регистрация слушателя загрузки сущностей в Hibernate.
+     * @param entityManagerFactory фабрика EntityManager
+     */
+    public void register(EntityManagerFactory entityManagerFactory) {
+        entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event -> {
+                    TransactionProfile profile = activeProfiles.get().peek();
+                    if (profile != null) {
+                        profile.entityLoaded();
+                    }
+                });
+    }
+
+    /**
+     * Начало профиля транзакции.
+     * @param name название транзакции
+     * @return слушатель событий сессии транзакции
+     */
+    ProfilingSessionListener start(String name) {
+        TransactionProfile profile = new TransactionProfile(name);
+        activeProfiles.get().push(profile);
+        return new ProfilingSessionListener(this, profile);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        TransactionProfile profile = activeProfiles.get().peek();
+        if (profile != null) {
+            profile.prepare(sql);
+        }
+        return sql;
+    }
+
+    void statementExecuted(TransactionProfile profile, String sql, long nanos) {
+        statements.incrementAndGet();
+        if (nanos >= slowStatementThresholdNanos) {
+            log.warn("Медленный запрос ({} мс) в транзакции {}: {}", nanos / 1_000_000, profile.getName(), sql);
+            synchronized (slowStatements) {
+                if (slowStatements.size() == slowLogSize) {
+                    slowStatements.removeFirst();
+                }
+                slowStatements.addLast(new SlowStatement(profile.getName(), sql, nanos));
+            }
+        }
+    }
+
+    void finish(TransactionProfile profile) {
+        activeProfiles.get().remove(profile);
+        profile.finish(nPlusOneThreshold);
+        transactions.incrementAndGet();
+        if (!profile.getNPlusOneSuspects().isEmpty()) {
+            nPlusOneWarnings.incrementAndGet();
+            log.warn("Подозрение на N+1 в транзакции {}: {}", profile.getName(), profile.getNPlusOneSuspects());
+        }
+        if (profile.getAutoFlushes() > 0) {
+            autoFlushWarnings.incrementAndGet();
+            log.warn("Автоматический flush перед запросом в транзакции {}: {}", profile.getName(),
+                    profile.getAutoFlushedStatements());
+        }
+        List<TransactionProfile> recorded = recordedProfiles.get();
+        if (recorded != null) {
+            recorded.add(profile);
+        }
+    }
+
+    /**
+     * Выполнение действия с записью профилей транзакций, завершившихся в текущем потоке (для тестов).
+     * @param action действие
+     * @return профили транзакций в порядке их завершения
+     */
+    public List<TransactionProfile> record(Runnable action) {
+        List<TransactionProfile> previous = recordedProfiles.get();
+        List<TransactionProfile> recorded = new ArrayList<>();
+        recordedProfiles.set(recorded);
+        try {
+            action.run();
+        } finally {
+            if (previous != null) {
+                previous.addAll(recorded);
+            }
+            recordedProfiles.set(previous);
+        }
+        return recorded;
+    }
+
+    /**
+     * @return последние медленные запросы
+     */
+    public List<SlowStatement> getSlowStatements() {
+        synchronized (slowStatements) {
+            return List.copyOf(slowStatements);
+        }
+    }
+
+    /**
+     * @return кол-во профилированных транзакций
+     */
+    public long getTransactions() {
+        return transactions.get();
+    }
+
+    /**
+     * @return кол-во выполненных запросов
+     */
+    public long getStatements() {
+        return statements.get();
+    }
+
+    /**
+     * @return кол-во транзакций с подозрением на N+1
+     */
+    public long getNPlusOneWarnings() {
+        return nPlusOneWarnings.get();
+    }
+
+    /**
+     * @return кол-во транзакций с автоматическим flush'ем перед запросом
+     */
+    public long getAutoFlushWarnings() {
+        return autoFlushWarnings.get();
+    }
+}
@@ -0,0 +1,59 @@
+package com.desenalieva.springtasks.profiler;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+
+/**
+ * Профилирование SQL запросов транзакций (включается свойством serial.profiler.enabled, по умолчанию выключено в
+ * основной конфигурации: профилировщик заменяет менеджер транзакций и пишет предупреждения в лог; включен в тестах).
+ */
+@Configuration
+@ConditionalOnProperty(name = "serial.profiler.enabled", havingValue = "true")
+public class StatementProfilerConfig {
+
+    @Bean
+    public StatementProfiler statementProfiler(@Value("${serial.profiler.slow-statement-threshold}") Duration slowStatementThreshold,
+                                               @Value("${serial.profiler.n-plus-one-threshold}") int nPlusOneThreshold,
+                                               @Value("${serial.profiler.slow-log-size}") int slowLogSize) {
+        return new StatementProfiler(slowStatementThreshold, nPlusOneThreshold, slowLogSize);
+    }
+
+    /**
+     * Передача профилировщика в Hibernate (hibernate.session_factory.statement_inspector).
+     */
+    @Bean
+    public HibernatePropertiesCustomizer statementProfilerCustomizer(StatementProfiler statementProfiler) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementProfiler);
+    }
+
+    /**
+     * Регистрация слушателя загрузки сущностей (после создания EntityManagerFactory, которой нужен профилировщик).
+     */
+    @Bean
+    public SmartInitializingSingleton statementProfilerRegistration(StatementProfiler statementProfiler,
+                                                                    EntityManagerFactory entityManagerFactory) {
+        return () -> statementProfiler.register(entityManagerFactory);
+    }
+
+    /**
+     * Менеджер транзакций вместо создаваемого JpaBaseConfiguration (с теми же TransactionManagerCustomizers).
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(StatementProfiler statementProfiler,
+                                                         ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers) {
+        ProfilingJpaTransactionManager transactionManager = new ProfilingJpaTransactionManager(statementProfiler);
+        transactionManagerCustomizers.ifAvailable(customizers -> customizers.customize(transactionManager));
+        return transactionManager;
+    }
+}
@@ -0,0 +1,186 @@
+package com.desenalieva.springtasks.profiler;
+
+import java.util.*;
+
+/**
+ * Профиль одной транзакции: выполненные SQL запросы, загрузки сущностей, flush'и
+ * и найденные проблемы (N+1, автоматический flush перед запросом).
+ * Заполняется в потоке транзакции, после ее завершения не меняется.
+ */
+public class TransactionProfile {
+    private final String name;
+
+    private final long startNanos = System.nanoTime();
+
+    private long durationNanos;
+
+    private final Map<String, Integer> statementCounts = new LinkedHashMap<>();
+
+    private int statements;
+
+    private int selects;
+
+    private int entityLoads;
+
+    private int cacheHits;
+
+    private int flushes;
+
+    private final List<String> autoFlushedStatements = new ArrayList<>();
+
+    private int autoFlushes;
+
+    private final List<String> nPlusOneSuspects = new ArrayList<>();
+
+    private String currentSql;
+
+    private boolean inAutoFlush;
+
+    private int autoFlushStatements;
+
+    TransactionProfile(String name) {
+        this.name = name;
+    }
+
+    void prepare(String sql) {
+        currentSql = sql;
+    }
+
+    String getCurrentSql() {
+        return currentSql;
+    }
+
+    void executed(String sql) {
+        statements++;
+        statementCounts.merge(sql, 1, Integer::sum);
+        if (isSelect(sql)) {
+            selects++;
+        }
+        if (inAutoFlush) {
+            autoFlushStatements++;
+            autoFlushedStatements.add(sql);
+        }
+    }
+
+    void entityLoaded() {
+        entityLoads++;
+    }
+
+    void cacheHit() {
+        cacheHits++;
+    }
+
+    void flushed() {
+        flushes++;
+    }
+
+    void autoFlushStart() {
+        inAutoFlush = true;
+        autoFlushStatements = 0;
+    }
+
+    void autoFlushEnd() {
+        inAutoFlush = false;
+        if (autoFlushStatements > 0) {
+            autoFlushes++;
+        }
+    }
+
+    void finish(int nPlusOneThreshold) {
+        durationNanos = System.nanoTime() - startNanos;
+        statementCounts.forEach((sql, count) -> {
+            if (count >= nPlusOneThreshold && isSelect(sql)) {
+                nPlusOneSuspects.add(sql);
+            }
+        });
+    }
+
+    private static boolean isSelect(String sql) {
+        return sql.regionMatches(true, 0, "select", 0, 6);
+    }
+
+    /**
+     * @return название транзакции (Класс.метод или имя, заданное TransactionTemplate)
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return длительность транзакции в наносекундах
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return кол-во выполненных запросов (пакет JDBC batch считается одним запросом)
+     */
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return кол-во выполненных select'ов
+     */
+    public int getSelects() {
+        return selects;
+    }
+
+    /**
+     * @return кол-во выполнений каждого SQL запроса
+     */
+    public Map<String, Integer> getStatementCounts() {
+        return Collections.unmodifiableMap(statementCounts);
+    }
+
+    /**
+     * @return кол-во загруженных сущностей (из бд и из кэша второго уровня)
+     */
+    public int getEntityLoads() {
+        return entityLoads;
+    }
+
+    /**
+     * @return кол-во попаданий в кэш второго уровня
+     */
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * @return кол-во явных flush'ей и flush'ей при коммите
+     */
+    public int getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * @return кол-во автоматических flush'ей перед запросами, записавших изменения в бд
+     */
+    public int getAutoFlushes() {
+        return autoFlushes;
+    }
+
+    /**
+     * @return запросы, выполненные автоматическими flush'ами
+     */
+    public List<String> getAutoFlushedStatements() {
+        return Collections.unmodifiableList(autoFlushedStatements);
+    }
+
+    /**
+     * @return select'ы, выполненные в транзакции не меньше порога N+1 раз
+     */
+    public List<String> getNPlusOneSuspects() {
+        return Collections.unmodifiableList(nPlusOneSuspects);
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionProfile(name=" + name + ", durationMs=" + durationNanos / 1_000_000
+                + ", statements=" + statements + ", selects=" + selects + ", entityLoads=" + entityLoads
+                + ", cacheHits=" + cacheHits + ", flushes=" + flushes + ", autoFlushes=" + autoFlushes
+                + ", nPlusOneSuspects=" + nPlusOneSuspects + ")";
+    }
+}
@@ -0,0 +1,23 @@
+package com.desenalieva.springtasks.projections;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * DTO проекция: автор и кол-во его книг (результат запроса с группировкой).
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class AuthorBookCount {
+    /**
+     * Автор
+     */
+    private final String author;
+
+    /**
+     * Кол-во книг
+     */
+    private final long count;
+}
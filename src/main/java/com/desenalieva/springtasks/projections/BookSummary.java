@@ -0,0 +1,12 @@
+package com.desenalieva.springtasks.projections;
+
+/**
+ * Интерфейсная проекция книги: идентификатор, название и автор.
+ */
+public interface BookSummary {
+    Long getId();
+
+    String getName();
+
+    String getAuthor();
+}
@@ -0,0 +1,24 @@
+package com.desenalieva.springtasks.projections;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * DTO проекция книги: идентификатор и название (создается конструктором прямо в запросе; при выборке книг автора
+ * читается только индекс (author, name, id), без строк таблицы).
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class BookTitleDto {
+    /**
+     * Идентификатор
+     */
+    private final Long id;
+
+    /**
+     * Название
+     */
+    private final String name;
+}
@@ -0,0 +1,13 @@
+package com.desenalieva.springtasks.projections;
+
+/**
+ * Интерфейсная проекция: кол-во сериалов с рейтингом.
+ */
+public interface RatingCount {
+    /**
+     * @return рейтинг (null - сериалы без рейтинга)
+     */
+    Integer getRating();
+
+    long getCount();
+}
@@ -0,0 +1,23 @@
+package com.desenalieva.springtasks.projections;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * DTO проекция сериала: идентификатор и рейтинг (создается конструктором прямо в запросе, без загрузки сущности).
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class SerialRatingDto {
+    /**
+     * Идентификатор
+     */
+    private final Long id;
+
+    /**
+     * Рейтинг
+     */
+    private final Integer rating;
+}
@@ -0,0 +1,10 @@
+package com.desenalieva.springtasks.projections;
+
+/**
+ * Интерфейсная проекция сериала: только идентификатор и название.
+ */
+public interface SerialSummary {
+    Long getId();
+
+    String getName();
+}
@@ -0,0 +1,107 @@
+package com.desenalieva.springtasks.readonly;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Контроль записи в бд из транзакций с readOnly = true.
+ * <br>
+ * Для readOnly транзакции Spring (HibernateJpaDialect) уже переводит сессию в FlushMode.MANUAL, загружает сущности
+ * как read-only (без снимков состояния для dirty checking) и помечает JDBC соединение как read-only.
+ * Но явный flush() все равно выполняет insert/update/delete (см. ReadOnlyServiceTest#testReadOnlyMethod),
+ * а H2 не запрещает запись через read-only соединение. Этот класс перехватывает такие операции
+ * в pre-insert/update/delete слушателях Hibernate и поступает согласно serial.read-only.write-policy.
+ * <br>
+ * Контролируется только запись сущностей через контекст персистентности. Массовые JPQL/native update и delete
+ * (например, @Modifying запросы) и запись через JDBC (Session.doWork) эти слушатели не вызывают,
+ * поэтому в readOnly транзакции такие операции выполняются при любой политике
+ * (см. ReadOnlyTransactionGuardTest#testBulkWriteNotControlled).
+ */
+@Component
+public class ReadOnlyTransactionGuard implements PreInsertEventListener, PreUpdateEventListener,
+        PreDeleteEventListener {
+    private final static Logger log = LoggerFactory.getLogger(ReadOnlyTransactionGuard.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final ReadOnlyWritePolicy policy;
+
+    private final AtomicLong violations = new AtomicLong();
+
+    public ReadOnlyTransactionGuard(EntityManagerFactory entityManagerFactory,
+                                    @Value("${serial.read-only.write-policy}") ReadOnlyWritePolicy policy) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.policy = policy;
+    }
+
+    /**
+     * Регистрация слушателей в Hibernate.
+     */
+    @PostConstruct
+    public void register() {
+        if (policy == ReadOnlyWritePolicy.ALLOW) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.PRE_INSERT, this);
+        registry.appendListeners(EventType.PRE_UPDATE, this);
+        registry.appendListeners(EventType.PRE_DELETE, this);
+    }
+
+    @Override
+    public boolean onPreInsert(PreInsertEvent event) {
+        check(event.getSession(), "insert", event.getPersister().getEntityName(), event.getId());
+        return false;
+    }
+
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        check(event.getSession(), "update", event.getPersister().getEntityName(), event.getId());
+        return false;
+    }
+
+    @Override
+    public boolean onPreDelete(PreDeleteEvent event) {
+        check(event.getSession(), "delete", event.getPersister().getEntityName(), event.getId());
+        return false;
+    }
+
+    /**
+     * Сессия readOnly транзакции помечена Spring как isDefaultReadOnly.
+     */
+    private void check(EventSource session, String operation, String entityName, Object id) {
+        if (!session.isDefaultReadOnly()) {
+            return;
+        }
+        violations.incrementAndGet();
+        String message = String.format("%s %s#%s в транзакции с readOnly = true", operation, entityName, id);
+        if (policy == ReadOnlyWritePolicy.REJECT) {
+            throw new IllegalStateException("Запрещен " + message);
+        }
+        log.warn(message);
+    }
+
+    /**
+     * @return политика записи в readOnly транзакциях
+     */
+    public ReadOnlyWritePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return кол-во попыток записи в readOnly транзакциях
+     */
+    public long getViolations() {
+        return violations.get();
+    }
+}
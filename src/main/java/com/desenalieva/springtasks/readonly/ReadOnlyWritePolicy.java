@@ -0,0 +1,19 @@
+package com.desenalieva.springtasks.readonly;
+
+/**
+ * Поведение при записи в бд из транзакции с readOnly = true.
+ */
+public enum ReadOnlyWritePolicy {
+    /**
+     * Запись выполняется (поведение Spring по умолчанию).
+     */
+    ALLOW,
+    /**
+     * Запись выполняется, в лог пишется предупреждение.
+     */
+    LOG,
+    /**
+     * Запись отклоняется исключением {@link IllegalStateException}, транзакция откатывается.
+     */
+    REJECT
+}
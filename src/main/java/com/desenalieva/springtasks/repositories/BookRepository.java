@@ -1,10 +1,117 @@
 package com.desenalieva.springtasks.repositories;
 
 import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.projections.AuthorBookCount;
+import com.desenalieva.springtasks.projections.BookTitleDto;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий книг.
  */
-public interface BookRepository extends JpaRepository<Book, Long> {
-}
\ No newline at end of file
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    /**
+     * Книги автора по названию (страница по номеру).
+     * Условие и сортировка обслуживаются индексом (author, name, id): для проекций BookTitleDto
+     * и BookSummary строки таблицы не читаются. Сортировка по автору (при равном авторе ничего не меняет) нужна H2,
+     * чтобы порядок индекса совпал с порядком запроса и строки не сортировались.
+     * @param author   автор
+     * @param pageable номер и размер страницы
+     * @param type     сущность Book или проекция (например, BookTitleDto, BookSummary)
+     * @return книги или проекции по возрастанию названия, затем идентификатора
+     */
+    <T> List<T> findByAuthorOrderByAuthorAscNameAscIdAsc(String author, Pageable pageable, Class<T> type);
+
+    /**
+     * Книги автора с названием по названию (первая страница keyset пагинации, см. {@link #findTitlesByAuthor}).
+     * @param author   автор
+     * @param pageable размер страницы (номер страницы должен быть 0)
+     * @param type     сущность Book или проекция
+     * @return книги или проекции по возрастанию названия, затем идентификатора
+     */
+    <T> List<T> findByAuthorAndNameNotNullOrderByAuthorAscNameAscIdAsc(String author, Pageable pageable,
+                                                                       Class<T> type);
+
+    /**
+     * Страница keyset пагинации книг автора: книги, идущие после книги (afterName, afterId)
+     * по возрастанию названия, затем идентификатора. Чтение индекса (author, name, id) начинается с позиции курсора,
+     * поэтому время не зависит от глубины страницы.
+     * @param author    автор
+     * @param afterName название последней книги предыдущей страницы
+     * @param afterId   идентификатор последней книги предыдущей страницы
+     * @param pageable  размер страницы (номер страницы должен быть 0)
+     * @return идентификаторы и названия книг (книги без названия не входят)
+     */
+    @Query("select new com.desenalieva.springtasks.projections.BookTitleDto(b.id, b.name) from Book b"
+            + " where b.author = :author and b.name >= :name and (b.name > :name or b.id > :id)"
+            + " order by b.author, b.name, b.id")
+    List<BookTitleDto> findTitlesByAuthorAfter(@Param("author") String author, @Param("name") String afterName,
+                                               @Param("id") long afterId, Pageable pageable);
+
+    /**
+     * Первая страница книг автора (см. {@link #findTitlesByAuthorAfter}). Книги без названия не входят, как и
+     * в следующие страницы: H2 ставит null первым, и курсор с afterName = null остановил бы пагинацию.
+     * @param author   автор
+     * @param pageSize размер страницы
+     * @return идентификаторы и названия книг по возрастанию названия, затем идентификатора
+     */
+    default List<BookTitleDto> findTitlesByAuthor(String author, int pageSize) {
+        return findByAuthorAndNameNotNullOrderByAuthorAscNameAscIdAsc(author, PageRequest.of(0, pageSize),
+                BookTitleDto.class);
+    }
+
+    /**
+     * Кол-во книг автора (по индексу (author, name, id), без чтения строк таблицы).
+     * @param author автор
+     * @return кол-во книг
+     */
+    long countByAuthor(String author);
+
+    /**
+     * Кол-во книг по авторам одним запросом с группировкой. Группы идут в порядке индекса (author, name, id),
+     * поэтому бд не держит группы в памяти и не сортирует результат, но читает весь индекс: на H2 это не быстрее
+     * группировки по таблице, для одного автора используйте {@link #countByAuthor}.
+     * @return авторы (книги без автора - с автором null) и кол-во их книг по возрастанию автора
+     */
+    @Query("select new com.desenalieva.springtasks.projections.AuthorBookCount(b.author, count(b)) from Book b"
+            + " group by b.author order by b.author")
+    List<AuthorBookCount> countBooksByAuthor();
+
+    /**
+     * Страница keyset пагинации: книги с идентификатором больше afterId по возрастанию идентификатора.
+     * @param afterId  идентификатор последней книги предыдущей страницы
+     * @param pageable размер страницы (номер страницы должен быть 0)
+     * @param type     сущность Book или проекция (например, BookSummary)
+     * @return книги или проекции
+     */
+    <T> List<T> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable, Class<T> type);
+
+    /**
+     * Потоковое чтение проекций всех книг по возрастанию идентификатора
+     * (по серверному курсору с hibernate.jdbc.fetch_size = serial.stream.fetch-size).
+     * Метод должен вызываться внутри транзакции, поток нужно закрыть (try-with-resources).
+     * @param type проекция (например, BookSummary)
+     * @return поток проекций
+     */
+    <T> Stream<T> streamAllByOrderByIdAsc(Class<T> type);
+
+    /**
+     * Потоковое чтение всех книг keyset пагинацией (см. SerialRepository#streamAllByKeyset).
+     * @param type     сущность Book или проекция
+     * @param idOf     идентификатор элемента
+     * @param pageSize размер страницы
+     * @return поток книг или проекций по возрастанию идентификатора
+     */
+    default <T> Stream<T> streamAllByKeyset(Class<T> type, ToLongFunction<T> idOf, int pageSize) {
+        return QueryStreams.keyset(afterId -> findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, pageSize), type),
+                idOf, pageSize);
+    }
+}
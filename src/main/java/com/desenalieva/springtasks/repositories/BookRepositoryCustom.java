@@ -0,0 +1,19 @@
+package com.desenalieva.springtasks.repositories;
+
+import com.desenalieva.springtasks.entities.Book;
+
+import java.util.stream.Stream;
+
+/**
+ * Дополнительные (не генерируемые Spring Data) операции репозитория книг.
+ */
+public interface BookRepositoryCustom {
+
+    /**
+     * Потоковое чтение всех книг по возрастанию идентификатора с постоянным расходом памяти
+     * (см. SerialRepositoryCustom#streamAll).
+     * Метод должен вызываться внутри транзакции (лучше readOnly), поток нужно закрыть (try-with-resources).
+     * @return поток книг
+     */
+    Stream<Book> streamAll();
+}
@@ -0,0 +1,39 @@
+package com.desenalieva.springtasks.repositories;
+
+import com.desenalieva.springtasks.entities.Book;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.stream.Stream;
+
+/**
+ * Реализация дополнительных операций репозитория книг.
+ */
+public class BookRepositoryImpl implements BookRepositoryCustom {
+    private static final String SELECT_ALL_ORDERED = "select b from Book b order by b.id";
+
+    /**
+     * EntityManager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Размер порции строк, читаемых серверным курсором.
+     */
+    @Value("${serial.stream.fetch-size}")
+    private int fetchSize;
+
+    /**
+     * Кол-во прочитанных сущностей, после которого очищается контекст персистентности.
+     */
+    @Value("${serial.stream.clear-interval}")
+    private int clearInterval;
+
+    @Override
+    public Stream<Book> streamAll() {
+        return QueryStreams.stream(entityManager, entityManager.createQuery(SELECT_ALL_ORDERED, Book.class),
+                fetchSize, clearInterval);
+    }
+}
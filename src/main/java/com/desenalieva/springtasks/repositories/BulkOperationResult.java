@@ -0,0 +1,25 @@
+package com.desenalieva.springtasks.repositories;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Результат массовой операции над записями.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class BulkOperationResult {
+    /**
+     * Кол-во затронутых записей
+     */
+    private final int count;
+
+    /**
+     * Идентификаторы, для которых не нашлось записей
+     */
+    private final List<Long> missingIds;
+}
@@ -0,0 +1,74 @@
+package com.desenalieva.springtasks.repositories;
+
+import com.desenalieva.springtasks.entities.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Репозиторий событий outbox.
+ */
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Необработанные события, для которых не исчерпаны попытки обработки, по индексу (processed_at, id)
+     * (сортировка и по processed_at, равному null, нужна H2, чтобы порядок индекса совпал с порядком запроса).
+     * @param maxAttempts максимальное кол-во попыток
+     * @param pageable    размер пачки (номер страницы должен быть 0)
+     * @return события по возрастанию id
+     */
+    @Query("select e from OutboxEvent e where e.processedAt is null and e.attempts < :maxAttempts "
+            + "order by e.processedAt, e.id")
+    List<OutboxEvent> findPending(@Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+    /**
+     * Кол-во необработанных событий, для которых не исчерпаны попытки обработки.
+     * @param maxAttempts максимальное кол-во попыток
+     * @return кол-во событий
+     */
+    @Query("select count(e) from OutboxEvent e where e.processedAt is null and e.attempts < :maxAttempts")
+    long countPending(@Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Кол-во событий, обработка которых не удалась serial.outbox.max-attempts раз.
+     * @param maxAttempts максимальное кол-во попыток
+     * @return кол-во событий
+     */
+    @Query("select count(e) from OutboxEvent e where e.processedAt is null and e.attempts >= :maxAttempts")
+    long countFailed(@Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Отметка событий обработанными одним запросом UPDATE.
+     * @param ids         идентификаторы событий
+     * @param processedAt время обработки
+     * @return кол-во отмеченных событий
+     */
+    @Modifying
+    @Query("update OutboxEvent e set e.processedAt = :processedAt where e.id in :ids")
+    int markProcessed(@Param("ids") Collection<Long> ids, @Param("processedAt") Instant processedAt);
+
+    /**
+     * Учет неудачной попытки обработки события.
+     * @param id    идентификатор события
+     * @param error описание ошибки
+     * @return кол-во измененных событий
+     */
+    @Modifying
+    @Query("update OutboxEvent e set e.attempts = e.attempts + 1, e.lastError = :error where e.id = :id")
+    int markFailed(@Param("id") long id, @Param("error") String error);
+
+    /**
+     * Удаление событий, обработанных раньше заданного времени.
+     * @param processedAt время обработки
+     * @return кол-во удаленных событий
+     */
+    @Modifying
+    @Query("delete from OutboxEvent e where e.processedAt < :processedAt")
+    int deleteProcessedBefore(@Param("processedAt") Instant processedAt);
+}
@@ -0,0 +1,77 @@
+package com.desenalieva.springtasks.repositories;
+
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Потоковое чтение результатов запросов с ограниченным расходом памяти.
+ */
+final class QueryStreams {
+
+    private QueryStreams() {
+    }
+
+    /**
+     * Поток результатов запроса по серверному курсору (JDBC fetch size) без добавления снимков сущностей
+     * в контекст (read-only). Каждые clearInterval элементов контекст персистентности очищается,
+     * поэтому в нем не накапливаются прочитанные сущности.
+     */
+    static <T> Stream<T> stream(EntityManager entityManager, TypedQuery<T> query, int fetchSize, int clearInterval) {
+        int[] count = new int[1];
+        return query.setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()
+                .peek(entity -> {
+                    if (++count[0] % clearInterval == 0) {
+                        entityManager.clear();
+                    }
+                });
+    }
+
+    /**
+     * Ленивый поток keyset пагинации: следующая страница запрашивается по идентификатору последнего элемента
+     * предыдущей, когда предыдущая прочитана.
+     * @param pageAfter запрос страницы элементов с идентификатором больше заданного, по возрастанию идентификатора
+     * @param idOf      идентификатор элемента
+     * @param pageSize  размер страницы
+     */
+    static <T> Stream<T> keyset(LongFunction<List<T>> pageAfter, ToLongFunction<T> idOf, int pageSize) {
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final Deque<T> page = new ArrayDeque<>(pageSize);
+
+            private long lastId = Long.MIN_VALUE;
+
+            private boolean exhausted;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (page.isEmpty() && !exhausted) {
+                    List<T> next = pageAfter.apply(lastId);
+                    exhausted = next.size() < pageSize;
+                    page.addAll(next);
+                }
+                T element = page.poll();
+                if (element == null) {
+                    return false;
+                }
+                lastId = idOf.applyAsLong(element);
+                action.accept(element);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+}
@@ -1,10 +1,178 @@
 package com.desenalieva.springtasks.repositories;
 
 import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.projections.RatingCount;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import static org.hibernate.annotations.QueryHints.CACHEABLE;
 
 /**
  * Репозиторий сериалов.
  */
-public interface SerialRepository extends JpaRepository<Serial, Long> {
+public interface SerialRepository extends JpaRepository<Serial, Long>, SerialRepositoryCustom {
+
+    /**
+     * Кол-во сериалов. Результат запроса кэшируется в кэше запросов Hibernate
+     * и сбрасывается при любом изменении таблицы serial.
+     * @return кол-во сериалов
+     */
+    @Override
+    @Query("select count(s) from Serial s")
+    @QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
+    long count();
+
+    /**
+     * Кол-во сериалов по рейтингам одним запросом с группировкой.
+     * @return кол-во сериалов для каждого встречающегося рейтинга (включая null)
+     */
+    @Query("select s.rating as rating, count(s) as count from Serial s group by s.rating")
+    List<RatingCount> countByRating();
+
+    /**
+     * Удаление сериалов с рейтингом ниже заданного одним запросом DELETE (без загрузки сущностей).
+     * @param rating рейтинг
+     * @return кол-во удаленных сериалов
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Serial s where s.rating < :rating")
+    int deleteByRatingBelow(@Param("rating") int rating);
+
+    /**
+     * Идентификаторы существующих сериалов в диапазоне (без загрузки сущностей).
+     * @param fromId начало диапазона
+     * @param toId   конец диапазона (включительно)
+     * @return идентификаторы по возрастанию
+     */
+    @Query("select s.id from Serial s where s.id between :fromId and :toId order by s.id")
+    List<Long> findIdsBetween(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * Страница сериалов с рейтингом от minRating до maxRating в порядке рейтинг по убыванию, затем id по убыванию.
+     * По номеру страницы (OFFSET) бд читает и отбрасывает все предыдущие страницы, поэтому время растет
+     * с глубиной: для глубоких страниц используйте {@link #findByRatingBetweenAfter}.
+     * @param minRating минимальный рейтинг
+     * @param maxRating максимальный рейтинг
+     * @param pageable  номер и размер страницы
+     * @return сериалы
+     */
+    List<Serial> findByRatingBetweenOrderByRatingDescIdDesc(int minRating, int maxRating, Pageable pageable);
+
+    /**
+     * Сериалы с заданным рейтингом и идентификатором меньше id по убыванию идентификатора
+     * (сортировка и по рейтингу совпадает с порядком индекса (rating, id), иначе H2 сортирует все сериалы с рейтингом).
+     * @param rating   рейтинг
+     * @param id       идентификатор
+     * @param pageable размер страницы (номер страницы должен быть 0)
+     * @return сериалы
+     */
+    List<Serial> findByRatingAndIdLessThanOrderByRatingDescIdDesc(int rating, long id, Pageable pageable);
+
+    /**
+     * Первая страница сериалов с рейтингом от minRating до maxRating
+     * в порядке рейтинг по убыванию, затем id по убыванию.
+     * @param minRating минимальный рейтинг
+     * @param maxRating максимальный рейтинг
+     * @param pageSize  размер страницы
+     * @return сериалы
+     */
+    default List<Serial> findByRatingBetween(int minRating, int maxRating, int pageSize) {
+        return findByRatingBetweenOrderByRatingDescIdDesc(minRating, maxRating, PageRequest.of(0, pageSize));
+    }
+
+    /**
+     * Страница keyset пагинации сериалов с рейтингом от minRating до maxRating: сериалы, идущие после
+     * сериала (afterRating, afterId) в порядке рейтинг по убыванию, затем id по убыванию.
+     * <br>
+     * Страница читается с позиции курсора в индексе (rating, id), поэтому время не зависит от глубины:
+     * сначала остаток сериалов с рейтингом afterRating, затем, если страница не заполнена, сериалы
+     * с рейтингом ниже (условие "rating <= afterRating - 1", а не "rating < afterRating": по строгому
+     * неравенству H2 не находит начало диапазона в индексе по убыванию).
+     * @param minRating   минимальный рейтинг
+     * @param maxRating   максимальный рейтинг
+     * @param afterRating рейтинг последнего сериала предыдущей страницы (от minRating до maxRating)
+     * @param afterId     идентификатор последнего сериала предыдущей страницы
+     * @param pageSize    размер страницы
+     * @return сериалы
+     */
+    default List<Serial> findByRatingBetweenAfter(int minRating, int maxRating, int afterRating, long afterId,
+                                                  int pageSize) {
+        if (afterRating < minRating || afterRating > maxRating) {
+            throw new IllegalArgumentException("Рейтинг курсора " + afterRating
+                    + " вне диапазона от " + minRating + " до " + maxRating);
+        }
+        List<Serial> page = findByRatingAndIdLessThanOrderByRatingDescIdDesc(afterRating, afterId,
+                PageRequest.of(0, pageSize));
+        if (page.size() == pageSize || afterRating == minRating) {
+            return page;
+        }
+        List<Serial> serials = new ArrayList<>(pageSize);
+        serials.addAll(page);
+        serials.addAll(findByRatingBetweenOrderByRatingDescIdDesc(minRating, afterRating - 1,
+                PageRequest.of(0, pageSize - page.size())));
+        return serials;
+    }
+
+    /**
+     * Лучшие сериалы по рейтингу (сериалы без рейтинга не входят).
+     * @param limit кол-во сериалов
+     * @return сериалы в порядке рейтинг по убыванию, затем id по убыванию
+     */
+    default List<Serial> findTopRated(int limit) {
+        return findByRatingBetween(Serial.MIN_RATING, Serial.MAX_RATING, limit);
+    }
+
+    /**
+     * Страница keyset пагинации лучших сериалов (см. {@link #findByRatingBetweenAfter}).
+     * @param afterRating рейтинг последнего сериала предыдущей страницы
+     * @param afterId     идентификатор последнего сериала предыдущей страницы
+     * @param pageSize    размер страницы
+     * @return сериалы в порядке рейтинг по убыванию, затем id по убыванию
+     */
+    default List<Serial> findTopRatedAfter(int afterRating, long afterId, int pageSize) {
+        return findByRatingBetweenAfter(Serial.MIN_RATING, Serial.MAX_RATING, afterRating, afterId, pageSize);
+    }
+
+    /**
+     * Страница keyset пагинации: сериалы с идентификатором больше afterId по возрастанию идентификатора.
+     * @param afterId  идентификатор последнего сериала предыдущей страницы
+     * @param pageable размер страницы (номер страницы должен быть 0)
+     * @param type     сущность Serial или проекция (например, SerialSummary, SerialRatingDto)
+     * @return сериалы или проекции
+     */
+    <T> List<T> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable, Class<T> type);
+
+    /**
+     * Потоковое чтение проекций всех сериалов по возрастанию идентификатора
+     * (по серверному курсору с hibernate.jdbc.fetch_size = serial.stream.fetch-size).
+     * Метод должен вызываться внутри транзакции, поток нужно закрыть (try-with-resources).
+     * @param type проекция (например, SerialSummary, SerialRatingDto)
+     * @return поток проекций
+     */
+    <T> Stream<T> streamAllByOrderByIdAsc(Class<T> type);
+
+    /**
+     * Потоковое чтение всех сериалов keyset пагинацией: страницы по pageSize запрашиваются по мере чтения
+     * отдельными запросами, поэтому транзакция не нужна, а вне транзакции прочитанные страницы
+     * не удерживаются в памяти.
+     * @param type     сущность Serial или проекция
+     * @param idOf     идентификатор элемента
+     * @param pageSize размер страницы
+     * @return поток сериалов или проекций по возрастанию идентификатора
+     */
+    default <T> Stream<T> streamAllByKeyset(Class<T> type, ToLongFunction<T> idOf, int pageSize) {
+        return QueryStreams.keyset(afterId -> findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, pageSize), type),
+                idOf, pageSize);
+    }
 }
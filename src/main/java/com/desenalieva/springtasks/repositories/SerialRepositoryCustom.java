@@ -0,0 +1,57 @@
+package com.desenalieva.springtasks.repositories;
+
+import com.desenalieva.springtasks.entities.Serial;
+
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * Дополнительные (не генерируемые Spring Data) операции репозитория сериалов.
+ */
+public interface SerialRepositoryCustom {
+
+    /**
+     * Сохранение пачки новых сериалов.
+     * Сущности передаются в persist() и сбрасываются в бд порциями по hibernate.jdbc.batch_size,
+     * после каждой порции сохраненные сериалы отсоединяются от контекста персистентности
+     * (остальные сущности контекста вызывающей транзакции остаются управляемыми).
+     * Метод должен вызываться внутри транзакции.
+     * @param serials новые сериалы
+     */
+    void persistAll(Collection<Serial> serials);
+
+    /**
+     * Массовое обновление рейтинга сериалов без загрузки сущностей.
+     * Выполняется JDBC батчами UPDATE serial SET rating = ?, version = version + 1 WHERE id = ? (по hibernate.jdbc.batch_size).
+     * Перед обновлением изменения контекста персистентности сбрасываются в бд, после - контекст очищается
+     * (аналогично @Modifying(flushAutomatically = true, clearAutomatically = true)).
+     * Метод должен вызываться внутри транзакции.
+     * @param ids     идентификаторы сериалов
+     * @param ratings новые рейтинги (ratings[i] - рейтинг сериала ids[i])
+     * @return кол-во обновленных сериалов и идентификаторы, для которых сериалы не найдены
+     * @throws javax.validation.ConstraintViolationException если рейтинг нарушает ограничения сущности Serial
+     */
+    BulkOperationResult updateRatings(long[] ids, int[] ratings);
+
+    /**
+     * Массовое удаление сериалов по идентификаторам без загрузки сущностей.
+     * Идентификаторы разбиваются на порции по serial.bulk.in-clause-size, на каждую порцию выполняется
+     * один запрос существующих идентификаторов и один DELETE ... WHERE id IN (...).
+     * Отсутствующие идентификаторы не приводят к исключению (и не помечают транзакцию как rollbackOnly),
+     * а возвращаются в результате.
+     * Метод должен вызываться внутри транзакции.
+     * @param ids идентификаторы сериалов
+     * @return кол-во удаленных сериалов и идентификаторы, для которых сериалы не найдены
+     */
+    BulkOperationResult deleteAllByIds(long[] ids);
+
+    /**
+     * Потоковое чтение всех сериалов по возрастанию идентификатора с постоянным расходом памяти:
+     * строки читаются серверным курсором порциями по serial.stream.fetch-size, сущности загружаются read-only,
+     * а каждые serial.stream.clear-interval сериалов контекст персистентности очищается
+     * (ранее прочитанные сериалы становятся detached, несохраненные изменения контекста теряются).
+     * Метод должен вызываться внутри транзакции (лучше readOnly), поток нужно закрыть (try-with-resources).
+     * @return поток сериалов
+     */
+    Stream<Serial> streamAll();
+}
@@ -0,0 +1,159 @@
+package com.desenalieva.springtasks.repositories;
+
+import com.desenalieva.springtasks.entities.Serial;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.action.internal.BulkOperationCleanupAction;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.Queryable;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Реализация дополнительных операций репозитория сериалов.
+ */
+@RequiredArgsConstructor
+public class SerialRepositoryImpl implements SerialRepositoryCustom {
+    private static final String UPDATE_RATING = "UPDATE serial SET rating = ?, version = version + 1 WHERE id = ?";
+    private static final String SELECT_EXISTING_IDS = "select s.id from Serial s where s.id in :ids";
+    private static final String DELETE_BY_IDS = "delete from Serial s where s.id in :ids";
+    private static final String SELECT_ALL_ORDERED = "select s from Serial s order by s.id";
+
+    /**
+     * EntityManager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Размер JDBC батча.
+     */
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}")
+    private int batchSize;
+
+    /**
+     * Максимальное кол-во идентификаторов в условии IN.
+     */
+    @Value("${serial.bulk.in-clause-size}")
+    private int inClauseSize;
+
+    /**
+     * Размер порции строк, читаемых серверным курсором.
+     */
+    @Value("${serial.stream.fetch-size}")
+    private int fetchSize;
+
+    /**
+     * Кол-во прочитанных сущностей, после которого очищается контекст персистентности.
+     */
+    @Value("${serial.stream.clear-interval}")
+    private int clearInterval;
+
+    /**
+     * Валидатор (проверка ограничений полей сущности).
+     */
+    private final Validator validator;
+
+    @Override
+    public void persistAll(Collection<Serial> serials) {
+        List<Serial> batch = new ArrayList<>(batchSize);
+        for (Serial serial : serials) {
+            entityManager.persist(serial);
+            batch.add(serial);
+            if (batch.size() == batchSize) {
+                flushAndDetach(batch);
+            }
+        }
+        flushAndDetach(batch);
+    }
+
+    private void flushAndDetach(List<Serial> batch) {
+        entityManager.flush();
+        batch.forEach(entityManager::detach);
+        batch.clear();
+    }
+
+    @Override
+    public BulkOperationResult updateRatings(long[] ids, int[] ratings) {
+        if (ids.length != ratings.length) {
+            throw new IllegalArgumentException("Кол-во идентификаторов и рейтингов не совпадает");
+        }
+        for (int rating : ratings) {
+            Set<ConstraintViolation<Serial>> violations = validator.validateValue(Serial.class, "rating", rating);
+            if (!violations.isEmpty()) {
+                throw new ConstraintViolationException(violations);
+            }
+        }
+        entityManager.flush();
+        Set<Long> updatedIds = new HashSet<>();
+        Set<Long> missingIds = new LinkedHashSet<>();
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_RATING)) {
+                for (int from = 0; from < ids.length; from += batchSize) {
+                    int to = Math.min(from + batchSize, ids.length);
+                    for (int i = from; i < to; i++) {
+                        statement.setInt(1, ratings[i]);
+                        statement.setLong(2, ids[i]);
+                        statement.addBatch();
+                    }
+                    int[] counts = statement.executeBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        (counts[i] == 0 ? missingIds : updatedIds).add(ids[from + i]);
+                    }
+                }
+            }
+        });
+        // UPDATE выполнен в обход Hibernate: как и для native bulk-запросов, регистрируем очистку
+        // кэша второго уровня сериалов и кэша запросов по таблице serial при завершении транзакции
+        session.getActionQueue().addAction(new BulkOperationCleanupAction(session,
+                (Queryable) session.getFactory().getMetamodel().entityPersister(Serial.class)));
+        entityManager.clear();
+        // повторяющийся id считается один раз, как в deleteAllByIds
+        return new BulkOperationResult(updatedIds.size(), new ArrayList<>(missingIds));
+    }
+
+    @Override
+    public BulkOperationResult deleteAllByIds(long[] ids) {
+        List<Long> distinctIds = Arrays.stream(ids).distinct().boxed().collect(Collectors.toList());
+        entityManager.flush();
+        int deleted = 0;
+        List<Long> missingIds = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += inClauseSize) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + inClauseSize, distinctIds.size()));
+            Set<Long> existingIds = new HashSet<>(entityManager.createQuery(SELECT_EXISTING_IDS, Long.class)
+                    .setParameter("ids", chunk)
+                    .getResultList());
+            if (existingIds.size() < chunk.size()) {
+                chunk.stream().filter(id -> !existingIds.contains(id)).forEach(missingIds::add);
+            }
+            if (!existingIds.isEmpty()) {
+                deleted += entityManager.createQuery(DELETE_BY_IDS)
+                        .setParameter("ids", existingIds)
+                        .executeUpdate();
+            }
+        }
+        entityManager.clear();
+        return new BulkOperationResult(deleted, missingIds);
+    }
+
+    @Override
+    public Stream<Serial> streamAll() {
+        return QueryStreams.stream(entityManager, entityManager.createQuery(SELECT_ALL_ORDERED, Serial.class),
+                fetchSize, clearInterval);
+    }
+}
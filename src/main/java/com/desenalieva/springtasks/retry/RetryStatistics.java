@@ -0,0 +1,60 @@
+package com.desenalieva.springtasks.retry;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * Снимок метрик повторов транзакций.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class RetryStatistics {
+    /**
+     * Кол-во вызовов
+     */
+    private final long calls;
+
+    /**
+     * Кол-во выполнений транзакции (первые попытки и повторы)
+     */
+    private final long attempts;
+
+    /**
+     * Кол-во повторов
+     */
+    private final long retries;
+
+    /**
+     * Кол-во успешных вызовов
+     */
+    private final long successes;
+
+    /**
+     * Кол-во вызовов, завершенных исключением, при котором транзакция не повторяется
+     */
+    private final long failures;
+
+    /**
+     * Кол-во вызовов, исчерпавших serial.retry.max-attempts
+     */
+    private final long exhausted;
+
+    /**
+     * Кол-во повторов, отклоненных бюджетом повторов
+     */
+    private final long budgetRejections;
+
+    /**
+     * Остаток бюджета повторов
+     */
+    private final double budget;
+
+    /**
+     * Кол-во повторов по типу исключения
+     */
+    private final Map<String, Long> retriesByException;
+}
@@ -0,0 +1,272 @@
+package com.desenalieva.springtasks.retry;
+
+import org.hibernate.StaleStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PessimisticLockException;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Выполнение транзакции с повтором целиком при конфликтах конкурентных транзакций: оптимистическая блокировка
+ * (версия сущности изменилась после чтения), блокировки и сериализация в бд, прочие временные
+ * и восстановимые ошибки доступа к данным (TransientDataAccessException, RecoverableDataAccessException).
+ * <br>
+ * Каждая попытка - новая транзакция с новым контекстом персистентности, т.е. действие заново читает данные.
+ * Повтор выполняется после паузы: экспоненциальная задержка от serial.retry.initial-backoff
+ * до serial.retry.max-backoff со случайной половиной (jitter), чтобы конфликтующие транзакции
+ * не повторялись одновременно. Попыток не больше serial.retry.max-attempts.
+ * <br>
+ * Повторы ограничены общим бюджетом: каждый вызов добавляет в бюджет serial.retry.budget-ratio,
+ * каждый повтор забирает из него 1 (не больше serial.retry.budget в запасе). При массовых конфликтах
+ * бюджет кончается, и вызовы завершаются первым же исключением, не умножая нагрузку на бд повторами.
+ * <br>
+ * Внутри уже начатой транзакции повтор невозможен (ее контекст и откат принадлежат внешнему коду),
+ * поэтому действие с распространением, присоединяющимся к ней, выполняется один раз.
+ */
+@Component
+@ManagedResource(description = "Повторы транзакций при конфликтах")
+public class TransactionRetryExecutor {
+    private final static Logger log = LoggerFactory.getLogger(TransactionRetryExecutor.class);
+
+    /**
+     * Бюджет хранится в тысячных долях повтора
+     */
+    private static final long BUDGET_SCALE = 1000;
+
+    /**
+     * SQLSTATE ошибки сериализации (в т.ч. deadlock)
+     */
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final TransactionTemplate defaultTransaction;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffNanos;
+
+    private final long maxBackoffNanos;
+
+    private final long budgetCapacity;
+
+    private final long budgetDeposit;
+
+    private final AtomicLong budget;
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder attempts = new LongAdder();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder successes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder exhausted = new LongAdder();
+
+    private final LongAdder budgetRejections = new LongAdder();
+
+    private final Map<String, LongAdder> retriesByException = new ConcurrentHashMap<>();
+
+    public TransactionRetryExecutor(PlatformTransactionManager transactionManager,
+                                    @Value("${serial.retry.max-attempts}") int maxAttempts,
+                                    @Value("${serial.retry.initial-backoff}") Duration initialBackoff,
+                                    @Value("${serial.retry.max-backoff}") Duration maxBackoff,
+                                    @Value("${serial.retry.budget}") int budget,
+                                    @Value("${serial.retry.budget-ratio}") double budgetRatio) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Кол-во попыток должно быть не меньше 1: " + maxAttempts);
+        }
+        this.transactionManager = transactionManager;
+        this.defaultTransaction = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = Math.max(maxBackoff.toNanos(), initialBackoffNanos);
+        this.budgetCapacity = budget * BUDGET_SCALE;
+        this.budgetDeposit = Math.round(budgetRatio * BUDGET_SCALE);
+        this.budget = new AtomicLong(budgetCapacity);
+    }
+
+    /**
+     * Выполнение действия в транзакции по умолчанию (REQUIRED, уровень изоляции бд) с повторами.
+     * @param action действие
+     * @return результат действия
+     */
+    public <T> T execute(TransactionCallback<T> action) {
+        return execute(defaultTransaction, action);
+    }
+
+    /**
+     * Выполнение действия в транзакции с заданными параметрами с повторами.
+     * @param definition параметры транзакции
+     * @param action     действие
+     * @return результат действия
+     */
+    public <T> T execute(TransactionDefinition definition, TransactionCallback<T> action) {
+        return execute(new TransactionTemplate(transactionManager, definition), action);
+    }
+
+    private <T> T execute(TransactionTemplate transaction, TransactionCallback<T> action) {
+        calls.increment();
+        deposit();
+        int attemptLimit = joinsExistingTransaction(transaction) ? 1 : maxAttempts;
+        for (int attempt = 1; ; attempt++) {
+            attempts.increment();
+            try {
+                T result = transaction.execute(action);
+                successes.increment();
+                return result;
+            } catch (RuntimeException e) {
+                if (!isRetryable(e)) {
+                    failures.increment();
+                    throw e;
+                }
+                if (attempt >= attemptLimit) {
+                    exhausted.increment();
+                    throw e;
+                }
+                if (!withdraw()) {
+                    budgetRejections.increment();
+                    throw e;
+                }
+                retries.increment();
+                retriesByException.computeIfAbsent(e.getClass().getSimpleName(), key -> new LongAdder()).increment();
+                log.debug("Повтор транзакции после попытки {}: {}", attempt, e.toString());
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Можно ли повторить транзакцию после исключения.
+     * @param e исключение
+     * @return true, если исключение или одна из его причин - конфликт конкурентных транзакций
+     *         или временная/восстановимая ошибка доступа к данным
+     */
+    public static boolean isRetryable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof OptimisticLockException
+                    || cause instanceof PessimisticLockException
+                    || cause instanceof LockTimeoutException
+                    || cause instanceof StaleStateException
+                    || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof SQLException && SERIALIZATION_FAILURE.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean joinsExistingTransaction(TransactionDefinition definition) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        int propagation = definition.getPropagationBehavior();
+        return propagation != TransactionDefinition.PROPAGATION_REQUIRES_NEW
+                && propagation != TransactionDefinition.PROPAGATION_NOT_SUPPORTED;
+    }
+
+    private void deposit() {
+        budget.getAndUpdate(value -> Math.min(budgetCapacity, value + budgetDeposit));
+    }
+
+    private boolean withdraw() {
+        long value;
+        do {
+            value = budget.get();
+            if (value < BUDGET_SCALE) {
+                return false;
+            }
+        } while (!budget.compareAndSet(value, value - BUDGET_SCALE));
+        return true;
+    }
+
+    /**
+     * Пауза перед повтором: случайная величина от половины до полной экспоненциальной задержки.
+     */
+    private void backoff(int attempt, RuntimeException e) {
+        long delay = initialBackoffNanos << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > maxBackoffNanos) {
+            delay = maxBackoffNanos;
+        }
+        if (delay == 0) {
+            return;
+        }
+        long half = delay / 2;
+        try {
+            TimeUnit.NANOSECONDS.sleep(half + ThreadLocalRandom.current().nextLong(delay - half + 1));
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            e.addSuppressed(interrupted);
+            throw e;
+        }
+    }
+
+    /**
+     * Снимок метрик.
+     * @return метрики повторов
+     */
+    public RetryStatistics getStatistics() {
+        Map<String, Long> byException = new TreeMap<>();
+        retriesByException.forEach((name, count) -> byException.put(name, count.sum()));
+        return new RetryStatistics(calls.sum(), attempts.sum(), retries.sum(), successes.sum(), failures.sum(),
+                exhausted.sum(), budgetRejections.sum(), (double) budget.get() / BUDGET_SCALE, byException);
+    }
+
+    @ManagedAttribute(description = "Метрики повторов")
+    public String getReport() {
+        return getStatistics().toString();
+    }
+
+    @ManagedAttribute(description = "Кол-во повторов")
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @ManagedAttribute(description = "Кол-во вызовов, исчерпавших попытки")
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    @ManagedOperation(description = "Сброс метрик")
+    public void reset() {
+        calls.reset();
+        attempts.reset();
+        retries.reset();
+        successes.reset();
+        failures.reset();
+        exhausted.reset();
+        budgetRejections.reset();
+        retriesByException.clear();
+    }
+}
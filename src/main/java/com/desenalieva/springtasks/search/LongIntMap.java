@@ -0,0 +1,108 @@
+package com.desenalieva.springtasks.search;
+
+import java.util.Arrays;
+
+/**
+ * Хэш-таблица long -> int с открытой адресацией на массивах (без объектов на каждую запись).
+ * Отсутствие значения - -1, поэтому значения должны быть неотрицательными,
+ * ключи Long.MIN_VALUE и Long.MIN_VALUE + 1 зарезервированы.
+ */
+final class LongIntMap {
+    private static final long FREE = Long.MIN_VALUE;
+
+    private static final long REMOVED = Long.MIN_VALUE + 1;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private int size;
+
+    /**
+     * Занятые и удаленные ячейки
+     */
+    private int used;
+
+    LongIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(long key) {
+        int slot = find(key);
+        return slot < 0 ? -1 : values[slot];
+    }
+
+    void put(long key, int value) {
+        int slot = find(key);
+        if (slot >= 0) {
+            values[slot] = value;
+            return;
+        }
+        if ((used + 1) * 4 > keys.length * 3) {
+            rehash(size * 4 > keys.length ? keys.length * 2 : keys.length);
+        }
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != FREE && keys[i] != REMOVED) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == FREE) {
+            used++;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * @return удаленное значение или -1
+     */
+    int remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return -1;
+        }
+        keys[slot] = REMOVED;
+        size--;
+        return values[slot];
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        size = 0;
+        used = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE && oldKeys[i] != REMOVED) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
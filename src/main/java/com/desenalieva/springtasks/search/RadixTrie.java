@@ -0,0 +1,216 @@
+package com.desenalieva.springtasks.search;
+
+import java.util.Arrays;
+
+/**
+ * Сжатое префиксное дерево слов: цепочки узлов с одним потомком хранятся одним ребром с меткой из нескольких символов.
+ * Каждому слову присваивается номер (по порядку добавления), по которому хранятся списки документов.
+ * <br>
+ * Не потокобезопасно: синхронизация - на стороне {@link TextIndex}.
+ */
+final class RadixTrie {
+
+    /**
+     * Получатель найденных слов.
+     */
+    interface TermConsumer {
+        /**
+         * @param term  номер слова
+         * @param value длина слова (поиск по префиксу) или кол-во правок (нечеткий поиск)
+         */
+        void accept(int term, int value);
+    }
+
+    private static final char[] EMPTY = new char[0];
+
+    private static final class Node {
+        private char[] label;
+
+        /**
+         * Потомки по возрастанию первого символа метки
+         */
+        private Node[] children;
+
+        private int childCount;
+
+        private int term = -1;
+
+        private Node(char[] label) {
+            this.label = label;
+        }
+
+        private int find(char c) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midChar = children[mid].label[0];
+                if (midChar < c) {
+                    low = mid + 1;
+                } else if (midChar > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private void insertChild(int position, Node child) {
+            if (children == null) {
+                children = new Node[2];
+            } else if (childCount == children.length) {
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            System.arraycopy(children, position, children, position + 1, childCount - position);
+            children[position] = child;
+            childCount++;
+        }
+    }
+
+    private final Node root = new Node(EMPTY);
+
+    private int terms;
+
+    /**
+     * @return кол-во слов
+     */
+    int size() {
+        return terms;
+    }
+
+    /**
+     * Добавление слова.
+     * @return номер слова (новый, если слова еще не было)
+     */
+    int add(String word) {
+        Node node = root;
+        int i = 0;
+        while (true) {
+            if (i == word.length()) {
+                if (node.term < 0) {
+                    node.term = terms++;
+                }
+                return node.term;
+            }
+            int position = node.find(word.charAt(i));
+            if (position < 0) {
+                Node leaf = new Node(word.substring(i).toCharArray());
+                leaf.term = terms++;
+                node.insertChild(-position - 1, leaf);
+                return leaf.term;
+            }
+            Node child = node.children[position];
+            int common = commonPrefix(child.label, word, i);
+            if (common < child.label.length) {
+                // разделение ребра: общий префикс становится промежуточным узлом
+                Node middle = new Node(Arrays.copyOf(child.label, common));
+                child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                middle.insertChild(0, child);
+                node.children[position] = middle;
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+    }
+
+    /**
+     * @return номер слова или -1, если слова нет
+     */
+    int get(String word) {
+        Node node = root;
+        int i = 0;
+        while (i < word.length()) {
+            int position = node.find(word.charAt(i));
+            if (position < 0) {
+                return -1;
+            }
+            node = node.children[position];
+            if (commonPrefix(node.label, word, i) < node.label.length) {
+                return -1;
+            }
+            i += node.label.length;
+        }
+        return node.term;
+    }
+
+    /**
+     * Все слова, начинающиеся с prefix (включая само слово prefix).
+     */
+    void prefix(String prefix, TermConsumer consumer) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int position = node.find(prefix.charAt(i));
+            if (position < 0) {
+                return;
+            }
+            node = node.children[position];
+            int common = commonPrefix(node.label, prefix, i);
+            if (common < node.label.length && i + common < prefix.length()) {
+                return;
+            }
+            i += node.label.length;
+        }
+        collect(node, i, consumer);
+    }
+
+    private static void collect(Node node, int length, TermConsumer consumer) {
+        if (node.term >= 0) {
+            consumer.accept(node.term, length);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            Node child = node.children[i];
+            collect(child, length + child.label.length, consumer);
+        }
+    }
+
+    /**
+     * Все слова на расстоянии Левенштейна не больше maxEdits от word.
+     * Строка таблицы расстояний считается на каждый символ пути, поддеревья, в которых расстояние
+     * уже больше maxEdits, пропускаются.
+     */
+    void fuzzy(String word, int maxEdits, TermConsumer consumer) {
+        int[] row = new int[word.length() + 1];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i;
+        }
+        for (int i = 0; i < root.childCount; i++) {
+            fuzzy(root.children[i], word, row, maxEdits, consumer);
+        }
+    }
+
+    private static void fuzzy(Node node, String word, int[] previous, int maxEdits, TermConsumer consumer) {
+        int[] row = previous;
+        for (char c : node.label) {
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+            int min = next[0];
+            for (int i = 1; i < row.length; i++) {
+                int cost = word.charAt(i - 1) == c ? 0 : 1;
+                next[i] = Math.min(Math.min(next[i - 1] + 1, row[i] + 1), row[i - 1] + cost);
+                min = Math.min(min, next[i]);
+            }
+            if (min > maxEdits) {
+                return;
+            }
+            row = next;
+        }
+        if (node.term >= 0 && row[row.length - 1] <= maxEdits) {
+            consumer.accept(node.term, row[row.length - 1]);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            fuzzy(node.children[i], word, row, maxEdits, consumer);
+        }
+    }
+
+    private static int commonPrefix(char[] label, String word, int offset) {
+        int length = Math.min(label.length, word.length() - offset);
+        int i = 0;
+        while (i < length && label[i] == word.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+}
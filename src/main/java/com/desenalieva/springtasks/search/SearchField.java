@@ -0,0 +1,55 @@
+package com.desenalieva.springtasks.search;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+
+/**
+ * Поле, по которому ведется поиск.
+ */
+public enum SearchField {
+    /**
+     * Название сериала
+     */
+    SERIAL_NAME(Serial.class, "name", "select id, name from serial"),
+    /**
+     * Название книги
+     */
+    BOOK_NAME(Book.class, "name", "select id, name from book"),
+    /**
+     * Автор книги
+     */
+    BOOK_AUTHOR(Book.class, "author", "select id, author from book");
+
+    private final Class<?> entity;
+
+    private final String property;
+
+    private final String sql;
+
+    SearchField(Class<?> entity, String property, String sql) {
+        this.entity = entity;
+        this.property = property;
+        this.sql = sql;
+    }
+
+    /**
+     * @return класс сущности
+     */
+    public Class<?> getEntity() {
+        return entity;
+    }
+
+    /**
+     * @return свойство сущности
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * @return запрос идентификаторов и текста всех сущностей (для построения индекса)
+     */
+    String getSql() {
+        return sql;
+    }
+}
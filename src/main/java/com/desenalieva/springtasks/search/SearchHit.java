@@ -0,0 +1,23 @@
+package com.desenalieva.springtasks.search;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Результат поиска.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class SearchHit {
+    /**
+     * Идентификатор сериала или книги
+     */
+    private final long id;
+
+    /**
+     * Релевантность (больше - лучше)
+     */
+    private final float score;
+}
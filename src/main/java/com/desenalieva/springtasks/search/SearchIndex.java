@@ -0,0 +1,432 @@
+package com.desenalieva.springtasks.search;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Поисковый индекс в памяти по названиям сериалов, названиям и авторам книг (вместо LIKE '%x%' по таблице):
+ * поиск по префиксу, по словам и нечеткий поиск возвращает идентификаторы, упорядоченные по релевантности.
+ * <br>
+ * Индекс каждого поля ({@link TextIndex}) - сжатое префиксное дерево слов и списки номеров документов по словам.
+ * Тексты и сущности в памяти не хранятся.
+ * <br>
+ * Индекс строится при старте приложения: строки читаются JDBC курсором, пачки по serial.search.chunk-size строк
+ * разбиваются на слова параллельно (serial.search.parallelism потоков), поля строятся одновременно.
+ * Дальше индекс обновляется по post-commit событиям Hibernate (только закоммиченные вставки, изменения и удаления).
+ * Изменения, закоммиченные во время перестроения, запоминаются и применяются к новому индексу перед заменой.
+ * Массовые операции в обход сессии помечают транзакцию через {@link #markStale()}, после коммита индекс
+ * перестраивается в фоне. Фоновое перестроение запускается и когда удаленных документов в списках слов
+ * становится больше, чем живых.
+ */
+@Component
+public class SearchIndex implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+    private final static Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    /**
+     * Кол-во удаленных документов, до которого индекс не перестраивается
+     */
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int parallelism;
+
+    private final int chunkSize;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Перестроения выполняются по одному в порядке запросов
+     */
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<SearchField, TextIndex> indexes = emptyIndexes();
+
+    /**
+     * Изменения, закоммиченные во время перестроения (null - перестроение не идет)
+     */
+    private List<Change> pending;
+
+    /**
+     * Запрошенное, но еще не начатое фоновое перестроение
+     */
+    private CompletableFuture<Void> queued;
+
+    public SearchIndex(EntityManagerFactory entityManagerFactory,
+                       DataSource dataSource,
+                       @Value("${serial.stream.fetch-size}") int fetchSize,
+                       @Value("${serial.search.parallelism}") int parallelism,
+                       @Value("${serial.search.chunk-size}") int chunkSize) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Регистрация слушателей в Hibernate.
+     */
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    /**
+     * Построение индекса при старте приложения (через {@link #rebuild()}, в потоке перестроений).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * Поиск.
+     * @param field поле
+     * @param query запрос (слова через пробелы и знаки препинания)
+     * @param mode  режим поиска
+     * @param limit максимальное кол-во результатов
+     * @return результаты по убыванию релевантности
+     */
+    public List<SearchHit> search(SearchField field, String query, SearchMode mode, int limit) {
+        String[] tokens = Tokenizer.tokens(query);
+        boolean lastPrefix = Tokenizer.endsWithToken(query);
+        lock.readLock().lock();
+        try {
+            return indexes.get(field).search(tokens, mode, lastPrefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param field поле
+     * @return кол-во сущностей в индексе поля
+     */
+    public int size(SearchField field) {
+        lock.readLock().lock();
+        try {
+            return indexes.get(field).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        apply(event.getPersister(), event.getId(), event.getState());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        apply(event.getPersister(), event.getId(), event.getState());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        apply(event.getPersister(), event.getId(), null);
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.getMappedClass() == Serial.class || persister.getMappedClass() == Book.class;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    /**
+     * Применение закоммиченного изменения сущности.
+     * @param state состояние сущности (null - сущность удалена)
+     */
+    private void apply(EntityPersister persister, Object id, Object[] state) {
+        List<Change> changes = new ArrayList<>(2);
+        for (SearchField field : SearchField.values()) {
+            if (field.getEntity() == persister.getMappedClass()) {
+                String[] tokens = state == null ? null : Tokenizer.tokens(
+                        (String) state[persister.getEntityMetamodel().getPropertyIndex(field.getProperty())]);
+                changes.add(new Change(field, (Long) id, tokens));
+            }
+        }
+        boolean compact = false;
+        lock.writeLock().lock();
+        try {
+            for (Change change : changes) {
+                TextIndex index = indexes.get(change.field);
+                change.applyTo(index);
+                compact |= index.deleted() > COMPACT_THRESHOLD && index.deleted() > index.size();
+            }
+            if (pending != null) {
+                pending.addAll(changes);
+                compact = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compact) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * Пометка текущей транзакции: в ней изменены сериалы или книги в обход сессии Hibernate,
+     * после коммита индекс перестраивается в фоне (вне транзакции - сразу).
+     */
+    public void markStale() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            rebuildAsync();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rebuildAsync();
+            }
+        });
+    }
+
+    /**
+     * Запрос фонового перестроения (запросы до начала перестроения объединяются).
+     * @return завершение перестроения
+     */
+    public synchronized CompletableFuture<Void> rebuildAsync() {
+        if (queued != null) {
+            return queued;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        queued = future;
+        rebuildExecutor.execute(() -> {
+            synchronized (this) {
+                queued = null;
+            }
+            try {
+                doRebuild();
+                future.complete(null);
+            } catch (RuntimeException ex) {
+                log.error("Ошибка перестроения поискового индекса", ex);
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Ожидание завершения запрошенных фоновых перестроений.
+     * @return true, если перестроения завершились до истечения таймаута
+     */
+    public boolean awaitRebuild(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            rebuildExecutor.submit(() -> { }).get(timeout, unit);
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Перестроение индекса по бд с ожиданием завершения. Перестроение выполняется в потоке перестроений,
+     * как и фоновые: еще не начатое фоновое перестроение объединяется с этим, идущее - дожидается очереди.
+     */
+    public void rebuild() {
+        try {
+            rebuildAsync().join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+    }
+
+    /**
+     * Перестроение индекса по бд (поля строятся одновременно, пачки строк разбиваются на слова параллельно).
+     * Вызывается только из потока перестроений, поэтому перестроения не пересекаются.
+     */
+    private void doRebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<SearchField, TextIndex> rebuilt = new EnumMap<>(SearchField.class);
+        try {
+            Map<SearchField, ForkJoinTask<TextIndex>> tasks = new EnumMap<>(SearchField.class);
+            for (SearchField field : SearchField.values()) {
+                tasks.put(field, pool.submit(() -> build(field)));
+            }
+            tasks.forEach((field, task) -> rebuilt.put(field, task.join()));
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (rebuilt.size() == SearchField.values().length) {
+                    for (Change change : pending) {
+                        change.applyTo(rebuilt.get(change.field));
+                    }
+                    indexes = rebuilt;
+                }
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (log.isInfoEnabled()) {
+            StringJoiner sizes = new StringJoiner(", ");
+            rebuilt.forEach((field, index) -> sizes.add(field + ": " + index.size() + " (слов " + index.terms() + ")"));
+            log.info("Поисковый индекс построен за {} мс: {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    sizes);
+        }
+    }
+
+    /**
+     * Построение индекса поля: строки читаются курсором, пачки разбиваются на слова в пуле
+     * (не больше 2 * parallelism пачек в памяти) и добавляются в индекс по порядку.
+     */
+    private TextIndex build(SearchField field) {
+        Deque<ForkJoinTask<Chunk>> tokenizing = new ArrayDeque<>();
+        TextIndex index = new TextIndex(chunkSize);
+        List<Object[]> rows = new ArrayList<>(chunkSize);
+        jdbcTemplate.query(field.getSql(), (RowCallbackHandler) resultSet -> {
+            rows.add(new Object[]{resultSet.getLong(1), resultSet.getString(2)});
+            if (rows.size() == chunkSize) {
+                tokenizing.add(pool.submit(tokenize(new ArrayList<>(rows))));
+                rows.clear();
+                if (tokenizing.size() >= 2 * parallelism) {
+                    tokenizing.poll().join().addTo(index);
+                }
+            }
+        });
+        tokenizing.add(pool.submit(tokenize(rows)));
+        while (!tokenizing.isEmpty()) {
+            tokenizing.poll().join().addTo(index);
+        }
+        return index;
+    }
+
+    private static Callable<Chunk> tokenize(List<Object[]> rows) {
+        return () -> {
+            Chunk chunk = new Chunk(rows.size());
+            for (Object[] row : rows) {
+                chunk.ids[chunk.size] = (Long) row[0];
+                chunk.tokens[chunk.size++] = Tokenizer.tokens((String) row[1]);
+            }
+            return chunk;
+        };
+    }
+
+    private static Map<SearchField, TextIndex> emptyIndexes() {
+        Map<SearchField, TextIndex> indexes = new EnumMap<>(SearchField.class);
+        for (SearchField field : SearchField.values()) {
+            indexes.put(field, new TextIndex(0));
+        }
+        return indexes;
+    }
+
+    /**
+     * Пачка строк, разбитых на слова.
+     */
+    private static final class Chunk {
+        private final long[] ids;
+
+        private final String[][] tokens;
+
+        private int size;
+
+        private Chunk(int capacity) {
+            ids = new long[capacity];
+            tokens = new String[capacity][];
+        }
+
+        private void addTo(TextIndex index) {
+            for (int i = 0; i < size; i++) {
+                index.put(ids[i], tokens[i]);
+            }
+        }
+    }
+
+    /**
+     * Закоммиченное изменение текста сущности.
+     */
+    private static final class Change {
+        private final SearchField field;
+
+        private final long id;
+
+        /**
+         * Слова нового текста (null - сущность удалена)
+         */
+        private final String[] tokens;
+
+        private Change(SearchField field, long id, String[] tokens) {
+            this.field = field;
+            this.id = id;
+            this.tokens = tokens;
+        }
+
+        private void applyTo(TextIndex index) {
+            if (tokens == null) {
+                index.remove(id);
+            } else {
+                index.put(id, tokens);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.desenalieva.springtasks.search;
+
+/**
+ * Режим поиска по названиям.
+ */
+public enum SearchMode {
+    /**
+     * Все слова запроса есть в названии, последнее слово - начало слова (поиск по мере ввода)
+     */
+    PREFIX,
+    /**
+     * Все слова запроса есть в названии
+     */
+    TOKEN,
+    /**
+     * Все слова запроса есть в названии с точностью до опечаток
+     * (1 правка для слов от 4 символов, 2 правки для слов от 8 символов)
+     */
+    FUZZY
+}
@@ -0,0 +1,287 @@
+package com.desenalieva.springtasks.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Индекс одного текстового поля: префиксное дерево слов и списки документов по словам (инвертированный индекс).
+ * <br>
+ * Документ - номер в порядке добавления, по номеру хранятся идентификатор сущности и кол-во слов.
+ * Списки документов - массивы int по возрастанию номера (новые документы дописываются в конец), поэтому
+ * проверка документа - двоичный поиск. При изменении текста документ получает новый номер, старый помечается
+ * удаленным и пропускается при поиске, пока индекс не перестроят.
+ * Сам текст не хранится: на документ приходится несколько int в списках слов, long идентификатора
+ * и запись в таблице id -> номер.
+ * <br>
+ * Не потокобезопасно: синхронизация - на стороне {@link SearchIndex}.
+ */
+final class TextIndex {
+    private static final long DELETED = -1;
+
+    private final RadixTrie terms = new RadixTrie();
+
+    private int[][] postings = new int[16][];
+
+    private int[] postingSizes = new int[16];
+
+    /**
+     * Идентификаторы сущностей по номерам документов (DELETED - документ удален)
+     */
+    private long[] ids;
+
+    /**
+     * Кол-во слов в документах
+     */
+    private short[] lengths;
+
+    private int documents;
+
+    private int deleted;
+
+    private final LongIntMap documentsById;
+
+    TextIndex(int expected) {
+        ids = new long[Math.max(16, expected)];
+        lengths = new short[ids.length];
+        documentsById = new LongIntMap(expected);
+    }
+
+    /**
+     * @return кол-во документов
+     */
+    int size() {
+        return documentsById.size();
+    }
+
+    /**
+     * @return кол-во удаленных документов, которые еще занимают место в списках слов
+     */
+    int deleted() {
+        return deleted;
+    }
+
+    /**
+     * @return кол-во различных слов
+     */
+    int terms() {
+        return terms.size();
+    }
+
+    /**
+     * Добавление или замена текста сущности.
+     * @param id     идентификатор сущности
+     * @param tokens слова текста (пустой массив - сущность не ищется)
+     */
+    void put(long id, String[] tokens) {
+        remove(id);
+        if (tokens.length == 0) {
+            return;
+        }
+        int document = documents++;
+        if (document == ids.length) {
+            ids = Arrays.copyOf(ids, document * 2);
+            lengths = Arrays.copyOf(lengths, document * 2);
+        }
+        ids[document] = id;
+        lengths[document] = (short) Math.min(tokens.length, Short.MAX_VALUE);
+        documentsById.put(id, document);
+        for (int i = 0; i < tokens.length; i++) {
+            if (!contains(tokens, i, tokens[i])) {
+                addPosting(terms.add(tokens[i]), document);
+            }
+        }
+    }
+
+    /**
+     * Удаление сущности из индекса.
+     */
+    void remove(long id) {
+        int document = documentsById.remove(id);
+        if (document >= 0) {
+            ids[document] = DELETED;
+            deleted++;
+        }
+    }
+
+    private static boolean contains(String[] tokens, int length, String token) {
+        for (int i = 0; i < length; i++) {
+            if (tokens[i].equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addPosting(int term, int document) {
+        if (term == postings.length) {
+            postings = Arrays.copyOf(postings, term * 2);
+            postingSizes = Arrays.copyOf(postingSizes, term * 2);
+        }
+        int[] list = postings[term];
+        int size = postingSizes[term];
+        if (list == null) {
+            list = postings[term] = new int[2];
+        } else if (size == list.length) {
+            list = postings[term] = Arrays.copyOf(list, size + (size >> 1) + 1);
+        }
+        list[size] = document;
+        postingSizes[term] = size + 1;
+    }
+
+    /**
+     * Поиск документов, содержащих все слова запроса.
+     * <br>
+     * Релевантность документа - сумма по словам запроса (вес совпадения * idf слова) / sqrt(кол-во слов документа):
+     * вес точного совпадения 1, совпадения по префиксу - доля длины префикса в длине слова, нечеткого - 1 / (1 + правки).
+     * @param query      слова запроса
+     * @param mode       режим поиска
+     * @param lastPrefix последнее слово запроса - префикс (для режима PREFIX)
+     * @param limit      максимальное кол-во результатов
+     * @return результаты по убыванию релевантности, при равной релевантности - по возрастанию id
+     */
+    List<SearchHit> search(String[] query, SearchMode mode, boolean lastPrefix, int limit) {
+        int live = size();
+        if (query.length == 0 || live == 0 || limit <= 0) {
+            return List.of();
+        }
+        Matches[] matches = new Matches[query.length];
+        for (int i = 0; i < query.length; i++) {
+            boolean prefix = mode == SearchMode.PREFIX && lastPrefix && i == query.length - 1;
+            matches[i] = match(query[i], mode, prefix, live);
+            if (matches[i].terms.isEmpty()) {
+                return List.of();
+            }
+        }
+        // первым разбирается слово с самыми короткими списками, остальные только проверяются по кандидатам
+        Arrays.sort(matches, Comparator.comparingLong(m -> m.postings));
+        int[] candidates = union(matches[0]);
+        float[] scores = new float[candidates.length];
+        int count = 0;
+        for (int candidate : candidates) {
+            if (ids[candidate] == DELETED) {
+                continue;
+            }
+            float score = 0;
+            for (Matches match : matches) {
+                float weight = match.weight(candidate, postings, postingSizes);
+                if (weight == 0) {
+                    score = 0;
+                    break;
+                }
+                score += weight;
+            }
+            if (score > 0) {
+                candidates[count] = candidate;
+                scores[count++] = score / (float) Math.sqrt(lengths[candidate]);
+            }
+        }
+        return top(candidates, scores, count, limit);
+    }
+
+    private Matches match(String token, SearchMode mode, boolean prefix, int live) {
+        Matches matches = new Matches();
+        if (prefix) {
+            terms.prefix(token, (term, length) -> matches.add(term, (float) token.length() / length, idf(term, live),
+                    postingSizes[term]));
+        } else if (mode == SearchMode.FUZZY) {
+            terms.fuzzy(token, maxEdits(token), (term, edits) -> matches.add(term, 1f / (1 + edits), idf(term, live),
+                    postingSizes[term]));
+        } else {
+            int term = terms.get(token);
+            if (term >= 0) {
+                matches.add(term, 1, idf(term, live), postingSizes[term]);
+            }
+        }
+        return matches;
+    }
+
+    static int maxEdits(String token) {
+        return token.length() >= 8 ? 2 : token.length() >= 4 ? 1 : 0;
+    }
+
+    private float idf(int term, int live) {
+        return (float) Math.log(1 + (double) live / postingSizes[term]);
+    }
+
+    /**
+     * @return документы из списков всех найденных слов без повторов, по возрастанию номера
+     */
+    private int[] union(Matches matches) {
+        if (matches.terms.size() == 1) {
+            int term = matches.terms.get(0);
+            return Arrays.copyOf(postings[term], postingSizes[term]);
+        }
+        int[] all = new int[(int) Math.min(matches.postings, Integer.MAX_VALUE - 8)];
+        int size = 0;
+        for (int term : matches.terms) {
+            System.arraycopy(postings[term], 0, all, size, postingSizes[term]);
+            size += postingSizes[term];
+        }
+        Arrays.sort(all, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || all[unique - 1] != all[i]) {
+                all[unique++] = all[i];
+            }
+        }
+        return unique == all.length ? all : Arrays.copyOf(all, unique);
+    }
+
+    private List<SearchHit> top(int[] documents, float[] scores, int count, int limit) {
+        Comparator<SearchHit> worstFirst = Comparator.comparingDouble(SearchHit::getScore)
+                .thenComparing(Comparator.comparingLong(SearchHit::getId).reversed());
+        PriorityQueue<SearchHit> top = new PriorityQueue<>(Math.min(limit, count) + 1, worstFirst);
+        for (int i = 0; i < count; i++) {
+            SearchHit hit = new SearchHit(ids[documents[i]], scores[i]);
+            if (top.size() < limit) {
+                top.add(hit);
+            } else if (worstFirst.compare(hit, top.peek()) > 0) {
+                top.poll();
+                top.add(hit);
+            }
+        }
+        List<SearchHit> hits = new ArrayList<>(top);
+        hits.sort(worstFirst.reversed());
+        return hits;
+    }
+
+    /**
+     * Слова индекса, найденные по одному слову запроса.
+     */
+    private static final class Matches {
+        private final List<Integer> terms = new ArrayList<>();
+
+        private float[] weights = new float[4];
+
+        /**
+         * Суммарная длина списков документов найденных слов
+         */
+        private long postings;
+
+        private void add(int term, float match, float idf, int size) {
+            if (terms.size() == weights.length) {
+                weights = Arrays.copyOf(weights, weights.length * 2);
+            }
+            weights[terms.size()] = match * idf;
+            terms.add(term);
+            postings += size;
+        }
+
+        /**
+         * @return наибольший вес найденного слова, которое есть в документе (0 - ни одного)
+         */
+        private float weight(int document, int[][] postings, int[] postingSizes) {
+            float best = 0;
+            for (int i = 0; i < terms.size(); i++) {
+                int term = terms.get(i);
+                if (weights[i] > best && Arrays.binarySearch(postings[term], 0, postingSizes[term], document) >= 0) {
+                    best = weights[i];
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.desenalieva.springtasks.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбиение текста на слова: последовательности букв и цифр в нижнем регистре, "ё" заменяется на "е".
+ */
+final class Tokenizer {
+
+    private static final String[] NONE = new String[0];
+
+    private Tokenizer() {
+    }
+
+    /**
+     * @param text текст (может быть null)
+     * @return слова текста в порядке следования (с повторами)
+     */
+    static String[] tokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return NONE;
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                token.append(c == 'ё' ? 'е' : c);
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens.toArray(NONE);
+    }
+
+    /**
+     * @param text текст
+     * @return true, если текст заканчивается словом, а не разделителем (последнее слово запроса еще вводится)
+     */
+    static boolean endsWithToken(String text) {
+        return !text.isEmpty() && Character.isLetterOrDigit(text.charAt(text.length() - 1));
+    }
+}
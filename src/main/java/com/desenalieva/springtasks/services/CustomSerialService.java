@@ -51,6 +51,20 @@ public class CustomSerialService {
         serialService.deleteById(deleteId);
     }
 
+    /**
+     * Обновляет рейтинг сериала c id = updateId и массово удаляет сериалы с id из deleteIds.
+     * Отсутствующие идентификаторы не помечают транзакцию как rollbackOnly, поэтому обновление рейтинга сохраняется.
+     * @param updateId  идентификатор сериала, рейтинг которого нужно обновить
+     * @param rating    рейтинг сериала
+     * @param deleteIds идентификаторы сериалов, которые нужно удалить
+     * @return кол-во удаленных сериалов
+     */
+    @Transactional
+    public int updateRatingAndDeleteAll(Long updateId, Integer rating, long[] deleteIds) {
+        serialService.updateRatingById(updateId, rating);
+        return serialService.deleteAllByIds(deleteIds).getCount();
+    }
+
     @Transactional
     public void updateRating1(Long id, Integer rating) {
         updateRatingWithException(id, rating);
@@ -1,23 +1,33 @@
 package com.desenalieva.springtasks.services;
 
+import com.desenalieva.springtasks.dispatch.BoundedDispatch;
 import com.desenalieva.springtasks.events.CreateSerialEvent;
+import com.desenalieva.springtasks.events.EventBatch;
 import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.index.RatingIndex;
+import com.desenalieva.springtasks.journal.SerialJournal;
+import com.desenalieva.springtasks.repositories.BulkOperationResult;
 import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.retry.TransactionRetryExecutor;
+import com.desenalieva.springtasks.search.SearchIndex;
 import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.springframework.transaction.event.TransactionPhase.AFTER_COMMIT;
 
 /**
@@ -26,12 +36,11 @@ import static org.springframework.transaction.event.TransactionPhase.AFTER_COMMI
 @Service
 @RequiredArgsConstructor
 public class SerialService {
-    private final static Logger log = LoggerFactory.getLogger(CustomSerialService.class);
     /**
-     * Путь до файла, в который нужно записать информацию о созданном сериале.
+     * Кол-во сериалов, сохраняемых в одной транзакции при массовом создании.
      */
-    @Value("${serial.info.filepath}")
-    public String SERIAL_INFO_FILE_PATH;
+    @Value("${serial.bulk.chunk-size}")
+    private int bulkChunkSize;
 
     /**
      * Репозиторий сериалов.
@@ -43,8 +52,35 @@ public class SerialService {
      */
     private final ApplicationEventPublisher eventPublisher;
 
+    /**
+     * Шаблон для программного управления транзакциями.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Бинарный журнал созданных сериалов.
+     */
+    private final SerialJournal serialJournal;
+
+    /**
+     * Индекс рейтингов (массовые операции в обход сессии перестраивают его после коммита).
+     */
+    private final RatingIndex ratingIndex;
+
+    /**
+     * Поисковый индекс названий (массовые удаления перестраивают его после коммита).
+     */
+    private final SearchIndex searchIndex;
+
+    /**
+     * Выполнение транзакций с повтором при конфликтах.
+     */
+    private final TransactionRetryExecutor retryExecutor;
+
     /**
      * Создание сериала.
+     * Событие CreateSerialEvent сохраняется в outbox в той же транзакции
+     * (см. {@link com.desenalieva.springtasks.outbox.OutboxWriter}), информация о сериале записывается в файл после доставки.
      * @param id     идентификатор сериала
      * @param name   название сериала
      * @param rating рейтинг сериала
@@ -58,19 +94,59 @@ public class SerialService {
     }
 
     /**
-     * Обработка события успешного коммита транзакции после создания сериала.
-     * Запись в файл информации о созданном сериале.
-     * @param createSerialEvent событие создания сериала
+     * Массовое создание сериалов.
+     * @param serials новые сериалы
+     * @return кол-во созданных сериалов
+     * @see #createAll(Stream)
      */
-    @TransactionalEventListener(phase = AFTER_COMMIT)
-    public void writeSerialInfo(CreateSerialEvent createSerialEvent) {
-        Serial serial = createSerialEvent.getSerial();
-        try (BufferedWriter bw = Files.newBufferedWriter(Path.of(SERIAL_INFO_FILE_PATH), UTF_8)) {
-            bw.write(String.format("%1$s, %2$d", serial.getName(), serial.getRating()));
-        } catch (IOException ex) {
-            log.error("Произошла ошибка при записи информации о сериале в файл {}: ", SERIAL_INFO_FILE_PATH, ex);
-            throw new RuntimeException(ex);
+    public int createAll(Collection<Serial> serials) {
+        return createAll(serials.stream());
+    }
+
+    /**
+     * Массовое создание сериалов.
+     * Сериалы сохраняются порциями по serial.bulk.chunk-size, каждая порция - в своей транзакции
+     * (если метод вызван внутри существующей транзакции, то все порции выполняются в ней).
+     * Вставка идет JDBC батчами (hibernate.jdbc.batch_size, hibernate.order_inserts),
+     * поэтому на порцию приходится несколько обращений к бд, а не по одному на каждый сериал.
+     * Для каждого сериала, как и в {@link #create}, публикуется событие CreateSerialEvent.
+     * @param serials новые сериалы
+     * @return кол-во созданных сериалов
+     */
+    public int createAll(Stream<Serial> serials) {
+        int created = 0;
+        Iterator<Serial> iterator = serials.iterator();
+        List<Serial> chunk = new ArrayList<>(bulkChunkSize);
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == bulkChunkSize || !iterator.hasNext()) {
+                created += saveChunk(chunk);
+                chunk = new ArrayList<>(bulkChunkSize);
+            }
         }
+        return created;
+    }
+
+    private int saveChunk(List<Serial> chunk) {
+        transactionTemplate.executeWithoutResult(status -> {
+            chunk.forEach(serial -> eventPublisher.publishEvent(new CreateSerialEvent(this, serial)));
+            serialRepository.persistAll(chunk);
+        });
+        return chunk.size();
+    }
+
+    /**
+     * Обработка событий успешного коммита транзакции после создания сериалов.
+     * Добавление записей о созданных в транзакции сериалах в бинарный журнал (одна пачка на транзакцию).
+     * Выполняется в отдельном потоке (см. {@link BoundedDispatch}), одном, чтобы записи шли в порядке коммитов.
+     * @param createSerialEvents события создания сериалов транзакции
+     */
+    @TransactionalEventListener(phase = AFTER_COMMIT)
+    @BoundedDispatch(threads = 1)
+    public void writeSerialJournal(EventBatch<CreateSerialEvent> createSerialEvents) {
+        serialJournal.appendAll(createSerialEvents.getEvents().stream()
+                .map(CreateSerialEvent::getSerial)
+                .collect(Collectors.toList()));
     }
 
     /**
@@ -87,6 +163,59 @@ public class SerialService {
                 });
     }
 
+    /**
+     * Изменение рейтинга сериала по текущему значению (чтение, изменение, запись) в отдельной транзакции.
+     * Если сериал изменили конкурентно, версия не совпадет и транзакция повторится целиком
+     * с новым чтением (см. {@link TransactionRetryExecutor}), т.е. конкурентные изменения не теряются.
+     * Вызов внутри существующей транзакции выполняется в ней без повторов.
+     * @param id     идентификатор сериала
+     * @param change новый рейтинг по текущему (null рейтинг передается как Serial.MIN_RATING)
+     * @return новый рейтинг или empty, если сериал не найден
+     */
+    public Optional<Integer> changeRatingById(Long id, IntUnaryOperator change) {
+        return retryExecutor.execute(status -> serialRepository.findById(id)
+                .map(serial -> {
+                    int rating = serial.getRating() != null ? serial.getRating() : Serial.MIN_RATING;
+                    serial.setRating(change.applyAsInt(rating));
+                    return serial.getRating();
+                }));
+    }
+
+    /**
+     * Массовое обновление рейтинга сериалов без загрузки сущностей.
+     * @param ratings новые рейтинги по идентификаторам сериалов
+     * @return кол-во обновленных сериалов и идентификаторы, для которых сериалы не найдены
+     * @see SerialRepository#updateRatings(long[], int[])
+     */
+    @Transactional
+    public BulkOperationResult updateRatings(Map<Long, Integer> ratings) {
+        long[] ids = new long[ratings.size()];
+        int[] values = new int[ratings.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : ratings.entrySet()) {
+            if (entry.getValue() == null) {
+                throw new IllegalArgumentException("Не задан рейтинг сериала с id = " + entry.getKey());
+            }
+            ids[i] = entry.getKey();
+            values[i++] = entry.getValue();
+        }
+        ratingIndex.markStale();
+        return serialRepository.updateRatings(ids, values);
+    }
+
+    /**
+     * Массовое обновление рейтинга сериалов без загрузки сущностей.
+     * @param ids     идентификаторы сериалов
+     * @param ratings новые рейтинги (ratings[i] - рейтинг сериала ids[i])
+     * @return кол-во обновленных сериалов и идентификаторы, для которых сериалы не найдены
+     * @see SerialRepository#updateRatings(long[], int[])
+     */
+    @Transactional
+    public BulkOperationResult updateRatings(long[] ids, int[] ratings) {
+        ratingIndex.markStale();
+        return serialRepository.updateRatings(ids, ratings);
+    }
+
     /**
      * Удаление сериала с переданным идентификатором.
      * (использую данный метод, так как он выкидывает EmptyResultDataAccessException)
@@ -96,4 +225,31 @@ public class SerialService {
     public void deleteById(Long id) {
         serialRepository.deleteById(id);
     }
-}
\ No newline at end of file
+
+    /**
+     * Массовое удаление сериалов по идентификаторам.
+     * В отличие от {@link #deleteById}, отсутствующие идентификаторы не приводят к EmptyResultDataAccessException
+     * (и не помечают транзакцию как rollbackOnly), а возвращаются в результате.
+     * @param ids идентификаторы сериалов
+     * @return кол-во удаленных сериалов и идентификаторы, для которых сериалы не найдены
+     * @see SerialRepository#deleteAllByIds(long[])
+     */
+    @Transactional
+    public BulkOperationResult deleteAllByIds(long[] ids) {
+        ratingIndex.markStale();
+        searchIndex.markStale();
+        return serialRepository.deleteAllByIds(ids);
+    }
+
+    /**
+     * Удаление сериалов с рейтингом ниже заданного.
+     * @param rating рейтинг
+     * @return кол-во удаленных сериалов
+     */
+    @Transactional
+    public BulkOperationResult deleteByRatingBelow(int rating) {
+        ratingIndex.markStale();
+        searchIndex.markStale();
+        return new BulkOperationResult(serialRepository.deleteByRatingBelow(rating), List.of());
+    }
+}
@@ -44,6 +44,14 @@ public class SpringTransactionService {
         serialRepository.save(new Serial(1L)); // Изменения не попадут в бд так как readOnly = true
     }
 
+    /**
+     * Транзакционный метод с параметрами по умолчанию (аналог JavaTransactionService#transactionWithoutTimeout).
+     */
+    @Transactional
+    public void transactionWithDefaults() {
+        serialRepository.count();
+    }
+
     /**
      * Транзакционный метод c timeout = 0.
      * Будет всегда выбрасывать TransactionTimedOutException.
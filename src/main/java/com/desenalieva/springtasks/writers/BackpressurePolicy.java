@@ -0,0 +1,19 @@
+package com.desenalieva.springtasks.writers;
+
+/**
+ * Поведение при заполненной очереди записи.
+ */
+public enum BackpressurePolicy {
+    /**
+     * Ожидать освобождения места в очереди.
+     */
+    BLOCK,
+    /**
+     * Отбросить новую запись (учитывается в счетчике отброшенных записей).
+     */
+    DROP,
+    /**
+     * Выбросить IllegalStateException.
+     */
+    FAIL
+}
@@ -0,0 +1,306 @@
+package com.desenalieva.springtasks.writers;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.retry.TransactionRetryExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись рейтингов сериалов (write-behind): для каждого сериала хранится только последний
+ * рейтинг, предыдущие незаписанные изменения перезаписываются (coalescing), и в бд попадает одно
+ * изменение вместо транзакции на каждое.
+ * <br>
+ * Ожидающие записи рейтинги хранятся в нескольких ConcurrentHashMap (полосах, stripes) по id сериала, поэтому
+ * запись рейтинга не берет блокировок и не конкурирует с другими полосами. Фоновый поток сбрасывает рейтинги
+ * в бд пачками по serial.rating-buffer.batch-size: раз в serial.rating-buffer.flush-interval или сразу,
+ * когда ожидающих записи сериалов набралось на пачку. Каждая пачка - одна транзакция через
+ * {@link TransactionRetryExecutor}: сериалы загружаются одним запросом и изменяются через сессию,
+ * поэтому версии проверяются, а индексы рейтингов и поиска обновляются как при обычном изменении.
+ * <br>
+ * После коммита рейтинг удаляется из буфера, только если его не изменили за время записи (remove по значению),
+ * иначе новое значение ждет следующего сброса. Пока рейтинг не записан, он возвращается {@link #getRating(long)},
+ * т.е. записавший видит свое изменение. При остановке приложения буфер сбрасывается полностью.
+ */
+@Component
+@ManagedResource(description = "Отложенная запись рейтингов сериалов")
+public class RatingWriteBehindBuffer {
+    private final static Logger log = LoggerFactory.getLogger(RatingWriteBehindBuffer.class);
+
+    private final SerialRepository serialRepository;
+
+    private final TransactionRetryExecutor retryExecutor;
+
+    private final ConcurrentHashMap<Long, Integer>[] stripes;
+
+    private final int batchSize;
+
+    private final long flushIntervalNanos;
+
+    /**
+     * Кол-во сериалов, ожидающих записи
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Сброс из фонового потока и из {@link #flush()} выполняется по очереди
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final LongAdder submittedCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private final LongAdder writtenCount = new LongAdder();
+
+    private final LongAdder missingCount = new LongAdder();
+
+    private final LongAdder batchCount = new LongAdder();
+
+    private final LongAdder failedBatchCount = new LongAdder();
+
+    private volatile boolean running;
+
+    private Thread flusherThread;
+
+    /**
+     * Конструктор.
+     * @param serialRepository репозиторий сериалов
+     * @param retryExecutor    выполнение транзакций с повтором при конфликтах
+     * @param stripes          кол-во полос (округляется вверх до степени двойки)
+     * @param batchSize        максимальное кол-во сериалов в одной транзакции
+     * @param flushInterval    максимальное время ожидания рейтинга в буфере
+     */
+    @SuppressWarnings("unchecked")
+    public RatingWriteBehindBuffer(SerialRepository serialRepository,
+                                   TransactionRetryExecutor retryExecutor,
+                                   @Value("${serial.rating-buffer.stripes}") int stripes,
+                                   @Value("${serial.rating-buffer.batch-size}") int batchSize,
+                                   @Value("${serial.rating-buffer.flush-interval}") Duration flushInterval) {
+        this.serialRepository = serialRepository;
+        this.retryExecutor = retryExecutor;
+        int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new ConcurrentHashMap[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        running = true;
+        flusherThread = new Thread(this::run, "rating-write-behind");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+    }
+
+    /**
+     * Остановка фонового потока. Ожидающие рейтинги записываются в бд.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (flusherThread != null) {
+            LockSupport.unpark(flusherThread);
+            flusherThread.join();
+            flusherThread = null;
+        }
+    }
+
+    /**
+     * Отложенное изменение рейтинга сериала: предыдущий незаписанный рейтинг сериала заменяется.
+     * Если сериал не найден при записи, рейтинг отбрасывается.
+     * @param id     идентификатор сериала
+     * @param rating рейтинг
+     * @throws IllegalArgumentException если рейтинг вне диапазона Serial.MIN_RATING..Serial.MAX_RATING
+     * @throws IllegalStateException    если буфер остановлен
+     */
+    public void update(long id, int rating) {
+        if (rating < Serial.MIN_RATING || rating > Serial.MAX_RATING) {
+            throw new IllegalArgumentException("Рейтинг " + rating + " вне диапазона от " + Serial.MIN_RATING
+                    + " до " + Serial.MAX_RATING);
+        }
+        if (!running) {
+            throw new IllegalStateException("Отложенная запись рейтингов остановлена");
+        }
+        submittedCount.increment();
+        if (stripe(id).put(id, rating) != null) {
+            coalescedCount.increment();
+        } else if (pending.incrementAndGet() >= batchSize) {
+            LockSupport.unpark(flusherThread);
+        }
+    }
+
+    /**
+     * Незаписанный рейтинг сериала.
+     * @param id идентификатор сериала
+     * @return рейтинг, ожидающий записи, или empty, если такого нет
+     */
+    public Optional<Integer> getPendingRating(long id) {
+        return Optional.ofNullable(stripe(id).get(id));
+    }
+
+    /**
+     * Текущий рейтинг сериала с учетом незаписанного изменения.
+     * @param id идентификатор сериала
+     * @return рейтинг, ожидающий записи, иначе рейтинг из бд (empty, если сериал не найден или без рейтинга)
+     */
+    public Optional<Integer> getRating(long id) {
+        Integer rating = stripe(id).get(id);
+        return rating != null ? Optional.of(rating) : serialRepository.findById(id).map(Serial::getRating);
+    }
+
+    /**
+     * Запись в бд всех рейтингов, измененных до вызова метода.
+     * @return true, если все пачки записаны (при ошибке рейтинги остаются в буфере до следующего сброса)
+     */
+    @ManagedOperation(description = "Запись ожидающих рейтингов в бд")
+    public boolean flush() {
+        flushLock.lock();
+        try {
+            Map<Long, Integer> batch = new TreeMap<>();
+            for (ConcurrentHashMap<Long, Integer> stripe : stripes) {
+                for (Map.Entry<Long, Integer> entry : stripe.entrySet()) {
+                    batch.put(entry.getKey(), entry.getValue());
+                    if (batch.size() == batchSize) {
+                        if (!write(batch)) {
+                            return false;
+                        }
+                        batch.clear();
+                    }
+                }
+            }
+            return batch.isEmpty() || write(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (pending.get() < batchSize) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            if (pending.get() > 0) {
+                flush();
+            }
+        }
+        if (!flush()) {
+            log.error("При остановке не записаны рейтинги {} сериалов", pending.get());
+        }
+    }
+
+    /**
+     * Запись пачки в одной транзакции и удаление записанных рейтингов из буфера.
+     * @param batch рейтинги по возрастанию id (порядок блокировок строк одинаков во всех пачках)
+     * @return true, если пачка записана
+     */
+    private boolean write(Map<Long, Integer> batch) {
+        int found;
+        try {
+            found = retryExecutor.execute(status -> {
+                List<Serial> serials = serialRepository.findAllById(batch.keySet());
+                serials.forEach(serial -> serial.setRating(batch.get(serial.getId())));
+                return serials.size();
+            });
+        } catch (RuntimeException e) {
+            failedBatchCount.increment();
+            log.error("Произошла ошибка при записи рейтингов {} сериалов: ", batch.size(), e);
+            if (running) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            return false;
+        }
+        batchCount.increment();
+        writtenCount.add(found);
+        missingCount.add(batch.size() - found);
+        batch.forEach((id, rating) -> {
+            if (stripe(id).remove(id, rating)) {
+                pending.decrementAndGet();
+            }
+        });
+        return true;
+    }
+
+    private ConcurrentHashMap<Long, Integer> stripe(long id) {
+        int hash = Long.hashCode(id);
+        hash ^= hash >>> 16;
+        return stripes[hash & (stripes.length - 1)];
+    }
+
+    /**
+     * @return кол-во сериалов, ожидающих записи
+     */
+    @ManagedAttribute(description = "Кол-во сериалов, ожидающих записи")
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * @return кол-во принятых изменений рейтинга
+     */
+    @ManagedAttribute(description = "Кол-во принятых изменений")
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    /**
+     * @return кол-во изменений, замененных следующим изменением того же сериала до записи в бд
+     */
+    @ManagedAttribute(description = "Кол-во объединенных изменений")
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * @return кол-во записанных в бд рейтингов
+     */
+    @ManagedAttribute(description = "Кол-во записанных рейтингов")
+    public long getWrittenCount() {
+        return writtenCount.sum();
+    }
+
+    /**
+     * @return кол-во рейтингов, отброшенных из-за того, что сериал не найден
+     */
+    @ManagedAttribute(description = "Кол-во рейтингов ненайденных сериалов")
+    public long getMissingCount() {
+        return missingCount.sum();
+    }
+
+    /**
+     * @return кол-во записанных пачек (= кол-во транзакций)
+     */
+    @ManagedAttribute(description = "Кол-во записанных пачек")
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    /**
+     * @return кол-во пачек, которые не удалось записать
+     */
+    @ManagedAttribute(description = "Кол-во ошибок записи пачек")
+    public long getFailedBatchCount() {
+        return failedBatchCount.sum();
+    }
+}
@@ -0,0 +1,64 @@
+package com.desenalieva.springtasks.writers;
+
+import com.desenalieva.springtasks.entities.OutboxEvent;
+import com.desenalieva.springtasks.events.CreateSerialEvent;
+import com.desenalieva.springtasks.outbox.OutboxHandler;
+import com.desenalieva.springtasks.outbox.OutboxRelay;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись в файл информации о созданных сериалах по событиям outbox (см. {@link SerialInfoWriter}).
+ * <br>
+ * Записи пачки складываются в очередь журнала, и пачка считается обработанной только после их записи в файл
+ * (один fsync на пачку). При повторной доставке строка в файле может повториться.
+ * <br>
+ * Если запись отброшена из-за заполненной очереди, обработка события завершается исключением; если хотя бы одну
+ * запись пачки не удалось записать в файл, исключением завершается {@link #complete()}. В обоих случаях события
+ * остаются необработанными и будут доставлены повторно. Обработчик вызывается из одного потока {@link OutboxRelay}.
+ */
+@Component
+@RequiredArgsConstructor
+public class SerialInfoOutboxHandler implements OutboxHandler {
+    /**
+     * Максимальное время ожидания записи пачки в файл (в секундах)
+     */
+    private static final long FLUSH_TIMEOUT_SECONDS = 30;
+
+    private final SerialInfoWriter serialInfoWriter;
+
+    /**
+     * Номер первой записи текущей пачки в журнале (0 - в пачке еще нет записей)
+     */
+    private long batchStartSequence;
+
+    @Override
+    public String getEventType() {
+        return CreateSerialEvent.TYPE;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        long sequence = serialInfoWriter.append(
+                CreateSerialEvent.fromPayload(this, event.getAggregateId(), event.getPayload()).getSerial());
+        if (sequence == 0) {
+            throw new IllegalStateException("Очередь записи информации о сериалах заполнена, событие " + event.getId()
+                    + " не обработано");
+        }
+        if (batchStartSequence == 0) {
+            batchStartSequence = sequence;
+        }
+    }
+
+    @Override
+    public void complete() throws InterruptedException {
+        long fromSequence = batchStartSequence;
+        batchStartSequence = 0;
+        if (fromSequence != 0 && !serialInfoWriter.flush(fromSequence, FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Информация о сериалах не записана в файл (ошибка записи или прошло "
+                    + FLUSH_TIMEOUT_SECONDS + " с)");
+        }
+    }
+}
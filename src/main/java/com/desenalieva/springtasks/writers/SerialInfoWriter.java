@@ -0,0 +1,391 @@
+package com.desenalieva.springtasks.writers;
+
+import com.desenalieva.springtasks.entities.Serial;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Журнал информации о созданных сериалах (строки вида "name, rating").
+ * <br>
+ * Записи складываются в ограниченную очередь и пишутся в конец файла единственным фоновым потоком:
+ * поток забирает из очереди сразу пачку записей (не больше maxBatchSize, ожидая новые записи не дольше flushInterval),
+ * дописывает ее одним вызовом write и делает один fsync на всю пачку (group commit).
+ * <br>
+ * Каждая запись получает порядковый номер. Номера записей, отброшенных из-за заполненной очереди,
+ * и записей пачек, которые не удалось записать в файл, запоминаются, поэтому {@link #flush} сообщает о потере записей,
+ * а не только о том, что очередь обработана.
+ */
+@Component
+public class SerialInfoWriter {
+    private final static Logger log = LoggerFactory.getLogger(SerialInfoWriter.class);
+
+    private final Path path;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final int maxBatchSize;
+
+    private final long flushIntervalNanos;
+
+    private final BackpressurePolicy backpressurePolicy;
+
+    private final Object writtenMonitor = new Object();
+
+    private final Object appendLock = new Object();
+
+    /**
+     * Отброшенные записи: номер первой записи диапазона -> номер последней
+     */
+    private final ConcurrentSkipListMap<Long, Long> droppedRanges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Записи, которые не удалось записать в файл: номер первой записи диапазона -> номер последней
+     */
+    private final ConcurrentSkipListMap<Long, Long> failedRanges = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+
+    private final AtomicLong writtenCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong flushCount = new AtomicLong();
+
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    /**
+     * Номер последней записи, для которой вызван append (изменяется под appendLock)
+     */
+    private volatile long lastSequence;
+
+    /**
+     * Номер последней записи, принятой в очередь
+     */
+    private volatile long lastQueuedSequence;
+
+    /**
+     * Номер последней записи, обработанной фоновым потоком (записанной или с ошибкой записи)
+     */
+    private volatile long processedSequence;
+
+    private volatile long lastFlushNanos;
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    /**
+     * Конструктор.
+     * @param path               путь до файла журнала
+     * @param queueCapacity      размер очереди записи
+     * @param maxBatchSize       максимальное кол-во записей в одной пачке
+     * @param flushIntervalMs    время (в мс), в течение которого поток ждет новые записи для пачки
+     * @param backpressurePolicy поведение при заполненной очереди
+     */
+    public SerialInfoWriter(@Value("${serial.info.filepath}") Path path,
+                            @Value("${serial.info.queue-capacity}") int queueCapacity,
+                            @Value("${serial.info.max-batch-size}") int maxBatchSize,
+                            @Value("${serial.info.flush-interval-ms}") long flushIntervalMs,
+                            @Value("${serial.info.backpressure}") BackpressurePolicy backpressurePolicy) {
+        this.path = path;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.backpressurePolicy = backpressurePolicy;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        running = true;
+        writerThread = new Thread(this::run, "serial-info-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Остановка фонового потока. Записи, находящиеся в очереди, дописываются в файл.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join();
+            writerThread = null;
+        }
+    }
+
+    /**
+     * Добавление в очередь записи о сериале.
+     * @param serial сериал
+     * @return порядковый номер записи или 0, если запись отброшена (политика DROP или прерывание при BLOCK)
+     * @throws IllegalStateException если очередь заполнена и задана политика FAIL
+     */
+    public long append(Serial serial) {
+        String line = serial.getName() + ", " + serial.getRating() + '\n';
+        // номер присваивается под блокировкой, чтобы порядок номеров совпадал с порядком в очереди
+        synchronized (appendLock) {
+            long sequence = lastSequence + 1;
+            lastSequence = sequence;
+            Entry entry = new Entry(sequence, line);
+            switch (backpressurePolicy) {
+                case BLOCK:
+                    try {
+                        queue.put(entry);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        dropped(sequence);
+                        return 0;
+                    }
+                    break;
+                case DROP:
+                    if (!queue.offer(entry)) {
+                        dropped(sequence);
+                        return 0;
+                    }
+                    break;
+                case FAIL:
+                    if (!queue.offer(entry)) {
+                        dropped(sequence);
+                        throw new IllegalStateException("Очередь записи в файл " + path + " заполнена");
+                    }
+                    break;
+            }
+            lastQueuedSequence = sequence;
+            enqueuedCount.incrementAndGet();
+            return sequence;
+        }
+    }
+
+    /**
+     * Ожидание, пока все записи, добавленные до вызова метода, будут записаны в файл.
+     * @param timeout максимальное время ожидания
+     * @param unit    единица измерения времени ожидания
+     * @return true, если все записи, добавленные до вызова метода, записаны в файл
+     * (false, если время ожидания истекло или хотя бы одна из них отброшена или не записана из-за ошибки)
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long last = lastSequence;
+        return flush(1, timeout, unit) && !overlaps(droppedRanges, 1, last);
+    }
+
+    /**
+     * Ожидание, пока все записи, добавленные до вызова метода, будут обработаны, с проверкой записей
+     * начиная с заданного номера.
+     * Отброшенные записи не проверяются: о них сообщает сам {@link #append}.
+     * @param fromSequence номер первой проверяемой записи (см. {@link #append})
+     * @param timeout      максимальное время ожидания
+     * @param unit         единица измерения времени ожидания
+     * @return true, если записи от fromSequence до последней добавленной записаны в файл
+     * (false, если время ожидания истекло или запись хотя бы одной из них завершилась ошибкой)
+     */
+    public boolean flush(long fromSequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long target = lastQueuedSequence;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (writtenMonitor) {
+            while (processedSequence < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(writtenMonitor, remaining);
+            }
+        }
+        return !overlaps(failedRanges, fromSequence, target);
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(maxBatchSize);
+        boolean interrupted = false;
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = running ? queue.poll(100, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collectBatch(batch);
+            } catch (InterruptedException ex) {
+                interrupted = true;
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collectBatch(List<Entry> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() == maxBatchSize || remaining <= 0 || !running) {
+                return;
+            }
+            Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        StringBuilder sb = new StringBuilder(batch.size() * 32);
+        batch.forEach(entry -> sb.append(entry.line));
+        long fromSequence = batch.get(0).sequence;
+        long toSequence = batch.get(batch.size() - 1).sequence;
+        ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(UTF_8));
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, CREATE, WRITE, APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            writtenCount.addAndGet(batch.size());
+        } catch (IOException ex) {
+            // часть пачки могла попасть в файл, но без fsync, поэтому не записанной считается вся пачка
+            failedCount.addAndGet(batch.size());
+            addRange(failedRanges, fromSequence, toSequence);
+            log.error("Произошла ошибка при записи информации о сериалах в файл {}: ", path, ex);
+        }
+        long elapsed = System.nanoTime() - start;
+        lastFlushNanos = elapsed;
+        totalFlushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        flushCount.incrementAndGet();
+        synchronized (writtenMonitor) {
+            processedSequence = toSequence;
+            writtenMonitor.notifyAll();
+        }
+    }
+
+    private void dropped(long sequence) {
+        droppedCount.incrementAndGet();
+        addRange(droppedRanges, sequence, sequence);
+    }
+
+    /**
+     * Добавление диапазона номеров (номера добавляются по возрастанию, соседние диапазоны объединяются).
+     */
+    private static void addRange(ConcurrentSkipListMap<Long, Long> ranges, long from, long to) {
+        synchronized (ranges) {
+            Map.Entry<Long, Long> last = ranges.lastEntry();
+            if (last != null && last.getValue() == from - 1) {
+                ranges.put(last.getKey(), to);
+            } else {
+                ranges.put(from, to);
+            }
+        }
+    }
+
+    private static boolean overlaps(ConcurrentSkipListMap<Long, Long> ranges, long from, long to) {
+        // диапазоны не пересекаются, поэтому достаточно проверить последний, начинающийся не позже to
+        Map.Entry<Long, Long> floor = ranges.floorEntry(to);
+        return floor != null && floor.getValue() >= from;
+    }
+
+    /**
+     * @return кол-во записей, ожидающих записи в файл
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return кол-во записей, принятых в очередь
+     */
+    public long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    /**
+     * @return кол-во записей, записанных в файл
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return кол-во записей, отброшенных из-за заполненной очереди
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return кол-во записей, которые не удалось записать в файл
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return кол-во сброшенных в файл пачек (= кол-во fsync)
+     */
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * @return время записи последней пачки (в наносекундах)
+     */
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    /**
+     * @return максимальное время записи пачки (в наносекундах)
+     */
+    public long getMaxFlushNanos() {
+        return maxFlushNanos.get();
+    }
+
+    /**
+     * @return суммарное время записи всех пачек (в наносекундах)
+     */
+    public long getTotalFlushNanos() {
+        return totalFlushNanos.get();
+    }
+
+    private static class Entry {
+        private final long sequence;
+
+        private final String line;
+
+        Entry(long sequence, String line) {
+            this.sequence = sequence;
+            this.line = line;
+        }
+    }
+}
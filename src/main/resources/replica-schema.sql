@@ -0,0 +1,6 @@
+-- Схема реплики для локальной проверки маршрутизации на двух экземплярах H2
+-- (в основной бд схему создает Hibernate, в реплику изменения не реплицируются).
+CREATE TABLE IF NOT EXISTS book (id BIGINT NOT NULL, author VARCHAR(255), name VARCHAR(255), version BIGINT DEFAULT 0 NOT NULL, PRIMARY KEY (id));
+CREATE TABLE IF NOT EXISTS serial (id BIGINT NOT NULL, name VARCHAR(255), rating INTEGER CHECK (rating >= 0 AND rating <= 10), version BIGINT DEFAULT 0 NOT NULL, PRIMARY KEY (id));
+CREATE INDEX IF NOT EXISTS idx_serial_rating_id ON serial (rating DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_book_author_name ON book (author, name, id);
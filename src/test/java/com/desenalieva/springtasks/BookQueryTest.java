@@ -0,0 +1,136 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.projections.AuthorBookCount;
+import com.desenalieva.springtasks.projections.BookSummary;
+import com.desenalieva.springtasks.projections.BookTitleDto;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Запросы книг по автору: страницы по номеру и keyset пагинация, проекции, подсчет по авторам и планы запросов H2.
+ */
+@SpringBootTest
+public class BookQueryTest {
+    private final static int PAGE_SIZE = 3;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        bookRepository.deleteAll();
+        // у автора Author1 - 10 книг, у Author2 - 5, у Author3 - 2; названия повторяются
+        bookRepository.saveAll(LongStream.rangeClosed(1, 17)
+                .mapToObj(id -> new Book(id, "Book" + (id % 4), id <= 10 ? "Author1" : id <= 15 ? "Author2" : "Author3"))
+                .collect(Collectors.toList()));
+    }
+
+    @AfterEach
+    void cleanup() {
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Keyset страницы книг автора совпадают со страницами по номеру (в т.ч. при одинаковых названиях).
+     */
+    @Test
+    void testAuthorPages() {
+        List<Long> keyset = new ArrayList<>();
+        List<BookTitleDto> page = bookRepository.findTitlesByAuthor("Author1", PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(book -> keyset.add(book.getId()));
+            BookTitleDto last = page.get(page.size() - 1);
+            page = bookRepository.findTitlesByAuthorAfter("Author1", last.getName(), last.getId(),
+                    PageRequest.of(0, PAGE_SIZE));
+        }
+
+        List<Long> offset = new ArrayList<>();
+        for (int number = 0; ; number++) {
+            List<Book> books = bookRepository.findByAuthorOrderByAuthorAscNameAscIdAsc("Author1",
+                    PageRequest.of(number, PAGE_SIZE), Book.class);
+            if (books.isEmpty()) {
+                break;
+            }
+            books.forEach(book -> offset.add(book.getId()));
+        }
+
+        assertEquals(List.of(4L, 8L, 1L, 5L, 9L, 2L, 6L, 10L, 3L, 7L), keyset);
+        assertEquals(keyset, offset);
+        BookSummary summary = bookRepository.findByAuthorOrderByAuthorAscNameAscIdAsc("Author3", PageRequest.of(0, 1),
+                BookSummary.class).get(0);
+        assertEquals("Book0", summary.getName());
+        assertEquals("Author3", summary.getAuthor());
+    }
+
+    /**
+     * Книги без названия не попадают на первую keyset страницу, поэтому не обрывают пагинацию.
+     */
+    @Test
+    void testAuthorPagesSkipNullNames() {
+        bookRepository.saveAll(List.of(new Book(18L, null, "Author3"), new Book(19L, null, "Author3")));
+
+        List<Long> keyset = new ArrayList<>();
+        List<BookTitleDto> page = bookRepository.findTitlesByAuthor("Author3", 1);
+        while (!page.isEmpty()) {
+            page.forEach(book -> keyset.add(book.getId()));
+            BookTitleDto last = page.get(page.size() - 1);
+            page = bookRepository.findTitlesByAuthorAfter("Author3", last.getName(), last.getId(), PageRequest.of(0, 1));
+        }
+
+        assertEquals(List.of(16L, 17L), keyset);
+    }
+
+    /**
+     * Подсчет книг автора и по всем авторам.
+     */
+    @Test
+    void testCountByAuthor() {
+        assertEquals(5, bookRepository.countByAuthor("Author2"));
+        assertEquals(0, bookRepository.countByAuthor("Unknown"));
+
+        List<AuthorBookCount> counts = bookRepository.countBooksByAuthor();
+        assertEquals(List.of("Author1", "Author2", "Author3"),
+                counts.stream().map(AuthorBookCount::getAuthor).collect(Collectors.toList()));
+        assertEquals(List.of(10L, 5L, 2L), counts.stream().map(AuthorBookCount::getCount).collect(Collectors.toList()));
+    }
+
+    /**
+     * Планы H2: выборка и подсчет по автору читают индекс (author, name, id) без сортировки,
+     * группировка по автору идет в порядке индекса.
+     */
+    @Test
+    void testPlans() {
+        String page = explain("select id, name from book where author = 'Author1' and name >= 'Book1'"
+                + " and (name > 'Book1' or id > 5) order by author, name, id fetch first 3 rows only");
+        assertTrue(page.contains("IDX_BOOK_AUTHOR_NAME"), page);
+        assertTrue(page.contains("index sorted"), page);
+
+        String count = explain("select count(*) from book where author = 'Author1'");
+        assertTrue(count.contains("IDX_BOOK_AUTHOR_NAME"), count);
+
+        String group = explain("select author, count(*) from book group by author order by author");
+        assertTrue(group.contains("IDX_BOOK_AUTHOR_NAME"), group);
+        assertTrue(group.contains("group sorted"), group);
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("explain " + sql, String.class);
+    }
+}
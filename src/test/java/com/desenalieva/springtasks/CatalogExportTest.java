@@ -0,0 +1,130 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.export.*;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Выгрузка каталога (в тестах serial.export.buffer-size = 256, serial.export.chunk-rows = 3).
+ */
+@SpringBootTest
+public class CatalogExportTest {
+    private final static int ROWS = 10;
+
+    @Autowired
+    private CatalogExporter catalogExporter;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+        serialService.createAll(LongStream.rangeClosed(1, ROWS)
+                .mapToObj(id -> new Serial(id, "Serial" + id, (int) (id % 11))));
+        transactionTemplate.executeWithoutResult(status -> LongStream.rangeClosed(1, ROWS)
+                .forEach(id -> entityManager.persist(new Book(id, "Book" + id, "Author" + id))));
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * CSV с заголовком, строки по возрастанию id, спецсимволы экранируются, null - пустое поле.
+     */
+    @Test
+    void testCsvExport() throws Exception {
+        serialService.createAll(List.of(new Serial(11L, "Say \"Hi\", Bye", null), new Serial(12L, "Line\nBreak", 0)));
+        Path file = dir.resolve("serials.csv");
+
+        ExportResult result = catalogExporter.export(ExportTable.SERIAL, ExportFormat.CSV, file);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(ROWS + 2, result.getRows());
+        assertEquals(Files.size(file), result.getBytes());
+        assertEquals("id,name,rating", lines.get(0));
+        assertEquals("1,Serial1,1", lines.get(1));
+        assertEquals("10,Serial10,10", lines.get(ROWS));
+        assertEquals("11,\"Say \"\"Hi\"\", Bye\",", lines.get(ROWS + 1));
+        assertEquals("12,\"Line", lines.get(ROWS + 2));
+        assertEquals("Break\",0", lines.get(ROWS + 3));
+    }
+
+    /**
+     * Двоичная выгрузка читается обратно без потерь.
+     */
+    @Test
+    void testBinaryRoundTrip() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> entityManager.persist(new Book(11L, "Книга", null)));
+        Path file = dir.resolve("books.bin");
+
+        ExportResult result = catalogExporter.export(ExportTable.BOOK, ExportFormat.BINARY, file);
+
+        List<Object[]> rows = new ArrayList<>();
+        assertEquals(ExportTable.BOOK, BinaryExportReader.read(file, rows::add));
+        assertEquals(ROWS + 1, result.getRows());
+        assertEquals(ROWS + 1, rows.size());
+        assertArrayEquals(new Object[]{1L, "Book1", "Author1"}, rows.get(0));
+        assertArrayEquals(new Object[]{11L, "Книга", null}, rows.get(ROWS));
+    }
+
+    /**
+     * Параллельная выгрузка по диапазонам id дает тот же файл, что и последовательная.
+     */
+    @Test
+    void testParallelExportMatchesSequential() throws Exception {
+        for (ExportFormat format : ExportFormat.values()) {
+            Path sequential = dir.resolve("sequential." + format);
+            Path parallel = dir.resolve("parallel." + format);
+
+            catalogExporter.export(ExportTable.SERIAL, format, sequential);
+            ExportResult result = catalogExporter.export(ExportTable.SERIAL, format, parallel, 3);
+
+            assertEquals(4, result.getParts());
+            assertEquals(ROWS, result.getRows());
+            assertArrayEquals(Files.readAllBytes(sequential), Files.readAllBytes(parallel));
+            try (var files = Files.list(dir)) {
+                assertTrue(files.noneMatch(path -> path.getFileName().toString().contains(".parts")));
+            }
+        }
+    }
+}
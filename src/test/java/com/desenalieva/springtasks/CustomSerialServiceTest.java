@@ -208,6 +208,25 @@ public class CustomSerialServiceTest {
         assertThrowsExactly(UnexpectedRollbackException.class, () -> customSerialService.updateRatingAndDelete3(1L, 10, 2L));
     }
 
+    /**
+     * Проверка кейса:
+     * <br>
+     * <br>
+     * Из транзакционного метода updateRatingAndDeleteAll происходит вызов транзакционного метода deleteAllByIds
+     * (propagation = REQUIRED, т.е. в рамках одной транзакции) с несуществующим идентификатором.
+     * <br>
+     * deleteAllByIds не загружает сущности и не выбрасывает EmptyResultDataAccessException,
+     * а возвращает отсутствующие идентификаторы в результате, поэтому транзакция НЕ помечается как rollbackOnly
+     * и изменение рейтинга сохраняется (в отличие от testUpdateRatingAndDelete1-3).
+     */
+    @Test
+    void testUpdateRatingAndDeleteAll() {
+        assertEquals(0, customSerialService.updateRatingAndDeleteAll(1L, 10, new long[]{2L}));
+        Optional<Serial> serialOpt = serialRepository.findById(1L);
+        assertTrue(serialOpt.isPresent());
+        assertEquals(10, serialOpt.get().getRating());
+    }
+
     /**
      * Проверка кейса:
      * <br>
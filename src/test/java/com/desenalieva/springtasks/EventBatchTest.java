@@ -0,0 +1,215 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.dispatch.BoundedEventListenerFactory;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.events.CreateSerialEvent;
+import com.desenalieva.springtasks.events.EventBatch;
+import com.desenalieva.springtasks.events.EventBatchListenerValidator;
+import com.desenalieva.springtasks.journal.SerialJournal;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сбор событий транзакции в пачки ({@link EventBatch}).
+ */
+@SpringBootTest
+public class EventBatchTest {
+    private static final long SERIAL_ID = 6000L;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private SerialJournal serialJournal;
+
+    @Autowired
+    private BoundedEventListenerFactory eventListenerFactory;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ApplicationEventMulticaster eventMulticaster;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+
+    private final List<Long> events = new CopyOnWriteArrayList<>();
+
+    private final ApplicationListener<ApplicationEvent> recorder = this::record;
+
+    @BeforeEach
+    void setup() {
+        eventMulticaster.addApplicationListener(recorder);
+    }
+
+    @AfterEach
+    void cleanup() throws InterruptedException {
+        eventMulticaster.removeApplicationListener(recorder);
+        assertTrue(eventListenerFactory.awaitIdle(5, TimeUnit.SECONDS));
+        LongStream.range(SERIAL_ID, SERIAL_ID + 12)
+                .forEach(id -> serialRepository.findById(id).ifPresent(serialRepository::delete));
+    }
+
+    /**
+     * События одной транзакции публикуются одной пачкой перед коммитом, сами события публикуются как раньше;
+     * журнал получает все записи пачки.
+     */
+    @Test
+    void testOneBatchPerTransaction() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> LongStream.range(SERIAL_ID, SERIAL_ID + 3)
+                .forEach(id -> serialService.create(id, "Serial" + id, 5)));
+
+        assertEquals(List.of(List.of(SERIAL_ID, SERIAL_ID + 1, SERIAL_ID + 2)), batches);
+        assertEquals(List.of(SERIAL_ID, SERIAL_ID + 1, SERIAL_ID + 2), events);
+        assertTrue(eventListenerFactory.awaitIdle(5, TimeUnit.SECONDS));
+        LongStream.range(SERIAL_ID, SERIAL_ID + 3)
+                .forEach(id -> assertEquals("Serial" + id, serialJournal.find(id).orElseThrow().getName()));
+    }
+
+    /**
+     * При откате транзакции пачка не публикуется и в журнал ничего не попадает.
+     */
+    @Test
+    void testRollbackPublishesNoBatch() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> {
+            serialService.create(SERIAL_ID + 3, "Rollback only", 5);
+            status.setRollbackOnly();
+        });
+
+        assertTrue(batches.isEmpty());
+        assertEquals(List.of(SERIAL_ID + 3), events);
+        assertTrue(eventListenerFactory.awaitIdle(5, TimeUnit.SECONDS));
+        assertFalse(serialJournal.find(SERIAL_ID + 3).isPresent());
+    }
+
+    /**
+     * Вложенная REQUIRES_NEW транзакция публикует свою пачку при своем коммите, даже если внешняя транзакция
+     * затем откатывается; события внешней транзакции в пачку вложенной не попадают.
+     */
+    @Test
+    void testRequiresNewInsideRolledBackTransaction() throws InterruptedException {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            serialService.create(SERIAL_ID + 10, "Outer", 5);
+            requiresNew.executeWithoutResult(inner -> serialService.create(SERIAL_ID + 11, "Inner", 5));
+            assertEquals(List.of(List.of(SERIAL_ID + 11)), batches);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(List.of(List.of(SERIAL_ID + 11)), batches);
+        assertTrue(eventListenerFactory.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals("Inner", serialJournal.find(SERIAL_ID + 11).orElseThrow().getName());
+        assertFalse(serialJournal.find(SERIAL_ID + 10).isPresent());
+    }
+
+    /**
+     * Массовое создание: по одной пачке на порцию serial.bulk.chunk-size (в тестах 3).
+     */
+    @Test
+    void testBatchPerBulkChunk() {
+        List<Serial> serials = LongStream.range(SERIAL_ID + 3, SERIAL_ID + 10)
+                .mapToObj(id -> new Serial(id, "Bulk" + id, 7))
+                .collect(Collectors.toList());
+
+        assertEquals(7, serialService.createAll(serials));
+
+        assertEquals(List.of(3, 3, 1), batches.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals(serials.stream().map(Serial::getId).collect(Collectors.toList()),
+                batches.stream().flatMap(List::stream).collect(Collectors.toList()));
+    }
+
+    /**
+     * Событие вне транзакции сразу публикуется пачкой из одного события.
+     */
+    @Test
+    void testEventOutsideTransaction() {
+        eventPublisher.publishEvent(new CreateSerialEvent(this, new Serial(SERIAL_ID, "No transaction", 5)));
+
+        assertEquals(List.of(List.of(SERIAL_ID)), batches);
+    }
+
+    /**
+     * Транзакционные обработчики пачек в фазах, где пачка не может быть получена, отклоняются при создании,
+     * обработчики AFTER_COMMIT и обработчики отдельных событий в любой фазе создаются как обычно.
+     */
+    @Test
+    void testBatchListenerPhaseValidated() throws NoSuchMethodException {
+        EventBatchListenerValidator validator = new EventBatchListenerValidator();
+
+        for (String name : List.of("beforeCommit", "afterRollback", "afterCompletion", "byClasses")) {
+            Method method = BatchListeners.class.getDeclaredMethod(name, EventBatch.class);
+            assertTrue(validator.supportsMethod(method), name);
+            assertThrows(IllegalStateException.class,
+                    () -> validator.createApplicationListener("listeners", BatchListeners.class, method));
+        }
+        assertFalse(validator.supportsMethod(BatchListeners.class.getDeclaredMethod("afterCommit", EventBatch.class)));
+        assertFalse(validator.supportsMethod(
+                BatchListeners.class.getDeclaredMethod("afterRollbackEvent", CreateSerialEvent.class)));
+    }
+
+    private void record(ApplicationEvent event) {
+        if (event instanceof CreateSerialEvent) {
+            events.add(((CreateSerialEvent) event).getSerial().getId());
+        } else if (event instanceof EventBatch && ((EventBatch<?>) event).getEventType() == CreateSerialEvent.class) {
+            batches.add(((EventBatch<?>) event).getEvents().stream()
+                    .map(batched -> ((CreateSerialEvent) batched).getSerial().getId())
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    private static class BatchListeners {
+        @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+        void beforeCommit(EventBatch<CreateSerialEvent> batch) {
+        }
+
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+        void afterRollback(EventBatch<CreateSerialEvent> batch) {
+        }
+
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+        void afterCompletion(EventBatch<CreateSerialEvent> batch) {
+        }
+
+        @TransactionalEventListener(classes = EventBatch.class, phase = TransactionPhase.AFTER_ROLLBACK)
+        void byClasses(EventBatch<?> batch) {
+        }
+
+        @TransactionalEventListener
+        void afterCommit(EventBatch<CreateSerialEvent> batch) {
+        }
+
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+        void afterRollbackEvent(CreateSerialEvent event) {
+        }
+    }
+}
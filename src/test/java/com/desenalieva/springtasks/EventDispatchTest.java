@@ -0,0 +1,253 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.dispatch.BoundedEventExecutor;
+import com.desenalieva.springtasks.dispatch.BoundedEventListenerFactory;
+import com.desenalieva.springtasks.dispatch.EventDispatchStatistics;
+import com.desenalieva.springtasks.dispatch.RejectionPolicy;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.events.CreateSerialEvent;
+import com.desenalieva.springtasks.journal.SerialJournal;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Выполнение обработчиков транзакционных событий в ограниченных пулах ({@link BoundedEventListenerFactory}).
+ */
+@SpringBootTest
+public class EventDispatchTest {
+    private static final String JOURNAL_LISTENER = "SerialService#writeSerialJournal";
+
+    private static final long SERIAL_ID = 5000L;
+
+    @Autowired
+    private BoundedEventListenerFactory eventListenerFactory;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private SerialJournal serialJournal;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<String> threads = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void cleanup() {
+        LongStream.rangeClosed(SERIAL_ID, SERIAL_ID + 3)
+                .forEach(id -> serialRepository.findById(id).ifPresent(serialRepository::delete));
+    }
+
+    /**
+     * События откаченных транзакций (setRollbackOnly, ошибка коммита, исключение в транзакции) не передаются
+     * в пул обработчика, событие закоммиченной транзакции передается и обрабатывается.
+     */
+    @Test
+    void testRolledBackEventsNotDispatched() throws InterruptedException {
+        assertTrue(eventListenerFactory.awaitIdle(5, TimeUnit.SECONDS));
+        long submitted = journalStatistics().getSubmitted();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            eventPublisher.publishEvent(new CreateSerialEvent(this, new Serial(SERIAL_ID, "Rollback only", 5)));
+            status.setRollbackOnly();
+        });
+        assertThrows(RuntimeException.class, () -> serialService.create(SERIAL_ID + 1, "Invalid", 11));
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            serialService.create(SERIAL_ID + 2, "Exception", 5);
+            throw new IllegalStateException("Откат");
+        }));
+
+        assertTrue(eventListenerFactory.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(submitted, journalStatistics().getSubmitted());
+        LongStream.rangeClosed(SERIAL_ID, SERIAL_ID + 2).forEach(id -> assertFalse(serialJournal.find(id).isPresent()));
+
+        serialService.create(SERIAL_ID + 3, "Committed", 5);
+        assertTrue(eventListenerFactory.awaitIdle(5, TimeUnit.SECONDS));
+        EventDispatchStatistics statistics = journalStatistics();
+        assertEquals(submitted + 1, statistics.getSubmitted());
+        assertEquals(0, statistics.getDropped());
+        assertEquals("Committed", serialJournal.find(SERIAL_ID + 3).orElseThrow().getName());
+    }
+
+    /**
+     * Событие обрабатывается в потоке пула, а не в вызывающем, время обработки попадает в метрики.
+     */
+    @Test
+    void testHandlerRunsOffCallerThread() throws InterruptedException {
+        BoundedEventExecutor executor = executor(RejectionPolicy.BLOCK, Duration.ofSeconds(1));
+
+        executor.execute(this::recordThread);
+
+        assertTrue(executor.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(1, threads.size());
+        assertNotEquals(Thread.currentThread().getName(), threads.get(0));
+        EventDispatchStatistics statistics = executor.getStatistics();
+        assertEquals(1, statistics.getCompleted());
+        assertEquals(0, statistics.getCallerRuns());
+        assertTrue(statistics.getMaxNanos() > 0);
+        executor.shutdown(Duration.ofSeconds(5));
+    }
+
+    /**
+     * При заполненной очереди DROP отбрасывает событие, CALLER_RUNS сразу выполняет его в вызывающем потоке,
+     * BLOCK (при нескольких потоках) выполняет в вызывающем потоке после block-timeout;
+     * глубина очереди видна в метриках.
+     */
+    @Test
+    void testRejectionPolicies() throws InterruptedException {
+        for (RejectionPolicy policy : RejectionPolicy.values()) {
+            threads.clear();
+            int threadCount = policy == RejectionPolicy.BLOCK ? 2 : 1;
+            BoundedEventExecutor executor =
+                    new BoundedEventExecutor("test", threadCount, 1, policy, Duration.ofMillis(50), false);
+            CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < threadCount; i++) {
+                CountDownLatch started = new CountDownLatch(1);
+                executor.execute(() -> {
+                    started.countDown();
+                    await(release);
+                });
+                assertTrue(started.await(5, TimeUnit.SECONDS));
+            }
+            executor.execute(this::recordThread);
+            assertEquals(1, executor.getStatistics().getQueueDepth());
+
+            executor.execute(this::recordThread);
+
+            EventDispatchStatistics statistics = executor.getStatistics();
+            if (policy == RejectionPolicy.DROP) {
+                assertEquals(1, statistics.getDropped());
+                assertTrue(threads.isEmpty());
+            } else {
+                assertEquals(1, statistics.getCallerRuns());
+                assertEquals(List.of(Thread.currentThread().getName()), threads);
+            }
+            release.countDown();
+            assertTrue(executor.awaitIdle(5, TimeUnit.SECONDS));
+            statistics = executor.getStatistics();
+            assertEquals(threadCount + 2, statistics.getSubmitted());
+            assertEquals(threadCount + (policy == RejectionPolicy.DROP ? 1 : 2), statistics.getCompleted());
+            assertEquals(0, statistics.getQueueDepth());
+            assertEquals(1, statistics.getMaxQueueDepth());
+            executor.shutdown(Duration.ofSeconds(5));
+        }
+    }
+
+    /**
+     * BLOCK при одном потоке ждет места в очереди дольше block-timeout, чтобы не нарушить порядок событий.
+     */
+    @Test
+    void testBlockKeepsOrderWithOneThread() throws Exception {
+        BoundedEventExecutor executor = executor(RejectionPolicy.BLOCK, Duration.ofMillis(50));
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> order.add(1));
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> executor.execute(() -> order.add(2)));
+        Thread.sleep(200);
+        assertFalse(blocked.isDone());
+        release.countDown();
+
+        blocked.get(5, TimeUnit.SECONDS);
+        assertTrue(executor.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2), order);
+        assertEquals(0, executor.getStatistics().getCallerRuns());
+        executor.shutdown(Duration.ofSeconds(5));
+    }
+
+    /**
+     * Исключение обработчика учитывается в метриках и не останавливает пул;
+     * после остановки пула события выполняются в вызывающем потоке.
+     */
+    @Test
+    void testFailureAndShutdown() throws InterruptedException {
+        BoundedEventExecutor executor = executor(RejectionPolicy.BLOCK, Duration.ofSeconds(1));
+
+        executor.execute(() -> {
+            throw new IllegalStateException("Ошибка обработчика");
+        });
+        executor.execute(this::recordThread);
+        assertTrue(executor.awaitIdle(5, TimeUnit.SECONDS));
+        assertTrue(executor.shutdown(Duration.ofSeconds(5)));
+        executor.execute(this::recordThread);
+
+        EventDispatchStatistics statistics = executor.getStatistics();
+        assertEquals(1, statistics.getFailed());
+        assertEquals(2, statistics.getCompleted());
+        assertEquals(1, statistics.getCallerRuns());
+        assertEquals(Thread.currentThread().getName(), threads.get(1));
+    }
+
+    /**
+     * Виртуальные потоки используются, только если JDK их поддерживает (21+), иначе - пул обычных потоков;
+     * в обоих случаях обработчик с одним потоком получает события в порядке передачи.
+     */
+    @Test
+    void testVirtualThreadsWhenSupported() throws InterruptedException {
+        BoundedEventExecutor executor =
+                new BoundedEventExecutor("test", 1, 20, RejectionPolicy.BLOCK, Duration.ofSeconds(1), true);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            int number = i;
+            executor.execute(() -> order.add(number));
+        }
+
+        assertTrue(executor.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(Runtime.version().feature() >= 21, executor.isVirtualThreads());
+        assertEquals(IntStream.range(0, 20).boxed().collect(Collectors.toList()), order);
+        assertEquals(20, executor.getStatistics().getCompleted());
+        executor.shutdown(Duration.ofSeconds(5));
+    }
+
+    private BoundedEventExecutor executor(RejectionPolicy policy, Duration blockTimeout) {
+        return new BoundedEventExecutor("test", 1, 1, policy, blockTimeout, false);
+    }
+
+    private EventDispatchStatistics journalStatistics() {
+        return eventListenerFactory.getStatistics().get(JOURNAL_LISTENER);
+    }
+
+    private void recordThread() {
+        threads.add(Thread.currentThread().getName());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
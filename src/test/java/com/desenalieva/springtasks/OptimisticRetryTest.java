@@ -0,0 +1,213 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.retry.RetryStatistics;
+import com.desenalieva.springtasks.retry.TransactionRetryExecutor;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Оптимистическая блокировка сериалов по версии и повтор транзакций при конфликтах.
+ */
+@SpringBootTest
+public class OptimisticRetryTest {
+    private static final long ID = 2000L;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private TransactionRetryExecutor retryExecutor;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.save(new Serial(ID, "Contended", 0));
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteById(ID);
+    }
+
+    /**
+     * Каждое изменение увеличивает версию, сохранение устаревшего (прочитанного до изменения) сериала
+     * завершается конфликтом версий, а не перезаписывает изменение.
+     */
+    @Test
+    void testStaleVersionDetected() {
+        Serial stale = serialRepository.findById(ID).orElseThrow();
+        assertEquals(0, stale.getVersion());
+
+        serialService.updateRatingById(ID, 7);
+        assertEquals(1, serialRepository.findById(ID).orElseThrow().getVersion());
+
+        stale.setRating(3);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> serialRepository.save(stale));
+        assertEquals(7, serialRepository.findById(ID).orElseThrow().getRating());
+    }
+
+    /**
+     * Массовое обновление рейтингов в обход сессии тоже увеличивает версию.
+     */
+    @Test
+    void testBulkUpdateIncrementsVersion() {
+        serialService.updateRatings(Map.of(ID, 4));
+
+        Serial serial = serialRepository.findById(ID).orElseThrow();
+        assertEquals(4, serial.getRating());
+        assertEquals(1, serial.getVersion());
+    }
+
+    /**
+     * Конкурентные увеличения рейтинга не теряются: конфликтующие транзакции повторяются с новым чтением.
+     */
+    @Test
+    void testConcurrentIncrementsNotLost() throws Exception {
+        int threads = 5;
+        int increments = 2;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < increments; j++) {
+                        serialService.changeRatingById(ID, rating -> rating + 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Serial serial = serialRepository.findById(ID).orElseThrow();
+        assertEquals(threads * increments, serial.getRating());
+        assertEquals(threads * increments, serial.getVersion());
+    }
+
+    /**
+     * Если сериал изменили после чтения, транзакция повторяется целиком и видит изменение.
+     */
+    @Test
+    void testConflictRetried() {
+        RetryStatistics before = retryExecutor.getStatistics();
+        AtomicInteger attempts = new AtomicInteger();
+
+        Integer rating = retryExecutor.execute(status -> {
+            Serial serial = serialRepository.findById(ID).orElseThrow();
+            if (attempts.incrementAndGet() == 1) {
+                concurrentUpdate(5);
+            }
+            serial.setRating(serial.getRating() + 1);
+            return serial.getRating();
+        });
+
+        assertEquals(2, attempts.get());
+        assertEquals(6, rating);
+        assertEquals(6, serialRepository.findById(ID).orElseThrow().getRating());
+        RetryStatistics after = retryExecutor.getStatistics();
+        assertEquals(before.getRetries() + 1, after.getRetries());
+        assertEquals(before.getSuccesses() + 1, after.getSuccesses());
+        assertTrue(after.getRetriesByException().containsKey(ObjectOptimisticLockingFailureException.class.getSimpleName()));
+    }
+
+    /**
+     * Исключение, не связанное с конфликтом транзакций, не повторяется.
+     */
+    @Test
+    void testNonRetryableFailure() {
+        RetryStatistics before = retryExecutor.getStatistics();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(DataIntegrityViolationException.class, () -> retryExecutor.execute(status -> {
+            attempts.incrementAndGet();
+            throw new DataIntegrityViolationException("constraint");
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(before.getFailures() + 1, retryExecutor.getStatistics().getFailures());
+        assertEquals(before.getRetries(), retryExecutor.getStatistics().getRetries());
+    }
+
+    /**
+     * Внутри существующей транзакции действие выполняется один раз: повторить чужую транзакцию нельзя.
+     */
+    @Test
+    void testNoRetryInsideExistingTransaction() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> transactionTemplate.executeWithoutResult(
+                outer -> retryExecutor.execute(status -> {
+                    attempts.incrementAndGet();
+                    throw new ObjectOptimisticLockingFailureException(Serial.class, ID);
+                })));
+
+        assertEquals(1, attempts.get());
+    }
+
+    /**
+     * Попыток не больше max-attempts; бюджет повторов ограничивает их общее кол-во.
+     */
+    @Test
+    void testAttemptsAndBudgetLimited() {
+        TransactionRetryExecutor executor = new TransactionRetryExecutor(transactionManager, 3,
+                Duration.ofMillis(1), Duration.ofMillis(2), 3, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> executor.execute(status -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Serial.class, ID);
+        }));
+        assertEquals(3, attempts.get());
+        assertEquals(1, executor.getStatistics().getExhausted());
+
+        attempts.set(0);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> executor.execute(status -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Serial.class, ID);
+        }));
+        assertEquals(2, attempts.get()); // в бюджете оставался 1 повтор
+        RetryStatistics statistics = executor.getStatistics();
+        assertEquals(3, statistics.getRetries());
+        assertEquals(1, statistics.getBudgetRejections());
+        assertEquals(0.0, statistics.getBudget());
+    }
+
+    private void concurrentUpdate(int rating) {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        requiresNew.executeWithoutResult(status -> serialRepository.findById(ID).orElseThrow().setRating(rating));
+    }
+}
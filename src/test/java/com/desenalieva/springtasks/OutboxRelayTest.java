@@ -0,0 +1,233 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.OutboxEvent;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.events.CreateSerialEvent;
+import com.desenalieva.springtasks.outbox.OutboxHandler;
+import com.desenalieva.springtasks.outbox.OutboxRelay;
+import com.desenalieva.springtasks.outbox.OutboxWriter;
+import com.desenalieva.springtasks.repositories.OutboxEventRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import com.desenalieva.springtasks.writers.BackpressurePolicy;
+import com.desenalieva.springtasks.writers.SerialInfoOutboxHandler;
+import com.desenalieva.springtasks.writers.SerialInfoWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Outbox: запись события в транзакции изменения, доставка пачками с порядком по агрегату,
+ * повторная доставка и исчерпание попыток.
+ * <br>
+ * Доставка с тестовым обработчиком проверяется на отдельном экземпляре {@link OutboxRelay}, на время теста
+ * доставка приложения останавливается (иначе она забрала бы тестовые события).
+ */
+@SpringBootTest
+public class OutboxRelayTest {
+    private static final String TYPE = "TestEvent";
+
+    private static final long SERIAL_ID = 4000L;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+
+    private OutboxRelay testRelay;
+
+    @BeforeEach
+    void setup() throws InterruptedException {
+        assertTrue(outboxRelay.awaitDelivery(5, TimeUnit.SECONDS));
+    }
+
+    @AfterEach
+    void cleanup() throws InterruptedException {
+        if (testRelay != null) {
+            testRelay.stop();
+            outboxRelay.start();
+        }
+        outboxEventRepository.deleteAll(outboxEventRepository.findAll().stream()
+                .filter(event -> TYPE.equals(event.getType()))
+                .collect(Collectors.toList()));
+        serialRepository.findById(SERIAL_ID).ifPresent(serialRepository::delete);
+    }
+
+    /**
+     * Событие создания сериала сохраняется в outbox в транзакции создания и доставляется после коммита,
+     * при откате транзакции события нет.
+     */
+    @Test
+    void testCreateSerialEventWrittenInTransaction() throws InterruptedException {
+        serialService.create(SERIAL_ID, "Outbox Serial", 4);
+        assertThrows(RuntimeException.class, () -> serialService.create(SERIAL_ID + 1, "Invalid", 11));
+
+        List<OutboxEvent> events = outboxEventRepository.findAll().stream()
+                .filter(event -> event.getAggregateId() >= SERIAL_ID && event.getAggregateId() <= SERIAL_ID + 1)
+                .collect(Collectors.toList());
+        assertEquals(1, events.size());
+        assertEquals(CreateSerialEvent.TYPE, events.get(0).getType());
+        assertEquals(SERIAL_ID, events.get(0).getAggregateId());
+        assertEquals("Outbox Serial", CreateSerialEvent.fromPayload(this, SERIAL_ID, events.get(0).getPayload())
+                .getSerial().getName());
+
+        assertTrue(outboxRelay.awaitDelivery(5, TimeUnit.SECONDS));
+        assertNotNull(outboxEventRepository.findById(events.get(0).getId()).orElseThrow().getProcessedAt());
+    }
+
+    /**
+     * После ошибки обработки события следующие события его агрегата ждут, события других агрегатов доставляются;
+     * событие доставляется повторно, порядок внутри агрегата сохраняется.
+     */
+    @Test
+    void testOrderPerAggregateAfterFailure() throws InterruptedException {
+        AtomicInteger failures = new AtomicInteger();
+        startTestRelay(10, event -> event.getPayload().equals("a1") && failures.incrementAndGet() == 1);
+
+        append(new OutboxEvent(TYPE, 1L, "a1"), new OutboxEvent(TYPE, 2L, "b1"),
+                new OutboxEvent(TYPE, 1L, "a2"), new OutboxEvent(TYPE, 2L, "b2"));
+
+        assertTrue(testRelay.awaitDelivery(5, TimeUnit.SECONDS));
+        assertEquals(List.of("b1", "b2", "a1", "a2"), delivered);
+        assertEquals(1, testRelay.getFailedAttemptCount());
+        assertEquals(4, testRelay.getDeliveredCount());
+        OutboxEvent a1 = testEvents().stream().filter(event -> event.getPayload().equals("a1")).findFirst().orElseThrow();
+        assertEquals(1, a1.getAttempts());
+        assertNotNull(a1.getLastError());
+        assertNotNull(a1.getProcessedAt());
+    }
+
+    /**
+     * Событие, обработка которого не удалась max-attempts раз, больше не доставляется
+     * и не задерживает следующие события агрегата.
+     */
+    @Test
+    void testMaxAttempts() throws InterruptedException {
+        startTestRelay(10, event -> event.getPayload().equals("poison"));
+
+        append(new OutboxEvent(TYPE, 1L, "poison"), new OutboxEvent(TYPE, 1L, "next"));
+
+        assertTrue(testRelay.awaitDelivery(5, TimeUnit.SECONDS));
+        assertEquals(List.of("next"), delivered);
+        assertEquals(1, testRelay.getFailedCount());
+        assertEquals(3, testRelay.getFailedAttemptCount());
+        assertEquals(0, testRelay.getPendingCount());
+    }
+
+    /**
+     * Пачки меньше, чем событий: все события доставляются по порядку id несколькими пачками.
+     */
+    @Test
+    void testBatches() throws InterruptedException {
+        startTestRelay(2, event -> false);
+
+        append(new OutboxEvent(TYPE, 1L, "1"), new OutboxEvent(TYPE, 2L, "2"), new OutboxEvent(TYPE, 3L, "3"),
+                new OutboxEvent(TYPE, 4L, "4"), new OutboxEvent(TYPE, 5L, "5"));
+
+        assertTrue(testRelay.awaitDelivery(5, TimeUnit.SECONDS));
+        assertEquals(List.of("1", "2", "3", "4", "5"), delivered);
+        assertTrue(testRelay.getBatchCount() >= 3);
+        assertTrue(testEvents().stream().allMatch(event -> event.getProcessedAt() != null));
+    }
+
+    /**
+     * Если строку события не удалось записать в файл, пачка не завершается и событие остается необработанным.
+     */
+    @Test
+    void testWriteFailureLeavesEventPending() throws InterruptedException, IOException {
+        Path directory = Files.createTempDirectory("serial-info");
+        SerialInfoWriter writer = new SerialInfoWriter(directory, 16, 16, 0, BackpressurePolicy.BLOCK);
+        writer.start();
+        try {
+            startTestRelay(10, new SerialInfoOutboxHandler(writer));
+            OutboxEvent event = new OutboxEvent(CreateSerialEvent.TYPE, SERIAL_ID + 2,
+                    new CreateSerialEvent(this, new Serial(SERIAL_ID + 2, "Unwritten", 5)).toPayload());
+            append(event);
+
+            assertFalse(testRelay.awaitDelivery(1, TimeUnit.SECONDS));
+            assertTrue(writer.getFailedCount() > 0);
+            assertNull(outboxEventRepository.findById(event.getId()).orElseThrow().getProcessedAt());
+            assertEquals(0, testRelay.getDeliveredCount());
+        } finally {
+            writer.stop();
+            testRelay.stop();
+            outboxEventRepository.deleteAll(outboxEventRepository.findAll().stream()
+                    .filter(outboxEvent -> outboxEvent.getAggregateId() == SERIAL_ID + 2)
+                    .collect(Collectors.toList()));
+            Files.delete(directory);
+        }
+    }
+
+    private void startTestRelay(int batchSize, Predicate<OutboxEvent> fail) throws InterruptedException {
+        startTestRelay(batchSize, new OutboxHandler() {
+            @Override
+            public String getEventType() {
+                return TYPE;
+            }
+
+            @Override
+            public void handle(OutboxEvent event) {
+                if (fail.test(event)) {
+                    throw new IllegalStateException("Ошибка обработки " + event.getPayload());
+                }
+                delivered.add(event.getPayload());
+            }
+        });
+    }
+
+    private void startTestRelay(int batchSize, OutboxHandler handler) throws InterruptedException {
+        outboxRelay.stop();
+        testRelay = new OutboxRelay(outboxEventRepository,
+                new StaticListableBeanFactory(Map.of("handler", handler)).getBeanProvider(OutboxHandler.class),
+                transactionManager, batchSize, 3, Duration.ofMillis(10), Duration.ofHours(1));
+        testRelay.start();
+    }
+
+    private void append(OutboxEvent... events) {
+        transactionTemplate.executeWithoutResult(status -> List.of(events).forEach(outboxWriter::append));
+    }
+
+    private List<OutboxEvent> testEvents() {
+        return outboxEventRepository.findAll().stream()
+                .filter(event -> TYPE.equals(event.getType()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,113 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.profiler.StatementProfiler;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.desenalieva.springtasks.StatementAssertions.assertStatements;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Генерация идентификаторов блоками (отдельный контекст с serial.id.block-size = 5).
+ * <br>
+ * Перед каждым тестом в таблицу сериалов вручную добавляется сериал с id = 1000000, поэтому блоки,
+ * выданные после первого обращения к генератору, должны начинаться выше него.
+ */
+@SpringBootTest(properties = "serial.id.block-size=5")
+public class PooledIdGeneratorTest {
+    private final static long ASSIGNED_ID = 1_000_000;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StatementProfiler statementProfiler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+        jdbcTemplate.update("insert into serial (id, name, rating) values (?, 'Assigned', 5)", ASSIGNED_ID);
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Сущности без id получают id из блока выше уже существующих, заданный вручную id сохраняется.
+     */
+    @Test
+    void testGeneratedAndAssignedIds() {
+        Serial generated = serialRepository.save(new Serial(null, "Generated", 5));
+        Serial assigned = serialRepository.save(new Serial(7L, "Assigned", 5));
+        Book book = bookRepository.save(new Book(null, "Book", "Author"));
+
+        assertTrue(generated.getId() > ASSIGNED_ID);
+        assertEquals(7L, assigned.getId());
+        assertNotNull(book.getId());
+        assertEquals("Generated", serialRepository.findById(generated.getId()).orElseThrow().getName());
+    }
+
+    /**
+     * Из нескольких потоков выдаются непересекающиеся id, таблица блоков обгоняет выданные id.
+     */
+    @Test
+    void testConcurrentAllocation() {
+        List<CompletableFuture<Integer>> futures = IntStream.range(0, 4)
+                .mapToObj(thread -> CompletableFuture.supplyAsync(() -> serialService.createAll(IntStream.range(0, 30)
+                        .mapToObj(i -> new Serial(null, "Serial" + thread + "-" + i, i % 11)))))
+                .collect(Collectors.toList());
+        futures.forEach(CompletableFuture::join);
+
+        Set<Long> ids = serialRepository.findAll().stream().map(Serial::getId).collect(Collectors.toSet());
+        assertEquals(121, ids.size());
+        assertTrue(ids.stream().filter(id -> id != ASSIGNED_ID).allMatch(id -> id > ASSIGNED_ID));
+        Long next = jdbcTemplate.queryForObject("select next_val from id_block where entity = 'serial'", Long.class);
+        assertTrue(next > ids.stream().mapToLong(Long::longValue).max().orElseThrow());
+    }
+
+    /**
+     * Вставка сущностей с генерируемым id идет JDBC батчами (hibernate.jdbc.batch_size = 2): 6 сериалов - 3 пакета.
+     * После обращения к таблице блоков (6 id при блоке 5 - не больше двух обращений) insert подготавливается заново,
+     * поэтому подготовленных запросов не больше 3 + 2.
+     */
+    @Test
+    void testInsertBatching() {
+        assertStatements(statementProfiler, 5, () -> transactionTemplate.executeWithoutResult(status ->
+                serialRepository.persistAll(IntStream.range(0, 6)
+                        .mapToObj(i -> new Serial(null, "Serial" + i, 5)).collect(Collectors.toList()))));
+
+        assertEquals(7, serialRepository.count());
+    }
+}
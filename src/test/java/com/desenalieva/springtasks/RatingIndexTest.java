@@ -0,0 +1,173 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.index.RatingIndex;
+import com.desenalieva.springtasks.index.RatingStatistics;
+import com.desenalieva.springtasks.projections.SerialRatingDto;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Индекс рейтингов сериалов: обновление по коммитам, откат, массовые операции и сверка с бд.
+ */
+@SpringBootTest
+public class RatingIndexTest {
+    @Autowired
+    private RatingIndex ratingIndex;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        ratingIndex.rebuild();
+        serialService.createAll(List.of(new Serial(1L, "First", 5), new Serial(2L, "Second", 5),
+                new Serial(3L, "Third", 8), new Serial(4L, "Fourth", null)));
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+        ratingIndex.rebuild();
+    }
+
+    /**
+     * После коммита созданные сериалы учтены в индексе без обращения к бд.
+     */
+    @Test
+    void testCreate() {
+        RatingStatistics statistics = ratingIndex.getStatistics();
+
+        assertEquals(4, statistics.getCount());
+        assertEquals(1, statistics.getUnrated());
+        assertEquals(6.0, statistics.getAverage());
+        assertEquals(2, ratingIndex.count(5));
+        assertEquals(1, ratingIndex.count(8));
+        assertEquals(0, ratingIndex.count(Serial.MAX_RATING + 1));
+        assertTrue(ratingIndex.verify());
+    }
+
+    /**
+     * Изменения откаченной транзакции в индекс не попадают,
+     * а до коммита не видны другим читателям индекса.
+     */
+    @Test
+    void testRollback() {
+        transactionTemplate.executeWithoutResult(status -> {
+            serialService.create(5L, "Fifth", 10);
+            serialService.updateRatingById(1L, 1);
+            serialRepository.flush();
+            assertEquals(4, ratingIndex.count());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(4, ratingIndex.count());
+        assertEquals(0, ratingIndex.count(10));
+        assertEquals(2, ratingIndex.count(5));
+        assertEquals(List.of(3L, 2L, 1L), topRatedIds());
+        assertTrue(ratingIndex.verify());
+    }
+
+    /**
+     * Изменение рейтинга и удаление сериала переносят его между ячейками распределения.
+     */
+    @Test
+    void testUpdateAndDelete() {
+        serialService.updateRatingById(1L, 8);
+        serialService.updateRatingById(4L, 2);
+        serialService.deleteById(3L);
+
+        assertEquals(3, ratingIndex.count());
+        assertEquals(0, ratingIndex.getStatistics().getUnrated());
+        assertEquals(1, ratingIndex.count(5));
+        assertEquals(1, ratingIndex.count(8));
+        assertEquals(1, ratingIndex.count(2));
+        assertEquals(5.0, ratingIndex.average());
+        assertTrue(ratingIndex.verify());
+    }
+
+    /**
+     * Топ сериалов (serial.index.top-k = 3) обновляется коммитами, при уходе сериала из полного топа
+     * индекс дочитывает его из бд.
+     */
+    @Test
+    void testTopRated() {
+        assertEquals(List.of(3L, 2L, 1L), topRatedIds());
+
+        serialService.create(5L, "Fifth", 10);
+        assertEquals(List.of(5L, 3L, 2L), topRatedIds());
+
+        serialService.deleteById(5L);
+        assertEquals(List.of(3L, 2L, 1L), topRatedIds());
+
+        serialService.updateRatingById(4L, 9);
+        serialService.updateRatingById(3L, 1);
+        assertEquals(List.of(4L, 2L, 1L), topRatedIds());
+        assertEquals(9, ratingIndex.getTopRated(1).get(0).getRating());
+        assertThrows(IllegalStateException.class, () -> ratingIndex.getTopRated(4));
+        assertTrue(ratingIndex.verify());
+    }
+
+    /**
+     * Массовые операции в обход сессии перестраивают индекс после коммита.
+     */
+    @Test
+    void testBulkOperations() {
+        serialService.updateRatings(Map.of(1L, 9, 4L, 9));
+        assertEquals(2, ratingIndex.count(9));
+        assertEquals(0, ratingIndex.getStatistics().getUnrated());
+
+        serialService.deleteByRatingBelow(9);
+        assertEquals(2, ratingIndex.count());
+        assertEquals(0, ratingIndex.count(5));
+
+        serialService.deleteAllByIds(new long[]{1L});
+        assertEquals(1, ratingIndex.count());
+        assertTrue(ratingIndex.verify());
+    }
+
+    /**
+     * Запись напрямую через JDBC индекс не видит: сверка находит расхождение, перестроение его устраняет.
+     */
+    @Test
+    void testVerifyAndRebuild() {
+        jdbcTemplate.update("insert into serial (id, name, rating) values (100, 'Jdbc', 3)");
+
+        assertFalse(ratingIndex.verify());
+
+        ratingIndex.rebuild();
+
+        assertTrue(ratingIndex.verify());
+        assertEquals(5, ratingIndex.count());
+        assertEquals(1, ratingIndex.count(3));
+    }
+
+    private List<Long> topRatedIds() {
+        return ratingIndex.getTopRated().stream()
+                .map(SerialRatingDto::getId)
+                .collect(Collectors.toList());
+    }
+}
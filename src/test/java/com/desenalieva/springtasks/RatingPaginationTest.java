@@ -0,0 +1,123 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset пагинация по рейтингу и выборка лучших сериалов по индексу (rating, id).
+ */
+@SpringBootTest
+public class RatingPaginationTest {
+    private final static int ROWS = 40;
+
+    private final static int PAGE_SIZE = 3;
+
+    /**
+     * Сдвиг идентификаторов (id = BASE_ID + номер строки), чтобы не пересекаться с сериалами других тестов
+     * в общем журнале сериалов
+     */
+    private final static long BASE_ID = 1000;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        serialService.createAll(LongStream.rangeClosed(1, ROWS)
+                .mapToObj(n -> new Serial(BASE_ID + n, "Serial" + n, n % 13 == 0 ? null : (int) (n % 11))));
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+    }
+
+    /**
+     * Страницы keyset пагинации по диапазону рейтингов (в т.ч. на границе рейтингов)
+     * совпадают со страницами по номеру.
+     */
+    @Test
+    void testRatingRangePages() {
+        List<Long> keyset = new ArrayList<>();
+        List<Serial> page = serialRepository.findByRatingBetween(2, 5, PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(serial -> keyset.add(serial.getId()));
+            Serial last = page.get(page.size() - 1);
+            page = serialRepository.findByRatingBetweenAfter(2, 5, last.getRating(), last.getId(), PAGE_SIZE);
+        }
+
+        List<Long> offset = new ArrayList<>();
+        for (int number = 0; ; number++) {
+            page = serialRepository.findByRatingBetweenOrderByRatingDescIdDesc(2, 5, PageRequest.of(number, PAGE_SIZE));
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(serial -> offset.add(serial.getId()));
+        }
+
+        List<Long> expected = serialRepository.findAll().stream()
+                .filter(serial -> serial.getRating() != null && serial.getRating() >= 2 && serial.getRating() <= 5)
+                .sorted(Comparator.comparing(Serial::getRating).thenComparing(Serial::getId).reversed())
+                .map(Serial::getId)
+                .collect(Collectors.toList());
+        assertEquals(expected, keyset);
+        assertEquals(expected, offset);
+    }
+
+    /**
+     * Лучшие сериалы: рейтинг по убыванию, затем id по убыванию, сериалы без рейтинга не входят.
+     */
+    @Test
+    void testTopRatedPages() {
+        List<Serial> top = serialRepository.findTopRated(PAGE_SIZE);
+        assertEquals(ids(32, 21, 10), top.stream().map(Serial::getId).collect(Collectors.toList()));
+
+        Serial last = top.get(top.size() - 1);
+        List<Long> all = new ArrayList<>(ids(32, 21, 10));
+        List<Serial> page = serialRepository.findTopRatedAfter(last.getRating(), last.getId(), ROWS);
+        page.forEach(serial -> all.add(serial.getId()));
+
+        assertEquals(ROWS - ROWS / 13, all.size());
+        assertEquals(ids(31, 20, 9), all.subList(3, 6));
+        assertEquals(ids(33, 22, 11), all.subList(all.size() - 3, all.size()));
+    }
+
+    /**
+     * Запрос диапазона рейтингов читает индекс (rating, id) в порядке страницы, без сортировки.
+     */
+    @Test
+    void testRatingIndexUsed() {
+        String plan = jdbcTemplate.queryForObject(
+                "explain select id from serial where rating between 2 and 5 order by rating desc, id desc", String.class);
+
+        assertTrue(plan.toUpperCase().contains("IDX_SERIAL_RATING_ID"), plan);
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    private static List<Long> ids(long... numbers) {
+        return LongStream.of(numbers).map(n -> BASE_ID + n).boxed().collect(Collectors.toList());
+    }
+}
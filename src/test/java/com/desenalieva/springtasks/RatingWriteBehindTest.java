@@ -0,0 +1,174 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.retry.TransactionRetryExecutor;
+import com.desenalieva.springtasks.writers.RatingWriteBehindBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Отложенная запись рейтингов: объединение изменений, сброс по размеру и при остановке, чтение своих изменений.
+ * Буфер создается в тесте с большим интервалом сброса, чтобы фоновый поток не сбрасывал его по времени.
+ */
+@SpringBootTest
+public class RatingWriteBehindTest {
+    private static final long BASE_ID = 3000L;
+
+    private static final int SERIALS = 5;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private TransactionRetryExecutor retryExecutor;
+
+    private RatingWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.saveAll(LongStream.range(BASE_ID, BASE_ID + SERIALS)
+                .mapToObj(id -> new Serial(id, "Serial" + id, 0))
+                .collect(Collectors.toList()));
+        buffer = new RatingWriteBehindBuffer(serialRepository, retryExecutor, 4, 3, Duration.ofHours(1));
+        buffer.start();
+    }
+
+    @AfterEach
+    void cleanup() throws InterruptedException {
+        buffer.stop();
+        serialRepository.deleteAllById(LongStream.range(BASE_ID, BASE_ID + SERIALS).boxed().collect(Collectors.toList()));
+    }
+
+    /**
+     * В бд записывается только последний рейтинг сериала, до записи он виден через буфер.
+     */
+    @Test
+    void testCoalescing() {
+        for (int rating = 1; rating <= 10; rating++) {
+            buffer.update(BASE_ID, rating);
+        }
+
+        assertEquals(Optional.of(10), buffer.getRating(BASE_ID));
+        assertEquals(Optional.of(10), buffer.getPendingRating(BASE_ID));
+        assertEquals(0, rating(BASE_ID)); // еще не записан
+        assertEquals(9, buffer.getCoalescedCount());
+        assertEquals(1, buffer.getPendingCount());
+
+        assertTrue(buffer.flush());
+
+        assertEquals(10, rating(BASE_ID));
+        assertEquals(Optional.of(10), buffer.getRating(BASE_ID));
+        assertTrue(buffer.getPendingRating(BASE_ID).isEmpty());
+        assertEquals(0, buffer.getPendingCount());
+        assertEquals(1, buffer.getWrittenCount());
+        assertEquals(1, buffer.getBatchCount());
+        assertEquals(1, serialRepository.findById(BASE_ID).orElseThrow().getVersion());
+    }
+
+    /**
+     * Когда ожидающих записи сериалов набирается на пачку, фоновый поток записывает их, не дожидаясь интервала.
+     */
+    @Test
+    void testFlushOnBatchSize() throws InterruptedException {
+        buffer.update(BASE_ID, 1);
+        buffer.update(BASE_ID + 1, 2);
+        buffer.update(BASE_ID + 2, 3);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (buffer.getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, buffer.getPendingCount());
+        assertEquals(1, buffer.getBatchCount());
+        assertEquals(List.of(1, 2, 3), List.of(rating(BASE_ID), rating(BASE_ID + 1), rating(BASE_ID + 2)));
+    }
+
+    /**
+     * При остановке буфер записывается в бд полностью, после остановки изменения не принимаются.
+     */
+    @Test
+    void testDrainOnStop() throws InterruptedException {
+        buffer.update(BASE_ID, 7);
+        buffer.update(BASE_ID + 3, 8);
+
+        buffer.stop();
+
+        assertEquals(7, rating(BASE_ID));
+        assertEquals(8, rating(BASE_ID + 3));
+        assertEquals(0, buffer.getPendingCount());
+        assertThrows(IllegalStateException.class, () -> buffer.update(BASE_ID, 1));
+    }
+
+    /**
+     * Рейтинг вне диапазона отклоняется сразу, рейтинг несуществующего сериала отбрасывается при записи.
+     */
+    @Test
+    void testInvalidAndMissing() {
+        assertThrows(IllegalArgumentException.class, () -> buffer.update(BASE_ID, Serial.MAX_RATING + 1));
+
+        buffer.update(BASE_ID + SERIALS, 5);
+        assertTrue(buffer.flush());
+
+        assertEquals(1, buffer.getMissingCount());
+        assertEquals(0, buffer.getWrittenCount());
+        assertEquals(0, buffer.getPendingCount());
+        assertFalse(serialRepository.existsById(BASE_ID + SERIALS));
+    }
+
+    /**
+     * Конкурентные изменения: в бд оказывается последний рейтинг каждого сериала,
+     * а записей в бд меньше, чем изменений.
+     */
+    @Test
+    void testConcurrentUpdates() throws Exception {
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        buffer.update(BASE_ID + j % SERIALS, j % (Serial.MAX_RATING + 1));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        List<Integer> expected = LongStream.range(BASE_ID, BASE_ID + SERIALS)
+                .mapToObj(id -> buffer.getRating(id).orElseThrow())
+                .collect(Collectors.toList());
+
+        assertTrue(buffer.flush());
+
+        assertEquals(expected, LongStream.range(BASE_ID, BASE_ID + SERIALS)
+                .mapToObj(this::rating).collect(Collectors.toList()));
+        assertEquals(threads * 1000, buffer.getSubmittedCount());
+        assertTrue(buffer.getCoalescedCount() > 0);
+        assertTrue(buffer.getWrittenCount() < buffer.getSubmittedCount());
+    }
+
+    private int rating(long id) {
+        return serialRepository.findById(id).orElseThrow().getRating();
+    }
+}
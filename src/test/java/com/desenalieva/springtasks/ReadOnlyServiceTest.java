@@ -109,8 +109,17 @@ public class ReadOnlyServiceTest {
 
     private void createSerialAndBook() {
         transactionTemplate.executeWithoutResult((status) -> {
-            serialRepository.save(new Serial(1L, "OldSerialName", 5));
-            bookRepository.save(new Book(1L, "OldBookName", "Author"));
+            // сериал и книгу, оставшиеся от предыдущего теста, перезаписываем загруженными:
+            // сохранение нового объекта с тем же id и версией 0 завершилось бы конфликтом версий
+            Serial serial = serialRepository.findById(1L).orElseGet(() -> new Serial(1L));
+            serial.setName("OldSerialName");
+            serial.setRating(5);
+            serialRepository.save(serial);
+            Book book = bookRepository.findById(1L).orElseGet(Book::new);
+            book.setId(1L);
+            book.setName("OldBookName");
+            book.setAuthor("Author");
+            bookRepository.save(book);
         });
     }
 
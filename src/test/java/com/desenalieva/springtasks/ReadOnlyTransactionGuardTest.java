@@ -0,0 +1,125 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.readonly.ReadOnlyTransactionGuard;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.ReadOnlyService;
+import org.hibernate.FlushMode;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Строгий режим readOnly транзакций (serial.read-only.write-policy = REJECT).
+ */
+@SpringBootTest(properties = "serial.read-only.write-policy=REJECT")
+public class ReadOnlyTransactionGuardTest {
+    @Autowired
+    private ReadOnlyService readOnlyService;
+
+    @Autowired
+    private ReadOnlyTransactionGuard readOnlyTransactionGuard;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Явный flush() в readOnly транзакции отклоняется, объект в бд не сохраняется.
+     */
+    @Test
+    void testFlushRejected() {
+        long violations = readOnlyTransactionGuard.getViolations();
+
+        assertThrows(IllegalStateException.class, () -> readOnlyService.readOnlyMethodWithFlush());
+
+        assertEquals(0, serialRepository.count());
+        assertEquals(violations + 1, readOnlyTransactionGuard.getViolations());
+    }
+
+    /**
+     * Ограничение политики: массовый JPQL delete (@Modifying запрос) в readOnly транзакции не проходит
+     * через слушатели сущностей, поэтому выполняется и не считается нарушением даже при политике REJECT.
+     */
+    @Test
+    void testBulkWriteNotControlled() {
+        transactionTemplate.executeWithoutResult(status -> serialRepository.save(new Serial(1L, "Serial", 1)));
+        long violations = readOnlyTransactionGuard.getViolations();
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        assertEquals(1, (int) readOnly.execute(status -> serialRepository.deleteByRatingBelow(5)));
+
+        assertEquals(0, serialRepository.count());
+        assertEquals(violations, readOnlyTransactionGuard.getViolations());
+    }
+
+    /**
+     * В readOnly транзакции сущности загружаются как read-only без снимка состояния,
+     * сессия не сбрасывается автоматически.
+     */
+    @Test
+    void testReadOnlySession() {
+        transactionTemplate.executeWithoutResult(status -> serialRepository.save(new Serial(1L, "Serial", 5)));
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+            Serial serial = serialRepository.findById(1L).orElseThrow();
+            EntityEntry entry = session.getPersistenceContext().getEntry(serial);
+
+            assertTrue(session.isReadOnly(serial));
+            assertNull(entry.getLoadedState());
+            assertEquals(FlushMode.MANUAL, session.getHibernateFlushMode());
+        });
+    }
+
+    /**
+     * Запись во вложенной транзакции с readOnly = false (REQUIRES_NEW) разрешена,
+     * изменение сущности в readOnly транзакции по-прежнему не сохраняется.
+     */
+    @Test
+    void testNestedReadWriteTransactionAllowed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            serialRepository.save(new Serial(1L, "OldSerialName", 5));
+            bookRepository.save(new Book(1L, "OldBookName", "Author"));
+        });
+
+        readOnlyService.changeSerialAndBookName1(1L, "NewSerialName", 1L, "NewBookName");
+
+        assertEquals("OldSerialName", serialRepository.findById(1L).orElseThrow().getName());
+        assertEquals("NewBookName", bookRepository.findById(1L).orElseThrow().getName());
+    }
+}
@@ -0,0 +1,135 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.datasource.ReadReplicaRoutingDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Маршрутизация readOnly транзакций на реплику: основная бд и реплика - два экземпляра H2 в памяти.
+ */
+@SpringBootTest(properties = {
+        "serial.datasource.routing.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "serial.datasource.replica.urls=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "serial.datasource.replica.max-lag=200ms"
+})
+public class ReadReplicaRoutingTest {
+    final static String REPLICA_URL =
+            "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:replica-schema.sql'";
+
+    private final static String SELECT_NAME = "select name from serial where id = 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ReadReplicaRoutingDataSource routingDataSource;
+
+    /**
+     * readOnly транзакции читают с реплики, остальные - с основной бд,
+     * а сразу после записи readOnly транзакции тоже идут на основную бд.
+     */
+    @Test
+    public void testRouting() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("delete from serial where id = 1");
+            jdbcTemplate.update("insert into serial (id, name, rating) values (1, 'primary', 5)");
+        });
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""))
+                .update("merge into serial (id, name, rating) key (id) values (1, 'replica', 5)");
+
+        assertEquals("primary", readOnly());
+        Thread.sleep(300);
+        assertEquals("replica", readOnly());
+        assertEquals("primary", transactionTemplate.execute(status ->
+                jdbcTemplate.queryForObject(SELECT_NAME, String.class)));
+    }
+
+    /**
+     * Запись в другом потоке (например, фонового обработчика) не переводит readOnly транзакции этого потока
+     * на основную бд: read-your-writes отслеживается для каждого потока.
+     */
+    @Test
+    public void testOtherThreadWriteDoesNotReroute() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("delete from serial where id = 1");
+            jdbcTemplate.update("insert into serial (id, name, rating) values (1, 'primary', 5)");
+        });
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""))
+                .update("merge into serial (id, name, rating) key (id) values (1, 'replica', 5)");
+        Thread.sleep(300);
+
+        Thread writer = new Thread(() -> transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update("update serial set rating = 6 where id = 1")));
+        writer.start();
+        writer.join();
+
+        assertEquals("replica", readOnly());
+    }
+
+    /**
+     * Соединение с учетными данными маршрутизируется так же, учетные данные передаются выбранному DataSource.
+     */
+    @Test
+    public void testConnectionWithCredentials() throws Exception {
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:routing-primary");
+        DataSource replica = new DriverManagerDataSource(REPLICA_URL);
+        ReadReplicaRoutingDataSource dataSource =
+                new ReadReplicaRoutingDataSource(primary, List.of(replica), Duration.ZERO, Duration.ofMinutes(1));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try (Connection ignored = dataSource.getConnection("sa", "")) {
+            assertEquals(1, dataSource.getReplicaConnections());
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        try (Connection ignored = dataSource.getConnection("sa", "")) {
+            assertEquals(1, dataSource.getPrimaryConnections());
+        }
+    }
+
+    /**
+     * Если реплика недоступна, readOnly соединение берется у основной бд.
+     */
+    @Test
+    public void testFallbackToPrimary() throws Exception {
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:routing-primary", "sa", "");
+        DataSource replica = new DriverManagerDataSource("jdbc:h2:mem:routing-missing;IFEXISTS=TRUE", "sa", "");
+        ReadReplicaRoutingDataSource dataSource =
+                new ReadReplicaRoutingDataSource(primary, List.of(replica), Duration.ZERO, Duration.ofMinutes(1));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            for (int i = 0; i < 2; i++) {
+                try (Connection ignored = dataSource.getConnection()) {
+                    assertEquals(i + 1, dataSource.getFallbacks());
+                }
+            }
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+        assertEquals(0, dataSource.getReplicaConnections());
+        assertEquals(2, dataSource.getPrimaryConnections());
+    }
+
+    private String readOnly() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> jdbcTemplate.queryForObject(SELECT_NAME, String.class));
+    }
+}
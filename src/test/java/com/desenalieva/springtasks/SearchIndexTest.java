@@ -0,0 +1,173 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.search.SearchField;
+import com.desenalieva.springtasks.search.SearchHit;
+import com.desenalieva.springtasks.search.SearchIndex;
+import com.desenalieva.springtasks.search.SearchMode;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Поисковый индекс по названиям сериалов и книг: режимы поиска, ранжирование и обновление по коммитам.
+ */
+@SpringBootTest
+public class SearchIndexTest {
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+        serialService.createAll(List.of(new Serial(301L, "Game of Thrones", 9), new Serial(302L, "The Game", 7),
+                new Serial(303L, "Breaking Bad", 10), new Serial(304L, "Игра престолов", 9),
+                new Serial(305L, "Игры разума", 8), new Serial(306L, "Ёлки", 5)));
+        bookRepository.saveAll(List.of(new Book(301L, "A Game of Thrones", "George R. R. Martin"),
+                new Book(302L, "Fire & Blood", "George R. R. Martin"), new Book(303L, "Dune", "Frank Herbert")));
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Поиск по префиксу и по словам; при равных совпадениях выше названия из меньшего кол-ва слов.
+     */
+    @Test
+    void testPrefixAndTokenSearch() {
+        assertEquals(List.of(302L, 301L), ids(SearchField.SERIAL_NAME, "gam", SearchMode.PREFIX));
+        assertEquals(List.of(301L), ids(SearchField.SERIAL_NAME, "game of th", SearchMode.PREFIX));
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "game of th ", SearchMode.PREFIX));
+        assertEquals(List.of(304L), ids(SearchField.SERIAL_NAME, "Игра", SearchMode.TOKEN));
+        assertEquals(List.of(304L, 305L), ids(SearchField.SERIAL_NAME, "игр", SearchMode.PREFIX));
+        assertEquals(List.of(306L), ids(SearchField.SERIAL_NAME, "елки", SearchMode.TOKEN));
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "gam", SearchMode.TOKEN));
+        assertEquals(List.of(302L), ids(SearchField.SERIAL_NAME, "gam", SearchMode.PREFIX, 1));
+    }
+
+    /**
+     * Нечеткий поиск находит слова с опечатками (в коротких словах опечатки не допускаются), точное совпадение выше.
+     */
+    @Test
+    void testFuzzySearch() {
+        assertEquals(List.of(303L), ids(SearchField.SERIAL_NAME, "braking bad", SearchMode.FUZZY));
+        assertEquals(List.of(301L), ids(SearchField.SERIAL_NAME, "throne", SearchMode.FUZZY));
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "braking", SearchMode.TOKEN));
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "bda", SearchMode.FUZZY));
+
+        List<SearchHit> hits = searchIndex.search(SearchField.SERIAL_NAME, "игры", SearchMode.FUZZY, 10);
+        assertEquals(List.of(305L, 304L), hits.stream().map(SearchHit::getId).collect(Collectors.toList()));
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    /**
+     * Поиск по названию и автору книги.
+     */
+    @Test
+    void testBookSearch() {
+        assertEquals(List.of(301L, 302L), ids(SearchField.BOOK_AUTHOR, "martin", SearchMode.TOKEN));
+        assertEquals(List.of(303L), ids(SearchField.BOOK_AUTHOR, "frank herb", SearchMode.PREFIX));
+        assertEquals(List.of(301L), ids(SearchField.BOOK_NAME, "thrones", SearchMode.TOKEN));
+        assertEquals(3, searchIndex.size(SearchField.BOOK_NAME));
+    }
+
+    /**
+     * Индекс меняется только закоммиченными вставками, изменениями и удалениями.
+     */
+    @Test
+    void testCommittedChanges() {
+        transactionTemplate.executeWithoutResult(status -> {
+            serialService.create(310L, "Westworld", 8);
+            status.setRollbackOnly();
+        });
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "westworld", SearchMode.TOKEN));
+
+        serialService.create(310L, "Westworld", 8);
+        assertEquals(List.of(310L), ids(SearchField.SERIAL_NAME, "westworld", SearchMode.TOKEN));
+
+        transactionTemplate.executeWithoutResult(status ->
+                serialRepository.findById(310L).orElseThrow().setName("Severance"));
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "westworld", SearchMode.TOKEN));
+        assertEquals(List.of(310L), ids(SearchField.SERIAL_NAME, "severance", SearchMode.TOKEN));
+
+        serialService.deleteById(310L);
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "severance", SearchMode.TOKEN));
+    }
+
+    /**
+     * Массовое удаление и запись в обход Hibernate: индекс перестраивается по бд.
+     */
+    @Test
+    void testRebuild() throws InterruptedException {
+        serialService.deleteAllByIds(new long[]{301L, 302L});
+        assertTrue(searchIndex.awaitRebuild(5, TimeUnit.SECONDS));
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "game", SearchMode.TOKEN));
+
+        jdbcTemplate.update("insert into serial (id, name, rating) values (320, 'The Last of Us', 9)");
+        assertEquals(List.of(), ids(SearchField.SERIAL_NAME, "last", SearchMode.TOKEN));
+
+        searchIndex.rebuild();
+        assertEquals(List.of(320L), ids(SearchField.SERIAL_NAME, "last", SearchMode.TOKEN));
+        assertEquals(5, searchIndex.size(SearchField.SERIAL_NAME));
+    }
+
+    /**
+     * Перестроения из разных потоков (например, при старте и по массовой операции) не пересекаются и не падают.
+     */
+    @Test
+    void testConcurrentRebuilds() throws Exception {
+        jdbcTemplate.update("insert into serial (id, name, rating) values (321, 'Severance', 8)");
+        CompletableFuture<Void> background = searchIndex.rebuildAsync();
+        CompletableFuture<Void> other = CompletableFuture.runAsync(searchIndex::rebuild);
+
+        searchIndex.rebuild();
+
+        other.get(5, TimeUnit.SECONDS);
+        background.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(321L), ids(SearchField.SERIAL_NAME, "severance", SearchMode.TOKEN));
+    }
+
+    private List<Long> ids(SearchField field, String query, SearchMode mode) {
+        return ids(field, query, mode, 10);
+    }
+
+    private List<Long> ids(SearchField field, String query, SearchMode mode, int limit) {
+        return searchIndex.search(field, query, mode, limit).stream()
+                .map(SearchHit::getId)
+                .collect(Collectors.toList());
+    }
+}
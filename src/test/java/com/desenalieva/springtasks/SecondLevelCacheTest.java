@@ -0,0 +1,147 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.cache.CacheStatistics;
+import com.desenalieva.springtasks.cache.CacheStatisticsService;
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.CustomSerialService;
+import com.desenalieva.springtasks.services.HelperService;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+
+import static com.desenalieva.springtasks.cache.HibernateCacheConfig.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class SecondLevelCacheTest {
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private CustomSerialService customSerialService;
+
+    @Autowired
+    private HelperService helperService;
+
+    @Autowired
+    private CacheStatisticsService cacheStatisticsService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Кэш очищается перед каждым тестом: после удаления сериала READ_WRITE регион хранит блокировку с его версией,
+     * и вставленный заново с тем же id сериал (версия снова 0) не попадает в кэш, пока версия не станет больше
+     */
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+        transactionTemplate.executeWithoutResult(status -> {
+            serialRepository.save(new Serial(1L, "Serial", 5));
+            bookRepository.save(new Book(1L, "Book", "Author"));
+        });
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Проверяем, что повторное чтение сериала по id берется из кэша второго уровня
+     */
+    @Test
+    void testFindByIdHitsCache() {
+        serialRepository.findById(1L);
+        CacheStatistics before = cacheStatisticsService.getStatistics(SERIAL_REGION);
+
+        assertEquals(5, serialRepository.findById(1L).orElseThrow().getRating());
+
+        CacheStatistics after = cacheStatisticsService.getStatistics(SERIAL_REGION);
+        assertEquals(before.getHits() + 1, after.getHits());
+        assertEquals(before.getMisses(), after.getMisses());
+    }
+
+    /**
+     * Проверяем, что изменения, зафиксированные во вложенной транзакции (REQUIRES_NEW),
+     * видны при следующем чтении из кэша
+     */
+    @Test
+    void testCacheAfterRequiresNewCommit() {
+        serialRepository.findById(1L);
+        bookRepository.findById(1L);
+
+        helperService.changeSerialRatingWithReadOnlyFalse(1L, 9);
+        helperService.changeBookNameWithReadOnlyFalse(1L, "NewBookName");
+
+        assertEquals(9, serialRepository.findById(1L).orElseThrow().getRating());
+        assertEquals("NewBookName", bookRepository.findById(1L).orElseThrow().getName());
+    }
+
+    /**
+     * Проверяем, что изменения из откаченной транзакции не попадают в кэш,
+     * а изменения из readOnly транзакции (REQUIRES_NEW) не сохраняются ни в бд, ни в кэше
+     */
+    @Test
+    void testCacheAfterRollback() {
+        serialRepository.findById(1L);
+
+        assertThrowsExactly(RecoverableDataAccessException.class, () -> customSerialService.updateRating1(1L, 10));
+        helperService.changeSerialRatingWithReadOnlyTrue(1L, 8);
+
+        assertEquals(5, serialRepository.findById(1L).orElseThrow().getRating());
+    }
+
+    /**
+     * Проверяем, что массовое обновление рейтинга в обход Hibernate сбрасывает кэш сериалов
+     */
+    @Test
+    void testCacheAfterBulkUpdate() {
+        serialRepository.findById(1L);
+
+        serialService.updateRatings(Map.of(1L, 3));
+
+        assertEquals(3, serialRepository.findById(1L).orElseThrow().getRating());
+    }
+
+    /**
+     * Проверяем, что результат count() берется из кэша запросов и сбрасывается при изменении таблицы
+     */
+    @Test
+    void testCountQueryCache() {
+        assertEquals(1, serialRepository.count());
+        CacheStatistics before = cacheStatisticsService.getStatistics(QUERY_RESULTS_REGION);
+
+        assertEquals(1, serialRepository.count());
+        CacheStatistics after = cacheStatisticsService.getStatistics(QUERY_RESULTS_REGION);
+        assertEquals(before.getHits() + 1, after.getHits());
+
+        serialService.create(2L, "Serial2", 7);
+        assertEquals(2, serialRepository.count());
+        serialService.deleteAllByIds(new long[]{2L});
+        assertEquals(1, serialRepository.count());
+    }
+}
@@ -0,0 +1,166 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.importer.ImportResult;
+import com.desenalieva.springtasks.importer.SerialInfoImporter;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Импорт файла информации о сериалах (в тестах serial.import.chunk-size = 64, serial.import.parallelism = 2).
+ */
+@SpringBootTest
+public class SerialInfoImporterTest {
+    @Autowired
+    private SerialInfoImporter serialInfoImporter;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+    }
+
+    /**
+     * Корректные строки сохраняются с id = firstId + номер строки, некорректные попадают в отчет.
+     */
+    @Test
+    void testImport() throws Exception {
+        Path file = dir.resolve("serials.txt");
+        Files.writeString(file, "Serial1, 1\r\n"
+                + "Say, Hi, 10\n"
+                + "Serial3, null\n"
+                + "NoRating\n"
+                + "Serial5, 11\n"
+                + "Serial6, x\n"
+                + "Сериал, 0\n"
+                + "Partial, 5", StandardCharsets.UTF_8);
+
+        ImportResult result = serialInfoImporter.importFile(file, 100);
+
+        assertEquals(7, result.getLines());
+        assertEquals(4, result.getImported());
+        assertEquals(3, result.getBadLines());
+        assertEquals(Files.size(file) - "Partial, 5".length(), result.getEndOffset());
+        assertEquals(List.of(100L, 101L, 102L, 106L),
+                serialRepository.findAll().stream().map(Serial::getId).sorted().collect(Collectors.toList()));
+        assertEquals("Serial1", serialRepository.findById(100L).orElseThrow().getName());
+        assertEquals("Say, Hi", serialRepository.findById(101L).orElseThrow().getName());
+        assertEquals(10, serialRepository.findById(101L).orElseThrow().getRating());
+        assertNull(serialRepository.findById(102L).orElseThrow().getRating());
+        assertEquals("Сериал", serialRepository.findById(106L).orElseThrow().getName());
+        List<String> report = Files.readAllLines(result.getBadLineReport());
+        assertEquals(3, report.size());
+        assertTrue(report.get(0).startsWith("4\t"));
+        assertTrue(report.get(1).startsWith("5\tрейтинг вне диапазона"));
+        assertTrue(report.get(2).endsWith("\tSerial6, x"));
+    }
+
+    /**
+     * Строка с названием длиннее колонки serial.name попадает в отчет, остальные строки части сохраняются.
+     */
+    @Test
+    void testNameTooLong() throws Exception {
+        Path file = dir.resolve("serials.txt");
+        String name = "Я".repeat(Serial.MAX_NAME_LENGTH);
+        Files.writeString(file, name + ", 1\n" + name + "!, 2\nSerial3, 3\n", StandardCharsets.UTF_8);
+
+        ImportResult result = serialInfoImporter.importFile(file, 1);
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getBadLines());
+        assertEquals(name, serialRepository.findById(1L).orElseThrow().getName());
+        assertFalse(serialRepository.existsById(2L));
+        assertTrue(Files.readAllLines(result.getBadLineReport()).get(0).startsWith("2\tназвание длиннее"));
+    }
+
+    /**
+     * Повторный вызов продолжает импорт с контрольной точки, в том числе дописанных в файл строк.
+     */
+    @Test
+    void testResumeFromCheckpoint() throws Exception {
+        Path file = dir.resolve("serials.txt");
+        Files.writeString(file, lines(1, 20) + "Serial21, ");
+        assertEquals(20, serialInfoImporter.importFile(file, 1).getImported());
+
+        Files.writeString(file, "5\n" + lines(22, 30), StandardOpenOption.APPEND);
+        ImportResult result = serialInfoImporter.importFile(file, 1);
+
+        assertEquals(10, result.getImported());
+        assertEquals(30, serialRepository.count());
+        assertEquals(5, serialRepository.findById(21L).orElseThrow().getRating());
+        assertEquals(0, serialInfoImporter.importFile(file, 1).getImported());
+        assertThrows(IllegalStateException.class, () -> serialInfoImporter.importFile(file, 1000));
+    }
+
+    /**
+     * Если контрольная точка не успела записаться после коммита части, части при продолжении не сохраняются повторно.
+     */
+    @Test
+    void testResumeAfterLostCheckpoint() throws Exception {
+        Path file = dir.resolve("serials.txt");
+        Files.writeString(file, lines(1, 20));
+        serialInfoImporter.importFile(file, 1);
+        Path checkpoint = dir.resolve("serials.txt.checkpoint");
+        Files.writeString(checkpoint, "firstId=1\noffset=" + lines(1, 10).length() + "\nline=10\n");
+
+        ImportResult result = serialInfoImporter.importFile(file, 1);
+
+        assertEquals(20, serialRepository.count());
+        assertEquals(10, result.getLines());
+        assertEquals(0, result.getImported());
+    }
+
+    /**
+     * Если контрольная точка не записалась, а файл затем дописан, часть с той же начальной позиции содержит
+     * и сохраненные, и новые строки: сохраняются только новые.
+     */
+    @Test
+    void testResumeAfterLostCheckpointAndAppend() throws Exception {
+        Path file = dir.resolve("serials.txt");
+        Files.writeString(file, lines(1, 12));
+        serialInfoImporter.importFile(file, 1);
+        Path checkpoint = dir.resolve("serials.txt.checkpoint");
+        Files.writeString(checkpoint, "firstId=1\noffset=" + lines(1, 10).length() + "\nline=10\n");
+        Files.writeString(file, "Bad\n" + lines(14, 20), StandardOpenOption.APPEND);
+
+        ImportResult result = serialInfoImporter.importFile(file, 1);
+
+        assertEquals(7, result.getImported());
+        assertEquals(1, result.getBadLines());
+        assertEquals(19, serialRepository.count());
+        assertEquals(IntStream.rangeClosed(1, 20).filter(i -> i != 13).boxed().collect(Collectors.toList()),
+                serialRepository.findAll().stream().map(serial -> serial.getId().intValue()).sorted()
+                        .collect(Collectors.toList()));
+        assertTrue(Files.readAllLines(result.getBadLineReport()).get(0).startsWith("13\t"));
+    }
+
+    private static String lines(int from, int to) {
+        return IntStream.rangeClosed(from, to).mapToObj(i -> "Serial" + i + ", " + i % 11 + "\n")
+                .collect(Collectors.joining());
+    }
+}
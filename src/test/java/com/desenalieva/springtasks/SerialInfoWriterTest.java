@@ -0,0 +1,117 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.writers.BackpressurePolicy;
+import com.desenalieva.springtasks.writers.SerialInfoWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SerialInfoWriterTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Проверяем, что записи пишутся пачками: на 100 записей приходится меньше 100 fsync,
+     * а порядок записей в файле совпадает с порядком добавления
+     */
+    @Test
+    void testGroupCommit() throws InterruptedException, IOException {
+        Path path = tempDir.resolve("SerialInfo.txt");
+        SerialInfoWriter writer = new SerialInfoWriter(path, 1000, 64, 50, BackpressurePolicy.BLOCK);
+        writer.start();
+        try {
+            IntStream.range(0, 100).forEach(i -> writer.append(new Serial((long) i, "Serial" + i, i % 11)));
+            assertTrue(writer.flush(5, TimeUnit.SECONDS));
+        } finally {
+            writer.stop();
+        }
+
+        List<String> expected = IntStream.range(0, 100)
+                .mapToObj(i -> "Serial" + i + ", " + i % 11)
+                .collect(Collectors.toList());
+        assertEquals(expected, Files.readAllLines(path, UTF_8));
+        assertEquals(100, writer.getEnqueuedCount());
+        assertTrue(writer.getFlushCount() < 100);
+        assertEquals(0, writer.getQueueDepth());
+    }
+
+    /**
+     * Проверяем политики DROP и FAIL: при заполненной очереди записи отбрасываются
+     */
+    @Test
+    void testBackpressure() throws InterruptedException {
+        SerialInfoWriter dropWriter = new SerialInfoWriter(tempDir.resolve("drop.txt"), 1, 1, 0, BackpressurePolicy.DROP);
+        assertEquals(1, dropWriter.append(new Serial(1L, "Serial1", 1)));
+        assertEquals(0, dropWriter.append(new Serial(2L, "Serial2", 2)));
+        assertEquals(1, dropWriter.getQueueDepth());
+        assertEquals(1, dropWriter.getDroppedCount());
+        dropWriter.start();
+        try {
+            // первая запись записана, но flush сообщает об отброшенной второй
+            assertTrue(dropWriter.flush(1, 5, TimeUnit.SECONDS));
+            assertFalse(dropWriter.flush(5, TimeUnit.SECONDS));
+            assertEquals(1, dropWriter.getWrittenCount());
+        } finally {
+            dropWriter.stop();
+        }
+
+        SerialInfoWriter failWriter = new SerialInfoWriter(tempDir.resolve("fail.txt"), 1, 1, 0, BackpressurePolicy.FAIL);
+        failWriter.append(new Serial(1L, "Serial1", 1));
+        assertThrowsExactly(IllegalStateException.class, () -> failWriter.append(new Serial(2L, "Serial2", 2)));
+        assertEquals(1, failWriter.getDroppedCount());
+    }
+
+    /**
+     * Проверяем ошибку записи в файл: записи пачки не считаются записанными, flush возвращает false
+     * для диапазона с ними, следующие записи (после устранения ошибки) записываются и проверяются отдельно
+     */
+    @Test
+    void testWriteFailure() throws InterruptedException, IOException {
+        Path path = tempDir.resolve("SerialInfo.txt");
+        Files.createDirectory(path);
+        SerialInfoWriter writer = new SerialInfoWriter(path, 1000, 64, 0, BackpressurePolicy.BLOCK);
+        writer.start();
+        try {
+            long first = writer.append(new Serial(1L, "Serial1", 1));
+            writer.append(new Serial(2L, "Serial2", 2));
+            assertFalse(writer.flush(5, TimeUnit.SECONDS));
+            assertFalse(writer.flush(first, 5, TimeUnit.SECONDS));
+            assertEquals(2, writer.getFailedCount());
+            assertEquals(0, writer.getWrittenCount());
+
+            Files.delete(path);
+            long next = writer.append(new Serial(3L, "Serial3", 3));
+            assertTrue(writer.flush(next, 5, TimeUnit.SECONDS));
+            assertFalse(writer.flush(first, 5, TimeUnit.SECONDS));
+            assertEquals(1, writer.getWrittenCount());
+        } finally {
+            writer.stop();
+        }
+        assertEquals(List.of("Serial3, 3"), Files.readAllLines(path, UTF_8));
+    }
+
+    /**
+     * Проверяем, что при остановке записи, оставшиеся в очереди, дописываются в файл
+     */
+    @Test
+    void testStopDrainsQueue() throws InterruptedException, IOException {
+        Path path = tempDir.resolve("SerialInfo.txt");
+        SerialInfoWriter writer = new SerialInfoWriter(path, 1000, 8, 1000, BackpressurePolicy.BLOCK);
+        IntStream.range(0, 20).forEach(i -> writer.append(new Serial((long) i, "Serial" + i, 5)));
+        writer.start();
+        writer.stop();
+
+        assertEquals(20, Files.readAllLines(path, UTF_8).size());
+    }
+}
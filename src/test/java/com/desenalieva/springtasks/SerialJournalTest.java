@@ -0,0 +1,124 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.journal.SerialJournal;
+import com.desenalieva.springtasks.journal.SerialJournalRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SerialJournalTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Проверяем поиск записи по id: возвращается последняя запись о сериале
+     */
+    @Test
+    void testFind() throws IOException {
+        try (SerialJournal journal = new SerialJournal(tempDir, 4096)) {
+            journal.append(new Serial(1L, "Serial", 5));
+            journal.append(new Serial(2L, null, null));
+            journal.append(new Serial(1L, "Serial (recreated)", 7));
+
+            Optional<SerialJournalRecord> record = journal.find(1L);
+            assertTrue(record.isPresent());
+            assertEquals("Serial (recreated)", record.get().getName());
+            assertEquals(7, record.get().getRating());
+
+            record = journal.find(2L);
+            assertTrue(record.isPresent());
+            assertNull(record.get().getName());
+            assertNull(record.get().getRating());
+
+            assertFalse(journal.find(3L).isPresent());
+            assertEquals(2, journal.size());
+        }
+    }
+
+    /**
+     * Проверяем, что при заполнении сегмента создается новый,
+     * а обход журнала и восстановление индекса после переоткрытия идут по всем сегментам в порядке добавления
+     */
+    @Test
+    void testSegmentRollover() throws IOException {
+        try (SerialJournal journal = new SerialJournal(tempDir, 128)) {
+            for (long id = 1; id <= 10; id++) {
+                journal.append(new Serial(id, "Serial" + id, (int) id));
+            }
+            assertTrue(journal.getSegmentCount() > 1);
+        }
+
+        try (SerialJournal journal = new SerialJournal(tempDir, 128)) {
+            List<Long> ids = new ArrayList<>();
+            journal.replay(record -> ids.add(record.getId()));
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), ids);
+            assertEquals("Serial10", journal.find(10L).orElseThrow().getName());
+        }
+    }
+
+    /**
+     * Проверяем восстановление после падения: недописанная запись в конце сегмента удаляется,
+     * следующая запись пишется на ее место
+     */
+    @Test
+    void testRecoveryTruncatesPartialRecord() throws IOException {
+        int tail;
+        try (SerialJournal journal = new SerialJournal(tempDir, 4096)) {
+            journal.append(new Serial(1L, "Serial1", 1));
+            journal.append(new Serial(2L, "Serial2", 2));
+            SerialJournalRecord last = journal.find(2L).orElseThrow();
+            // заголовок (8 байт) + фиксированная часть тела (14 байт) + название
+            tail = last.getOffset() + 8 + 14 + "Serial2".length();
+        }
+
+        // имитируем падение в момент записи: длина записана, тело и crc - нет
+        try (FileChannel channel = FileChannel.open(tempDir.resolve("serial-000000.journal"), WRITE)) {
+            channel.write(ByteBuffer.allocate(12).putInt(40).putInt(0).putInt(3).flip(), tail);
+        }
+
+        try (SerialJournal journal = new SerialJournal(tempDir, 4096)) {
+            assertEquals(2, journal.size());
+            journal.append(new Serial(3L, "Serial3", 3));
+            assertEquals(tail, journal.find(3L).orElseThrow().getOffset());
+        }
+
+        try (SerialJournal journal = new SerialJournal(tempDir, 4096)) {
+            List<String> names = new ArrayList<>();
+            journal.replay(record -> names.add(record.getName()));
+            assertEquals(List.of("Serial1", "Serial2", "Serial3"), names);
+        }
+    }
+
+    /**
+     * Проверяем граничную длину названия: Short.MAX_VALUE байт записывается и читается,
+     * более длинное название (в т.ч. 65535 байт, совпадающее с признаком null) отклоняется без записи в журнал
+     */
+    @Test
+    void testNameLengthLimit() throws IOException {
+        try (SerialJournal journal = new SerialJournal(tempDir, 1 << 17)) {
+            String maxName = "a".repeat(Short.MAX_VALUE);
+            journal.append(new Serial(1L, maxName, 1));
+            assertEquals(maxName, journal.find(1L).orElseThrow().getName());
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> journal.append(new Serial(2L, "a".repeat(Short.MAX_VALUE + 1), 2)));
+            assertThrows(IllegalArgumentException.class, () -> journal.append(new Serial(3L, "a".repeat(65535), 3)));
+            journal.append(new Serial(4L, "Serial4", 4));
+
+            List<Long> ids = new ArrayList<>();
+            journal.replay(record -> ids.add(record.getId()));
+            assertEquals(List.of(1L, 4L), ids);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.desenalieva.springtasks;
 
+import com.desenalieva.springtasks.dispatch.BoundedEventListenerFactory;
 import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.journal.SerialJournal;
+import com.desenalieva.springtasks.outbox.OutboxRelay;
+import com.desenalieva.springtasks.repositories.BulkOperationResult;
 import com.desenalieva.springtasks.repositories.SerialRepository;
 import com.desenalieva.springtasks.services.SerialService;
+import com.desenalieva.springtasks.writers.SerialInfoWriter;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,12 +15,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.validation.ConstraintViolationException;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.*;
@@ -28,21 +41,39 @@ public class SerialServiceTest {
     @Autowired
     private SerialRepository serialRepository;
 
+    @Autowired
+    private SerialInfoWriter serialInfoWriter;
+
+    @Autowired
+    private SerialJournal serialJournal;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private BoundedEventListenerFactory eventListenerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Value("${serial.info.filepath}")
     public String SERIAL_INFO_FILE_PATH;
 
     private Path path;
 
     @BeforeEach
-    void setup() {
+    void setup() throws InterruptedException {
         serialRepository.deleteAll();
+        outboxRelay.awaitDelivery(5, TimeUnit.SECONDS); // события предыдущих тестов
         path = Path.of(SERIAL_INFO_FILE_PATH);
         deleteTestFile();
     }
 
     @AfterEach
-    void cleanup() {
+    void cleanup() throws InterruptedException {
         serialRepository.deleteAll();
+        outboxRelay.awaitDelivery(5, TimeUnit.SECONDS);
+        serialInfoWriter.flush(5, TimeUnit.SECONDS);
         deleteTestFile();
     }
 
@@ -58,11 +89,12 @@ public class SerialServiceTest {
 
     /**
      * Проверяем, что в случае успешного коммита транзакции при создании сериала,
-     * происходит запись в файл информации о созданном сериале
+     * происходит запись в файл информации о созданном сериале (после доставки события из outbox)
      */
     @Test
-    void testWriteSerialInfoAfterCommit() {
+    void testWriteSerialInfoAfterCommit() throws InterruptedException {
         serialService.create(2L, "Serial", 10);
+        assertTrue(outboxRelay.awaitDelivery(5, TimeUnit.SECONDS));
         Optional<Serial> serialOpt = serialRepository.findById(2L);
         assertTrue(serialOpt.isPresent());
         Serial serial = serialOpt.get();
@@ -80,10 +112,178 @@ public class SerialServiceTest {
      * НЕ происходит запись в файл информации о сериале (и соответственно сам сериал в БД не создается)
      */
     @Test
-    void testWriteSerialInfoAfterRollback() {
+    void testWriteSerialInfoAfterRollback() throws InterruptedException {
         assertThrowsExactly(TransactionSystemException.class, () -> serialService.create(2L, "Serial", 11));
+        assertTrue(outboxRelay.awaitDelivery(5, TimeUnit.SECONDS));
         Optional<Serial> serialOpt = serialRepository.findById(2L);
         assertFalse(serialOpt.isPresent());
         assertFalse(Files.exists(path));
     }
-}
\ No newline at end of file
+
+    /**
+     * Проверяем, что созданный сериал попадает в бинарный журнал только после успешного коммита
+     */
+    @Test
+    void testWriteSerialJournal() throws InterruptedException {
+        serialService.create(20L, "Journal Serial", 6);
+        assertThrowsExactly(TransactionSystemException.class, () -> serialService.create(21L, "Serial", 11));
+        assertTrue(eventListenerFactory.awaitIdle(5, TimeUnit.SECONDS));
+
+        assertEquals("Journal Serial", serialJournal.find(20L).orElseThrow().getName());
+        assertFalse(serialJournal.find(21L).isPresent());
+    }
+
+    /**
+     * Проверяем, что информация о сериалах дописывается в конец файла, а не перезаписывает его
+     */
+    @Test
+    void testWriteSerialInfoAppends() throws InterruptedException, IOException {
+        serialService.create(2L, "Serial2", 7);
+        serialService.create(3L, "Serial3", 8);
+        assertTrue(outboxRelay.awaitDelivery(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("Serial2, 7", "Serial3, 8"), Files.readAllLines(path, UTF_8));
+    }
+
+    /**
+     * Проверяем, что массовое создание сохраняет все сериалы
+     * (в тестовой конфигурации сериалы сохраняются порциями по 3 штуки, JDBC батчами по 2 штуки)
+     */
+    @Test
+    void testCreateAll() {
+        List<Serial> serials = LongStream.rangeClosed(1, 7)
+                .mapToObj(id -> new Serial(id, "Serial" + id, (int) id))
+                .collect(Collectors.toList());
+
+        assertEquals(7, serialService.createAll(serials));
+
+        assertEquals(7, serialRepository.count());
+        Optional<Serial> serialOpt = serialRepository.findById(7L);
+        assertTrue(serialOpt.isPresent());
+        assertEquals("Serial7", serialOpt.get().getName());
+        assertEquals(7, serialOpt.get().getRating());
+    }
+
+    /**
+     * Проверяем, что массовое создание внутри существующей транзакции не отсоединяет сущности, загруженные
+     * до него: изменение такой сущности после createAll сохраняется при коммите
+     */
+    @Test
+    void testCreateAllKeepsCallerEntitiesManaged() {
+        serialService.createAll(List.of(new Serial(1L, "Serial1", 1)));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Serial serial = serialRepository.findById(1L).orElseThrow();
+            serialService.createAll(LongStream.rangeClosed(2, 6)
+                    .mapToObj(id -> new Serial(id, "Serial" + id, 5))
+                    .collect(Collectors.toList()));
+            serial.setRating(9);
+        });
+
+        assertEquals(9, serialRepository.findById(1L).orElseThrow().getRating());
+        assertEquals(6, serialRepository.count());
+    }
+
+    /**
+     * Проверяем, что при массовом создании каждая порция сохраняется в своей транзакции:
+     * ошибка в третьей порции откатывает только ее, первые две порции остаются в бд
+     */
+    @Test
+    void testCreateAllRollbackOnlyFailedChunk() {
+        List<Serial> serials = LongStream.rangeClosed(1, 9)
+                .mapToObj(id -> new Serial(id, "Serial" + id, id == 8 ? 11 : 5))
+                .collect(Collectors.toList());
+
+        assertThrowsExactly(ConstraintViolationException.class, () -> serialService.createAll(serials.stream()));
+
+        assertEquals(6, serialRepository.count());
+        assertFalse(serialRepository.findById(7L).isPresent());
+    }
+
+    /**
+     * Проверяем массовое обновление рейтинга: существующие сериалы обновлены,
+     * отсутствующий id возвращен в результате (без исключения)
+     */
+    @Test
+    void testUpdateRatings() {
+        serialService.createAll(List.of(new Serial(1L, "Serial1", 1), new Serial(2L, "Serial2", 2),
+                new Serial(3L, "Serial3", 3)));
+        Map<Long, Integer> ratings = new LinkedHashMap<>();
+        ratings.put(1L, 10);
+        ratings.put(99L, 5);
+        ratings.put(3L, 0);
+
+        BulkOperationResult result = serialService.updateRatings(ratings);
+
+        assertEquals(2, result.getCount());
+        assertEquals(List.of(99L), result.getMissingIds());
+        assertEquals(10, serialRepository.findById(1L).orElseThrow().getRating());
+        assertEquals(2, serialRepository.findById(2L).orElseThrow().getRating());
+        assertEquals(0, serialRepository.findById(3L).orElseThrow().getRating());
+    }
+
+    /**
+     * Проверяем, что повторяющиеся id при массовом обновлении рейтинга считаются один раз
+     * (применяется последний рейтинг), отсутствующий id возвращается один раз
+     */
+    @Test
+    void testUpdateRatingsDuplicateIds() {
+        serialService.createAll(List.of(new Serial(1L, "Serial1", 1), new Serial(2L, "Serial2", 2)));
+
+        BulkOperationResult result = serialService.updateRatings(new long[]{1L, 1L, 99L, 99L}, new int[]{4, 6, 5, 5});
+
+        assertEquals(1, result.getCount());
+        assertEquals(List.of(99L), result.getMissingIds());
+        assertEquals(6, serialRepository.findById(1L).orElseThrow().getRating());
+    }
+
+    /**
+     * Проверяем, что массовое обновление рейтинга соблюдает ограничения @Min/@Max сущности Serial:
+     * при недопустимом рейтинге не обновляется ни один сериал
+     */
+    @Test
+    void testUpdateRatingsValidation() {
+        serialService.createAll(List.of(new Serial(1L, "Serial1", 1), new Serial(2L, "Serial2", 2)));
+
+        assertThrowsExactly(ConstraintViolationException.class,
+                () -> serialService.updateRatings(new long[]{1L, 2L}, new int[]{5, 11}));
+
+        assertEquals(1, serialRepository.findById(1L).orElseThrow().getRating());
+        assertEquals(2, serialRepository.findById(2L).orElseThrow().getRating());
+    }
+
+    /**
+     * Проверяем массовое удаление по идентификаторам: удаление идет порциями
+     * (в тестовой конфигурации по 2 идентификатора), отсутствующие и повторяющиеся id не приводят к исключению
+     */
+    @Test
+    void testDeleteAllByIds() {
+        serialService.createAll(LongStream.rangeClosed(1, 6)
+                .mapToObj(id -> new Serial(id, "Serial" + id, 5))
+                .collect(Collectors.toList()));
+
+        BulkOperationResult result = serialService.deleteAllByIds(new long[]{1L, 2L, 42L, 3L, 3L, 43L, 5L});
+
+        assertEquals(4, result.getCount());
+        assertEquals(List.of(42L, 43L), result.getMissingIds());
+        assertEquals(2, serialRepository.count());
+        assertTrue(serialRepository.findById(4L).isPresent());
+        assertTrue(serialRepository.findById(6L).isPresent());
+    }
+
+    /**
+     * Проверяем удаление сериалов с рейтингом ниже заданного
+     */
+    @Test
+    void testDeleteByRatingBelow() {
+        serialService.createAll(LongStream.rangeClosed(0, 10)
+                .mapToObj(id -> new Serial(id, "Serial" + id, (int) id))
+                .collect(Collectors.toList()));
+
+        assertEquals(7, serialService.deleteByRatingBelow(7).getCount());
+
+        assertEquals(4, serialRepository.count());
+        assertFalse(serialRepository.findById(6L).isPresent());
+        assertTrue(serialRepository.findById(7L).isPresent());
+    }
+}
@@ -0,0 +1,53 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.profiler.StatementProfiler;
+import com.desenalieva.springtasks.profiler.TransactionProfile;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Проверки кол-ва SQL запросов на горячих путях: тест падает, если изменение добавило запросы,
+ * N+1 или автоматический flush перед запросом.
+ */
+final class StatementAssertions {
+
+    private StatementAssertions() {
+    }
+
+    /**
+     * Выполняет действие и проверяет, что все его транзакции вместе выполнили не больше maxStatements запросов,
+     * без N+1 и автоматических flush'ей.
+     * @return профили транзакций действия
+     */
+    static List<TransactionProfile> assertStatements(StatementProfiler profiler, int maxStatements, Runnable action) {
+        List<TransactionProfile> profiles = profiler.record(action);
+        assertTrue(!profiles.isEmpty(), "Действие не выполнило ни одной транзакции");
+        int statements = profiles.stream().mapToInt(TransactionProfile::getStatements).sum();
+        if (statements > maxStatements) {
+            fail("Ожидалось не больше " + maxStatements + " запросов, выполнено " + statements + ": " + profiles);
+        }
+        assertNoNPlusOne(profiles);
+        assertNoAutoFlush(profiles);
+        return profiles;
+    }
+
+    static void assertNoNPlusOne(List<TransactionProfile> profiles) {
+        for (TransactionProfile profile : profiles) {
+            if (!profile.getNPlusOneSuspects().isEmpty()) {
+                fail("Подозрение на N+1 в транзакции " + profile.getName() + ": " + profile.getNPlusOneSuspects());
+            }
+        }
+    }
+
+    static void assertNoAutoFlush(List<TransactionProfile> profiles) {
+        for (TransactionProfile profile : profiles) {
+            if (profile.getAutoFlushes() > 0) {
+                fail("Автоматический flush в транзакции " + profile.getName() + ": "
+                        + profile.getAutoFlushedStatements());
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.profiler.StatementProfiler;
+import com.desenalieva.springtasks.profiler.TransactionProfile;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.HelperService;
+import com.desenalieva.springtasks.services.SerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static com.desenalieva.springtasks.StatementAssertions.assertStatements;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Профилирование SQL запросов транзакций.
+ */
+@SpringBootTest
+public class StatementProfilerTest {
+    @Autowired
+    private StatementProfiler statementProfiler;
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private HelperService helperService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+    }
+
+    /**
+     * Запрос к сериалам при FlushMode.AUTO сбрасывает несохраненный сериал (см. FlushModeTypeTest) -
+     * это отмечается в профиле.
+     */
+    @Test
+    void testAutoFlushDetected() {
+        List<TransactionProfile> profiles = statementProfiler.record(() -> transactionTemplate.executeWithoutResult(status -> {
+            serialRepository.save(new Serial(1L, "Serial", 5));
+            serialRepository.findAll();
+        }));
+
+        assertEquals(1, profiles.size());
+        TransactionProfile profile = profiles.get(0);
+        assertEquals(1, profile.getAutoFlushes());
+        assertTrue(profile.getAutoFlushedStatements().get(0).startsWith("insert into serial"));
+        assertThrows(AssertionError.class, () -> StatementAssertions.assertNoAutoFlush(profiles));
+    }
+
+    /**
+     * Профиль называется по @Transactional методу, в т.ч. для транзакции REQUIRES_NEW внутри другой транзакции;
+     * транзакции без названия (TransactionTemplate) называются "transaction".
+     */
+    @Test
+    void testProfileNamedAfterTransactionalMethod() {
+        List<TransactionProfile> profiles = statementProfiler.record(() -> {
+            serialService.create(1L, "Serial", 5);
+            transactionTemplate.executeWithoutResult(status -> helperService.saveNewSerialInNewTransaction());
+        });
+
+        assertEquals(List.of(SerialService.class.getName() + ".create",
+                        HelperService.class.getName() + ".saveNewSerialInNewTransaction", "transaction"),
+                profiles.stream().map(TransactionProfile::getName).collect(Collectors.toList()));
+    }
+
+    /**
+     * Загрузка сериалов по одному в цикле отмечается как N+1.
+     */
+    @Test
+    void testNPlusOneDetected() {
+        serialService.createAll(LongStream.rangeClosed(1, 6).mapToObj(id -> new Serial(id, "Serial" + id, 5)));
+        entityManagerFactory.getCache().evictAll();
+
+        List<TransactionProfile> profiles = statementProfiler.record(() -> transactionTemplate.executeWithoutResult(status ->
+                LongStream.rangeClosed(1, 6).forEach(id -> serialRepository.findById(id).orElseThrow())));
+
+        TransactionProfile profile = profiles.get(0);
+        assertEquals(6, profile.getSelects());
+        assertEquals(6, profile.getEntityLoads());
+        assertEquals(1, profile.getNPlusOneSuspects().size());
+        assertThrows(AssertionError.class, () -> StatementAssertions.assertNoNPlusOne(profiles));
+    }
+
+    /**
+     * Бюджет запросов горячего пути: массовое создание 10 сериалов частями по 3 (serial.bulk.chunk-size)
+     * при hibernate.jdbc.batch_size = 2 - 4 транзакции и 7 пакетов insert'ов сериалов, столько же пакетов insert'ов
+     * событий outbox и не больше 2 запросов резервирования блока id событий, без select'ов.
+     */
+    @Test
+    void testCreateAllStatementBudget() {
+        List<TransactionProfile> profiles = assertStatements(statementProfiler, 16, () -> serialService.createAll(
+                LongStream.rangeClosed(1, 10).mapToObj(id -> new Serial(id, "Serial" + id, 5))));
+
+        assertEquals(4, profiles.size());
+        assertEquals(0, profiles.stream().mapToInt(TransactionProfile::getSelects).sum());
+        assertEquals(10, serialRepository.count());
+    }
+}
@@ -0,0 +1,137 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.projections.BookSummary;
+import com.desenalieva.springtasks.projections.SerialRatingDto;
+import com.desenalieva.springtasks.projections.SerialSummary;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Потоковое чтение сериалов и книг (в тестах serial.stream.fetch-size = 2, serial.stream.clear-interval = 3).
+ */
+@SpringBootTest
+public class StreamingReadTest {
+    private final static int ROWS = 10;
+
+    private final static List<Long> IDS = LongStream.rangeClosed(1, ROWS).boxed().collect(Collectors.toList());
+
+    @Autowired
+    private SerialService serialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+        serialService.createAll(LongStream.rangeClosed(1, ROWS).map(id -> ROWS + 1 - id)
+                .mapToObj(id -> new Serial(id, "Serial" + id, (int) (id % 11))));
+        transactionTemplate.executeWithoutResult(status -> LongStream.rangeClosed(1, ROWS)
+                .forEach(id -> entityManager.persist(new Book(id, "Book" + id, "Author" + id))));
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Сериалы читаются по возрастанию id, в контексте персистентности не больше clear-interval сущностей.
+     */
+    @Test
+    void testStreamAllClearsPersistenceContext() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            int[] maxManaged = new int[1];
+            List<Long> ids;
+            try (Stream<Serial> serials = serialRepository.streamAll()) {
+                ids = serials.peek(serial -> maxManaged[0] = Math.max(maxManaged[0], session.getStatistics().getEntityCount()))
+                        .map(Serial::getId)
+                        .collect(Collectors.toList());
+            }
+            assertEquals(IDS, ids);
+            assertTrue(maxManaged[0] <= 3, "В контексте " + maxManaged[0] + " сущностей");
+        });
+    }
+
+    /**
+     * Книги читаются потоком по возрастанию id.
+     */
+    @Test
+    void testBookStreamAll() {
+        List<Long> ids = transactionTemplate.execute(status -> {
+            try (Stream<Book> books = bookRepository.streamAll()) {
+                return books.map(Book::getId).collect(Collectors.toList());
+            }
+        });
+        assertEquals(IDS, ids);
+    }
+
+    /**
+     * Интерфейсные и DTO проекции читаются потоком внутри транзакции.
+     */
+    @Test
+    void testProjectionStreams() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<SerialRatingDto> ratings = serialRepository.streamAllByOrderByIdAsc(SerialRatingDto.class)) {
+                List<SerialRatingDto> list = ratings.collect(Collectors.toList());
+                assertEquals(IDS, list.stream().map(SerialRatingDto::getId).collect(Collectors.toList()));
+                assertEquals(5, list.get(4).getRating());
+            }
+            try (Stream<BookSummary> books = bookRepository.streamAllByOrderByIdAsc(BookSummary.class)) {
+                assertEquals("Author3", books.skip(2).findFirst().orElseThrow().getAuthor());
+            }
+        });
+    }
+
+    /**
+     * Keyset пагинация без транзакции: все элементы по возрастанию id,
+     * в т.ч. когда кол-во строк кратно размеру страницы.
+     */
+    @Test
+    void testKeysetStreams() {
+        List<Long> serialIds = serialRepository.streamAllByKeyset(SerialSummary.class, SerialSummary::getId, 3)
+                .map(SerialSummary::getId)
+                .collect(Collectors.toList());
+        assertEquals(IDS, serialIds);
+
+        List<Long> bookIds = bookRepository.streamAllByKeyset(Book.class, Book::getId, 5)
+                .map(Book::getId)
+                .collect(Collectors.toList());
+        assertEquals(IDS, bookIds);
+
+        assertEquals("Serial1", serialRepository.streamAllByKeyset(SerialSummary.class, SerialSummary::getId, 4)
+                .findFirst().orElseThrow().getName());
+    }
+}
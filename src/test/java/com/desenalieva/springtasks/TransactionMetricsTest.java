@@ -0,0 +1,127 @@
+package com.desenalieva.springtasks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.metrics.LatencyHistogram;
+import com.desenalieva.springtasks.metrics.TransactionMethodStatistics;
+import com.desenalieva.springtasks.metrics.TransactionMetricsRegistry;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.CustomSerialService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.transaction.UnexpectedRollbackException;
+import org.springframework.transaction.annotation.Propagation;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Метрики транзакционных методов (JMX в тестах по умолчанию выключен Spring Boot, поэтому включается явно).
+ */
+@SpringBootTest(properties = "spring.jmx.enabled=true")
+public class TransactionMetricsTest {
+    private final static String RECOVERABLE = RecoverableDataAccessException.class.getName();
+
+    @Autowired
+    private CustomSerialService customSerialService;
+
+    @Autowired
+    private SerialRepository serialRepository;
+
+    @Autowired
+    private TransactionMetricsRegistry transactionMetricsRegistry;
+
+    @BeforeEach
+    void setup() {
+        serialRepository.deleteAll();
+        serialRepository.save(new Serial(1L, "Serial", 5));
+        transactionMetricsRegistry.reset();
+    }
+
+    @AfterEach
+    void cleanup() {
+        serialRepository.deleteAll();
+    }
+
+    /**
+     * Вложенный REQUIRED метод помечает транзакцию rollback-only,
+     * внешний метод откатывается с UnexpectedRollbackException.
+     */
+    @Test
+    void testRollbackOnly() {
+        assertThrows(UnexpectedRollbackException.class, () -> customSerialService.updateRating5(1L, 10));
+
+        TransactionMethodStatistics helper = statistics("HelperService#helpMethod1");
+        assertEquals(1, helper.getRollbackOnlyMarks());
+        assertEquals(Map.of(RECOVERABLE, 1L), helper.getRollbackOnlyMarksByException());
+        assertEquals(Propagation.REQUIRED, helper.getPropagation());
+
+        TransactionMethodStatistics outer = statistics("CustomSerialService#updateRating5");
+        assertEquals(1, outer.getRollbacks());
+        assertEquals(Map.of(UnexpectedRollbackException.class.getName(), 1L), outer.getRollbacksByException());
+
+        assertEquals(1, statistics("SerialService#updateRatingById").getCommits());
+    }
+
+    /**
+     * Вложенный REQUIRES_NEW метод откатывает свою транзакцию, внешняя коммитится;
+     * исключение из noRollbackFor не откатывает транзакцию.
+     */
+    @Test
+    void testRequiresNewAndNoRollbackFor() {
+        customSerialService.updateRating11(1L, 10);
+        assertThrows(RecoverableDataAccessException.class, () -> customSerialService.updateRating3(1L, 7));
+
+        TransactionMethodStatistics helper = statistics("HelperService#helpMethod3");
+        assertEquals(Propagation.REQUIRES_NEW, helper.getPropagation());
+        assertEquals(Map.of(RECOVERABLE, 1L), helper.getRollbacksByException());
+        assertEquals(1, statistics("CustomSerialService#updateRating11").getCommits());
+        assertEquals(1, statistics("CustomSerialService#updateRating3").getCommits());
+        assertEquals(7, serialRepository.findById(1L).orElseThrow().getRating());
+    }
+
+    /**
+     * Задержки записываются, метрики доступны через JMX.
+     */
+    @Test
+    void testLatencyAndJmx() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            customSerialService.updateRating11(1L, i);
+        }
+
+        TransactionMethodStatistics statistics = statistics("CustomSerialService#updateRating11");
+        assertEquals(10, statistics.getCalls());
+        assertTrue(statistics.getP50Nanos() > 0);
+        assertTrue(statistics.getP50Nanos() <= statistics.getP99Nanos());
+        assertTrue(statistics.getP99Nanos() <= statistics.getMaxNanos());
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName("com.desenalieva.springtasks.metrics:type=TransactionMetricsRegistry,*"), null)
+                .isEmpty());
+    }
+
+    /**
+     * Перцентили гистограммы с погрешностью не больше 12,5%.
+     */
+    @Test
+    void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000, histogram.getPercentile(50), 500_000 * 0.125);
+        assertEquals(990_000, histogram.getPercentile(99), 990_000 * 0.125);
+    }
+
+    private TransactionMethodStatistics statistics(String method) {
+        return transactionMetricsRegistry.getStatistics(method).orElseThrow();
+    }
+}
@@ -0,0 +1,46 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.SpringtasksApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Поднятие контекста приложения для бенчмарков.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Запуск приложения с отдельной in-memory бд и временными файлами вместо путей из application.properties.
+     * @param properties дополнительные свойства (key=value), переопределяющие application.properties
+     * @return контекст приложения
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        Path workDir;
+        try {
+            workDir = Files.createTempDirectory("springtasks-benchmark");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        // свойства передаются аргументами командной строки: свойства билдера (properties(...)) - значения
+        // по умолчанию и не переопределяют application.properties
+        String[] args = Stream.concat(Stream.of("logging.level.root=WARN",
+                        "serial.info.filepath=" + workDir.resolve("SerialInfo.txt")), Arrays.stream(properties))
+                .map(property -> "--" + property)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(SpringtasksApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run(args);
+    }
+}
@@ -0,0 +1,33 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск JMH бенчмарков.
+ * <br>
+ * Бенчмарки исключены из обычного прогона тестов и запускаются командой
+ * {@code mvn test -Pbenchmark}. Чтобы запустить только часть бенчмарков, нужно передать
+ * регулярное выражение в {@code -Dbenchmark.include=...}. Результаты (вместе с показателями GC профайлера: выделение памяти на операцию и сборки мусора)
+ * пишутся в target/jmh-result.json.
+ */
+@Tag("benchmark")
+public class BenchmarkRunnerTest {
+
+    @Test
+    void runBenchmarks() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("benchmark.include", BenchmarkRunnerTest.class.getPackageName() + ".*"))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-result.json")
+                .build();
+        new Runner(options).run();
+    }
+}
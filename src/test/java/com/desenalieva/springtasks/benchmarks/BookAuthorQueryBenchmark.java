@@ -0,0 +1,88 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.projections.AuthorBookCount;
+import com.desenalieva.springtasks.projections.BookTitleDto;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запросы книг по автору на 1М книг (1000 авторов по 1000 книг) с индексом (author, name, id) и без него:
+ * первая страница книг автора сущностями и DTO проекцией, кол-во книг автора и кол-во книг по всем авторам.
+ * <br>
+ * Повторное использование результатов запросов в H2 отключено (OPTIMIZE_REUSE_RESULTS=FALSE),
+ * иначе запрос без параметров (кол-во по всем авторам) не выполнялся бы повторно; авторы перебираются по кругу.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookAuthorQueryBenchmark {
+    private final static int AUTHORS = 1000;
+
+    private final static int PAGE_SIZE = 50;
+
+    @Param({"1000000"})
+    private int rows;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    private ConfigurableApplicationContext context;
+
+    private BookRepository bookRepository;
+
+    private int author;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start(
+                "spring.datasource.url=jdbc:h2:mem:books;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE");
+        bookRepository = context.getBean(BookRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("insert into book (id, name, author) select x, concat('Book', mod(x * 7919, 1000003)),"
+                + " concat('Author', mod(x, ?)) from system_range(1, ?)", AUTHORS, rows);
+        if (!indexed) {
+            jdbcTemplate.execute("drop index idx_book_author_name");
+        }
+        jdbcTemplate.execute("analyze");
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    private String nextAuthor() {
+        return "Author" + (author++ % AUTHORS);
+    }
+
+    @Benchmark
+    public List<Book> authorPageEntities() {
+        return bookRepository.findByAuthorOrderByAuthorAscNameAscIdAsc(nextAuthor(), PageRequest.of(0, PAGE_SIZE),
+                Book.class);
+    }
+
+    @Benchmark
+    public List<BookTitleDto> authorPageDto() {
+        return bookRepository.findTitlesByAuthor(nextAuthor(), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public long countByAuthor() {
+        return bookRepository.countByAuthor(nextAuthor());
+    }
+
+    @Benchmark
+    public List<AuthorBookCount> countBooksByAuthor() {
+        return bookRepository.countBooksByAuthor();
+    }
+}
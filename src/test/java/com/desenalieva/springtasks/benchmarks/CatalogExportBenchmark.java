@@ -0,0 +1,71 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.export.CatalogExporter;
+import com.desenalieva.springtasks.export.ExportFormat;
+import com.desenalieva.springtasks.export.ExportResult;
+import com.desenalieva.springtasks.export.ExportTable;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка таблицы сериалов в CSV и двоичный формат, последовательно и по диапазонам id в несколько потоков.
+ * <br>
+ * Скорость выгрузки (строк/с) = rows / время операции; размер файла пишется в лог после каждой итерации.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CatalogExportBenchmark {
+    @Param({"1000000"})
+    private int rows;
+
+    @Param({"CSV", "BINARY"})
+    private ExportFormat format;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private ConfigurableApplicationContext context;
+
+    private CatalogExporter catalogExporter;
+
+    private Path file;
+
+    private ExportResult result;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        context = BenchmarkContext.start("serial.stream.fetch-size=10000",
+                "serial.export.buffer-size=1048576", "serial.export.chunk-rows=20000");
+        catalogExporter = context.getBean(CatalogExporter.class);
+        context.getBean(JdbcTemplate.class).update("insert into serial (id, name, rating) "
+                + "select x, concat('Serial', x), mod(x, 11) from system_range(1, ?)", rows);
+        file = Files.createTempFile("catalog-export", "." + format.name().toLowerCase());
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        System.out.printf("%n%d rows, %d bytes, %d parts%n", result.getRows(), result.getBytes(), result.getParts());
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        context.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long export() {
+        result = catalogExporter.export(ExportTable.SERIAL, format, file, parallelism);
+        return result.getRows();
+    }
+}
@@ -0,0 +1,46 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.services.SerialService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Задержка создания сериала для вызывающего потока: обработчик AFTER_COMMIT (запись в бинарный журнал) выполняется
+ * в потоке, завершившем транзакцию (dispatch = false), или в ограниченном пуле (dispatch = true).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class EventDispatchBenchmark {
+    @Param({"false", "true"})
+    private boolean dispatch;
+
+    private final AtomicLong ids = new AtomicLong(1_000_000);
+
+    private ConfigurableApplicationContext context;
+
+    private SerialService serialService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("serial.event-dispatch.enabled=" + dispatch);
+        serialService = context.getBean(SerialService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object create() {
+        long id = ids.incrementAndGet();
+        return serialService.create(id, "Serial" + id, (int) (id % 11));
+    }
+}
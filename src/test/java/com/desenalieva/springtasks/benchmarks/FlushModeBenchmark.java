@@ -0,0 +1,161 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Смешанная нагрузка чтения/записи на SerialRepository и BookRepository при разных FlushMode.
+ * <br>
+ * Одна операция - транзакция, в которой загружается managed книг (размер контекста), затем выполняется WRITES
+ * изменений (поочередно: изменение названия загруженной книги и сохранение нового сериала),
+ * а после каждых interleave изменений - запрос (поочередно: кол-во книг и кол-во сериалов).
+ * В режиме MANUAL перед коммитом вызывается flush(), чтобы все режимы записывали одинаковые изменения.
+ * <br>
+ * Кроме времени операции выводятся счетчики (на итерацию): flush'и, проверки перед запросами и время в них,
+ * выделение памяти - в показателях GC профайлера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class FlushModeBenchmark {
+    private static final int WRITES = 20;
+
+    @Param({"ALWAYS", "AUTO", "COMMIT", "MANUAL"})
+    private FlushMode flushMode;
+
+    @Param({"100", "10000", "100000"})
+    private int managed;
+
+    @Param({"1", "10"})
+    private int interleave;
+
+    private ConfigurableApplicationContext context;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private TransactionTemplate transactionTemplate;
+
+    private SerialRepository serialRepository;
+
+    private BookRepository bookRepository;
+
+    private FlushTimingListener flushTimingListener;
+
+    private long nextSerialId;
+
+    /**
+     * Счетчики flush'ей за итерацию.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class FlushCounters {
+        public long operations;
+
+        public long explicitFlushes;
+
+        public long autoFlushChecks;
+
+        public long autoFlushes;
+
+        public long autoFlushMicros;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            operations = 0;
+            explicitFlushes = 0;
+            autoFlushChecks = 0;
+            autoFlushes = 0;
+            autoFlushMicros = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        serialRepository = context.getBean(SerialRepository.class);
+        bookRepository = context.getBean(BookRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.executeWithoutResult(status -> {
+            EntityManager entityManager = currentEntityManager();
+            LongStream.rangeClosed(1, managed).forEach(id -> {
+                entityManager.persist(new Book(id, "Book" + id, "Author" + id % 100));
+                if (id % 1000 == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            });
+        });
+        flushTimingListener = FlushTimingListener.register(entityManagerFactory);
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanup() {
+        serialRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long mixedWorkload(FlushCounters counters) {
+        long explicitFlushes = flushTimingListener.getExplicitFlushes();
+        long autoFlushChecks = flushTimingListener.getAutoFlushChecks();
+        long autoFlushes = flushTimingListener.getAutoFlushes();
+        long autoFlushNanos = flushTimingListener.getAutoFlushNanos();
+
+        long result = transactionTemplate.execute(status -> {
+            EntityManager entityManager = currentEntityManager();
+            entityManager.unwrap(Session.class).setHibernateFlushMode(flushMode);
+            List<Book> books = bookRepository.findAll();
+            long sum = 0;
+            for (int i = 0; i < WRITES; i++) {
+                if (i % 2 == 0) {
+                    Book book = books.get((int) (nextSerialId % books.size()));
+                    book.setName("Book" + nextSerialId);
+                } else {
+                    entityManager.persist(new Serial(++nextSerialId, "Serial" + nextSerialId, i % 11));
+                }
+                if ((i + 1) % interleave == 0) {
+                    sum += i % 2 == 0 ? bookRepository.count() : serialRepository.count();
+                }
+            }
+            if (flushMode == FlushMode.MANUAL) {
+                entityManager.flush();
+            }
+            return sum;
+        });
+
+        counters.operations++;
+        counters.explicitFlushes += flushTimingListener.getExplicitFlushes() - explicitFlushes;
+        counters.autoFlushChecks += flushTimingListener.getAutoFlushChecks() - autoFlushChecks;
+        counters.autoFlushes += flushTimingListener.getAutoFlushes() - autoFlushes;
+        counters.autoFlushMicros += (flushTimingListener.getAutoFlushNanos() - autoFlushNanos) / 1000;
+        return result;
+    }
+
+    private EntityManager currentEntityManager() {
+        return EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+    }
+}
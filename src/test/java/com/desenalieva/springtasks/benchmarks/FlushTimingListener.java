@@ -0,0 +1,81 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Подсчет flush'ей и времени, потраченного на автоматический flush перед запросами.
+ * <br>
+ * Регистрируется двумя слушателями: первый (в начале цепочки) запоминает время начала,
+ * второй (в конце цепочки, после стандартного слушателя Hibernate) считает время и результат.
+ */
+final class FlushTimingListener {
+    private final ThreadLocal<Long> autoFlushStart = new ThreadLocal<>();
+
+    private final AtomicLong autoFlushChecks = new AtomicLong();
+
+    private final AtomicLong autoFlushes = new AtomicLong();
+
+    private final AtomicLong autoFlushNanos = new AtomicLong();
+
+    private final AtomicLong explicitFlushes = new AtomicLong();
+
+    private FlushTimingListener() {
+    }
+
+    /**
+     * Регистрация слушателей в Hibernate.
+     * @param entityManagerFactory фабрика EntityManager приложения
+     * @return счетчики
+     */
+    static FlushTimingListener register(EntityManagerFactory entityManagerFactory) {
+        FlushTimingListener listener = new FlushTimingListener();
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.prependListeners(EventType.AUTO_FLUSH,
+                (AutoFlushEventListener) event -> listener.autoFlushStart.set(System.nanoTime()));
+        registry.appendListeners(EventType.AUTO_FLUSH, (AutoFlushEventListener) listener::afterAutoFlush);
+        registry.appendListeners(EventType.FLUSH, (FlushEventListener) event -> listener.explicitFlushes.incrementAndGet());
+        return listener;
+    }
+
+    private void afterAutoFlush(AutoFlushEvent event) {
+        autoFlushNanos.addAndGet(System.nanoTime() - autoFlushStart.get());
+        autoFlushChecks.incrementAndGet();
+        if (event.isFlushRequired()) {
+            autoFlushes.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return кол-во проверок перед запросами (каждая проверка - dirty checking всех сущностей контекста)
+     */
+    long getAutoFlushChecks() {
+        return autoFlushChecks.get();
+    }
+
+    /**
+     * @return кол-во автоматических flush'ей, записавших изменения в бд
+     */
+    long getAutoFlushes() {
+        return autoFlushes.get();
+    }
+
+    /**
+     * @return суммарное время проверок и автоматических flush'ей
+     */
+    long getAutoFlushNanos() {
+        return autoFlushNanos.get();
+    }
+
+    /**
+     * @return кол-во явных flush'ей (flush() и flush при коммите)
+     */
+    long getExplicitFlushes() {
+        return explicitFlushes.get();
+    }
+}
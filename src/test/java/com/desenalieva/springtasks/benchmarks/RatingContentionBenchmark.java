@@ -0,0 +1,97 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.retry.RetryStatistics;
+import com.desenalieva.springtasks.retry.TransactionRetryExecutor;
+import com.desenalieva.springtasks.services.SerialService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Конкурентное изменение рейтинга (чтение, изменение, запись) hotRows сериалов в 4 потока:
+ * <ul>
+ *     <li>OPTIMISTIC - READ_COMMITTED, конфликт обнаруживается по версии при UPDATE, транзакция повторяется
+ *     через {@link TransactionRetryExecutor};</li>
+ *     <li>SERIALIZABLE - то же в транзакции SERIALIZABLE (как в SpringTransactionService): конфликтующие
+ *     транзакции бд ждет на блокировках и откатывает с ошибкой сериализации, которые тоже повторяются.</li>
+ * </ul>
+ * Кол-во повторов, исчерпанных попыток и отказов бюджета пишется в лог после каждой итерации.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(4)
+@Fork(1)
+public class RatingContentionBenchmark {
+    public enum Locking {
+        OPTIMISTIC, SERIALIZABLE
+    }
+
+    @Param({"OPTIMISTIC", "SERIALIZABLE"})
+    private Locking locking;
+
+    @Param({"1", "16"})
+    private int hotRows;
+
+    private ConfigurableApplicationContext context;
+
+    private SerialService serialService;
+
+    private SerialRepository serialRepository;
+
+    private TransactionRetryExecutor retryExecutor;
+
+    private final DefaultTransactionDefinition serializable = new DefaultTransactionDefinition();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("serial.retry.max-attempts=20", "serial.retry.budget=1000",
+                "serial.retry.budget-ratio=1");
+        serialService = context.getBean(SerialService.class);
+        serialRepository = context.getBean(SerialRepository.class);
+        retryExecutor = context.getBean(TransactionRetryExecutor.class);
+        context.getBean(JdbcTemplate.class).update("insert into serial (id, name, rating) "
+                + "select x, concat('Serial', x), 0 from system_range(1, ?)", hotRows);
+        serializable.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        RetryStatistics statistics = retryExecutor.getStatistics();
+        System.out.printf("%ncalls %d, retries %d, exhausted %d, budget rejections %d, failures %d, %s%n",
+                statistics.getCalls(), statistics.getRetries(), statistics.getExhausted(),
+                statistics.getBudgetRejections(), statistics.getFailures(), statistics.getRetriesByException());
+        retryExecutor.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object changeRating() {
+        long id = ThreadLocalRandom.current().nextLong(1, hotRows + 1);
+        if (locking == Locking.OPTIMISTIC) {
+            return serialService.changeRatingById(id, RatingContentionBenchmark::next);
+        }
+        return retryExecutor.execute(serializable, status -> {
+            Serial serial = serialRepository.findById(id).orElseThrow();
+            serial.setRating(next(serial.getRating()));
+            return serial.getRating();
+        });
+    }
+
+    private static int next(int rating) {
+        return rating < Serial.MAX_RATING ? rating + 1 : Serial.MIN_RATING;
+    }
+}
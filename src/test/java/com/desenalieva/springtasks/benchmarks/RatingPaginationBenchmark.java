@@ -0,0 +1,89 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Страница сериалов с рейтингом от 2 до 8 на глубине depth строк: по номеру страницы (OFFSET)
+ * и keyset пагинацией от последнего сериала предыдущей страницы.
+ * <br>
+ * Время OFFSET запроса растет с глубиной (бд читает и отбрасывает depth строк),
+ * keyset запрос начинает чтение индекса (rating, id) с позиции курсора.
+ * Вызовы чередуют две соседние страницы (depth и depth + pageSize): H2 повторно отдает результат
+ * запроса с теми же параметрами, если таблица не менялась.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RatingPaginationBenchmark {
+    private final static int MIN_RATING = 2;
+
+    private final static int MAX_RATING = 8;
+
+    @Param({"1000000"})
+    private int rows;
+
+    @Param({"100"})
+    private int pageSize;
+
+    @Param({"1000", "100000", "500000"})
+    private int depth;
+
+    private ConfigurableApplicationContext context;
+
+    private SerialRepository serialRepository;
+
+    private final int[] afterRating = new int[2];
+
+    private final long[] afterId = new long[2];
+
+    private int page;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        serialRepository = context.getBean(SerialRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("insert into serial (id, name, rating) "
+                + "select x, concat('Serial', x), mod(x, 11) from system_range(1, ?)", rows);
+        jdbcTemplate.execute("analyze");
+        for (int i = 0; i < 2; i++) {
+            // курсор: последний сериал перед страницей на глубине depth + i * pageSize
+            Map<String, Object> last = jdbcTemplate.queryForMap("select rating, id from serial"
+                    + " where rating between ? and ? order by rating desc, id desc offset ? rows fetch next 1 row only",
+                    MIN_RATING, MAX_RATING, depth + i * pageSize - 1);
+            afterRating[i] = ((Number) last.get("rating")).intValue();
+            afterId[i] = ((Number) last.get("id")).longValue();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Serial> offset() {
+        page ^= 1;
+        return serialRepository.findByRatingBetweenOrderByRatingDescIdDesc(MIN_RATING, MAX_RATING,
+                PageRequest.of(depth / pageSize + page, pageSize));
+    }
+
+    @Benchmark
+    public List<Serial> keyset() {
+        page ^= 1;
+        return serialRepository.findByRatingBetweenAfter(MIN_RATING, MAX_RATING, afterRating[page], afterId[page],
+                pageSize);
+    }
+}
@@ -0,0 +1,70 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.services.SerialService;
+import com.desenalieva.springtasks.writers.RatingWriteBehindBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Частые изменения рейтинга hotRows сериалов в 4 потока: транзакция на каждое изменение
+ * (changeRatingById, конфликты версий повторяются) и отложенная запись с объединением изменений ({@link RatingWriteBehindBuffer}).
+ * <br>
+ * Кол-во принятых, объединенных и записанных изменений и кол-во транзакций пишется в лог после каждой итерации
+ * (в конце итерации буфер сбрасывается).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(4)
+@Fork(1)
+public class RatingWriteBehindBenchmark {
+    @Param({"16", "10000"})
+    private int hotRows;
+
+    private ConfigurableApplicationContext context;
+
+    private SerialService serialService;
+
+    private RatingWriteBehindBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("serial.rating-buffer.batch-size=500", "serial.rating-buffer.flush-interval=50ms",
+                "serial.rating-buffer.stripes=16");
+        serialService = context.getBean(SerialService.class);
+        buffer = context.getBean(RatingWriteBehindBuffer.class);
+        context.getBean(JdbcTemplate.class).update("insert into serial (id, name, rating) "
+                + "select x, concat('Serial', x), 0 from system_range(1, ?)", hotRows);
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        buffer.flush();
+        System.out.printf("%nsubmitted %d, coalesced %d, written %d, batches %d%n", buffer.getSubmittedCount(),
+                buffer.getCoalescedCount(), buffer.getWrittenCount(), buffer.getBatchCount());
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void transactionPerUpdate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int rating = random.nextInt(11);
+        serialService.changeRatingById(random.nextLong(1, hotRows + 1), current -> rating);
+    }
+
+    @Benchmark
+    public void writeBehind() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        buffer.update(random.nextLong(1, hotRows + 1), random.nextInt(11));
+    }
+}
@@ -0,0 +1,71 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.entities.Book;
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.BookRepository;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Чтение больших выборок сериалов и книг в транзакции с readOnly = true и readOnly = false.
+ * <br>
+ * В readOnly транзакции сущности загружаются без снимков состояния и при коммите нет dirty checking,
+ * разница в памяти видна по gc.alloc.rate.norm (GC профайлер), в CPU - по времени операции.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadOnlyLoadBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({"true", "false"})
+    private boolean readOnly;
+
+    private ConfigurableApplicationContext context;
+
+    private TransactionTemplate transactionTemplate;
+
+    private SerialRepository serialRepository;
+
+    private BookRepository bookRepository;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("spring.jpa.properties.hibernate.cache.use_second_level_cache=false");
+        serialRepository = context.getBean(SerialRepository.class);
+        bookRepository = context.getBean(BookRepository.class);
+        context.getBean(SerialService.class).createAll(LongStream.rangeClosed(1, ROWS)
+                .mapToObj(id -> new Serial(id, "Serial" + id, (int) (id % 11))));
+        EntityManagerFactory entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+            LongStream.rangeClosed(1, ROWS).forEach(id -> entityManager.persist(new Book(id, "Book" + id, "Author" + id % 100)));
+        });
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int findAll() {
+        return transactionTemplate.execute(status -> serialRepository.findAll().size() + bookRepository.findAll().size());
+    }
+}
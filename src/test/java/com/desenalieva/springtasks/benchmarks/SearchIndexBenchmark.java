@@ -0,0 +1,115 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.search.SearchField;
+import com.desenalieva.springtasks.search.SearchHit;
+import com.desenalieva.springtasks.search.SearchIndex;
+import com.desenalieva.springtasks.search.SearchMode;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск по названиям сериалов: поисковый индекс в памяти (префикс, слова, нечеткий поиск) против LIKE '%x%' по таблице.
+ * <br>
+ * В setup в лог пишутся время перестроения индекса и занятая им память (разница занятой кучи после сборки мусора).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SearchIndexBenchmark {
+    private final static int WORDS = 500;
+
+    @Param({"1000000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+
+    private SearchIndex searchIndex;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private String[] words;
+
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("serial.search.chunk-size=10000", "serial.search.parallelism=4");
+        searchIndex = context.getBean(SearchIndex.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        words = new String[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int length = 4 + random.nextInt(6); word.length() < length; ) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        List<Object[]> batch = new ArrayList<>();
+        for (int id = 1; id <= rows; id++) {
+            String name = words[random.nextInt(WORDS)] + " " + words[random.nextInt(WORDS)] + " "
+                    + words[random.nextInt(WORDS)] + " " + id;
+            batch.add(new Object[]{id, name, id % 11});
+            if (batch.size() == 10000 || id == rows) {
+                jdbcTemplate.batchUpdate("insert into serial (id, name, rating) values (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        long before = usedHeap();
+        long start = System.nanoTime();
+        searchIndex.rebuild();
+        System.out.printf("%nrebuild %d ms, index %d MB%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                (usedHeap() - before) >> 20);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    private String nextWord() {
+        return words[query++ % WORDS];
+    }
+
+    @Benchmark
+    public List<SearchHit> indexToken() {
+        return searchIndex.search(SearchField.SERIAL_NAME, nextWord() + " " + nextWord(), SearchMode.TOKEN, 20);
+    }
+
+    @Benchmark
+    public List<SearchHit> indexPrefix() {
+        return searchIndex.search(SearchField.SERIAL_NAME, nextWord() + " " + nextWord().substring(0, 3),
+                SearchMode.PREFIX, 20);
+    }
+
+    @Benchmark
+    public List<SearchHit> indexFuzzy() {
+        String word = nextWord();
+        // опечатка: замена первой буквы
+        return searchIndex.search(SearchField.SERIAL_NAME, (word.charAt(0) == 'a' ? 'b' : 'a') + word.substring(1),
+                SearchMode.FUZZY, 20);
+    }
+
+    @Benchmark
+    public List<Long> likeScan() {
+        return jdbcTemplate.queryForList("select id from serial where lower(name) like ? fetch first 20 rows only",
+                Long.class, "%" + nextWord() + " " + nextWord() + "%");
+    }
+}
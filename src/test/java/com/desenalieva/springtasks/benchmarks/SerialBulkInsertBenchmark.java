@@ -0,0 +1,67 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.entities.Serial;
+import com.desenalieva.springtasks.repositories.SerialRepository;
+import com.desenalieva.springtasks.services.SerialService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Сравнение скорости вставки сериалов (строк в секунду):
+ * по одному сериалу в транзакции через {@link SerialService#create} и массово через {@link SerialService#createAll}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerialBulkInsertBenchmark {
+    private static final int ROWS = 1000;
+
+    private ConfigurableApplicationContext context;
+
+    private SerialService serialService;
+
+    private SerialRepository serialRepository;
+
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        serialService = context.getBean(SerialService.class);
+        serialRepository = context.getBean(SerialRepository.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanup() {
+        serialRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void createPerRow() {
+        for (int i = 0; i < ROWS; i++) {
+            long id = ++nextId;
+            serialService.create(id, "Serial" + id, (int) (id % 11));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int createAll() {
+        long from = nextId + 1;
+        nextId += ROWS;
+        return serialService.createAll(LongStream.rangeClosed(from, nextId)
+                .mapToObj(id -> new Serial(id, "Serial" + id, (int) (id % 11))));
+    }
+}
@@ -0,0 +1,71 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.importer.SerialInfoImporter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скорость импорта файла информации о сериалах (строк в секунду) в зависимости от кол-ва потоков разбора.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SerialInfoImportBenchmark {
+    private static final int LINES = 200_000;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private ConfigurableApplicationContext context;
+
+    private SerialInfoImporter serialInfoImporter;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        context = BenchmarkContext.start("serial.import.chunk-size=1048576", "serial.import.parallelism=" + parallelism,
+                "spring.jpa.properties.hibernate.jdbc.batch_size=1000",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false");
+        serialInfoImporter = context.getBean(SerialInfoImporter.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        file = Files.createTempFile("serial-info", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 1; i <= LINES; i++) {
+                writer.write("Serial" + i + ", " + i % 11 + "\n");
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void cleanup() throws IOException {
+        jdbcTemplate.update("truncate table serial");
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".checkpoint"));
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".bad"));
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() throws IOException {
+        cleanup();
+        context.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public long importFile() {
+        return serialInfoImporter.importFile(file, 1).getImported();
+    }
+}
@@ -0,0 +1,132 @@
+package com.desenalieva.springtasks.benchmarks;
+
+import com.desenalieva.springtasks.services.CustomSerialService;
+import com.desenalieva.springtasks.services.JavaTransactionService;
+import com.desenalieva.springtasks.services.SerialService;
+import com.desenalieva.springtasks.services.SpringTransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.transaction.UnexpectedRollbackException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность и задержка транзакционных сценариев из {@link CustomSerialService}
+ * (во всех сценариях обновляется рейтинг одного сериала):
+ * <ul>
+ *     <li>baseline - одна транзакция без вложенных вызовов;</li>
+ *     <li>nestedRequired - вложенный REQUIRED метод с noRollbackFor выбрасывает исключение, внешняя транзакция
+ *     коммитится;</li>
+ *     <li>nestedRequiresNew - вложенный REQUIRES_NEW метод выбрасывает исключение: второе соединение
+ *     и откат вложенной транзакции, внешняя транзакция коммитится;</li>
+ *     <li>rollbackOnly - вложенный REQUIRED метод помечает транзакцию rollback-only,
+ *     коммит внешней транзакции заканчивается UnexpectedRollbackException;</li>
+ *     <li>rollbackOnException / noRollbackFor - исключение из внешнего метода откатывает транзакцию
+ *     или не откатывает ее благодаря noRollbackFor;</li>
+ *     <li>javaTransactional / springTransactional - накладные расходы прокси javax.transaction.Transactional
+ *     и Spring @Transactional на одинаковом методе.</li>
+ * </ul>
+ * Сервисы логируют пойманные исключения со стектрейсом, поэтому их лог отключен, чтобы не измерять вывод в лог.
+ * Параметр metrics показывает накладные расходы метрик транзакционных методов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionPropagationBenchmark {
+    private static final long SERIAL_ID = 1L;
+
+    @Param({"true", "false"})
+    private boolean metrics;
+
+    private ConfigurableApplicationContext context;
+
+    private SerialService serialService;
+
+    private CustomSerialService customSerialService;
+
+    private JavaTransactionService javaTransactionService;
+
+    private SpringTransactionService springTransactionService;
+
+    private int rating;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start("logging.level.com.desenalieva.springtasks.services=OFF",
+                "serial.transaction-metrics.enabled=" + metrics);
+        serialService = context.getBean(SerialService.class);
+        customSerialService = context.getBean(CustomSerialService.class);
+        javaTransactionService = context.getBean(JavaTransactionService.class);
+        springTransactionService = context.getBean(SpringTransactionService.class);
+        serialService.create(SERIAL_ID, "Serial", 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void baseline() {
+        serialService.updateRatingById(SERIAL_ID, nextRating());
+    }
+
+    @Benchmark
+    public void nestedRequired() {
+        customSerialService.updateRating8(SERIAL_ID, nextRating());
+    }
+
+    @Benchmark
+    public void nestedRequiresNew() {
+        customSerialService.updateRating11(SERIAL_ID, nextRating());
+    }
+
+    @Benchmark
+    public Exception rollbackOnly() {
+        try {
+            customSerialService.updateRating5(SERIAL_ID, nextRating());
+            throw new IllegalStateException("Ожидался UnexpectedRollbackException");
+        } catch (UnexpectedRollbackException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Exception rollbackOnException() {
+        try {
+            customSerialService.updateRating1(SERIAL_ID, nextRating());
+            throw new IllegalStateException("Ожидался RecoverableDataAccessException");
+        } catch (RecoverableDataAccessException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Exception noRollbackFor() {
+        try {
+            customSerialService.updateRating3(SERIAL_ID, nextRating());
+            throw new IllegalStateException("Ожидался RecoverableDataAccessException");
+        } catch (RecoverableDataAccessException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public void javaTransactional() {
+        javaTransactionService.transactionWithoutTimeout();
+    }
+
+    @Benchmark
+    public void springTransactional() {
+        springTransactionService.transactionWithDefaults();
+    }
+
+    private int nextRating() {
+        rating = (rating + 1) % 11;
+        return rating;
+    }
+}